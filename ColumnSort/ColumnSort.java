@@ -3,16 +3,13 @@
  * @version 1.0
  * @since 2010-3-30
  *
- * To compile use the command `javac ColumnSort.java`
- * To run use the command `java ColumnSort sample.dat` (where sample.dat
+ * To compile use the command `make`, which also builds the shared classes in ../Common
+ * To run use the command `java -cp .:../Common ColumnSort sample.dat` (where sample.dat
  * is any plain text file where each line is either whitespace or an integer)
  */
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Scanner;
+import java.io.IOException;
 
 /**
  * 
@@ -22,6 +19,7 @@ import java.util.Scanner;
  * Column sort is a fast sorting algorithm this is easily parallelized
  * At it's core it relies on Quicksort
  * This class only works when sorting Integers
+ * Other programs can use it through sort, which takes and returns a plain int array
  * This is a class who's methods are all static and has no class variables
  * 
  * METHODS
@@ -29,6 +27,12 @@ import java.util.Scanner;
  * public static void main(String[] args)
  *      Reads in the given file, outputs various information about the input, then calls all of the functions necessary to sort the numbers and outputs the numbers
  * 
+ * public static int[] sort(int[] numbers)
+ *      Sorts an array of numbers with column sort, and returns them in a new array
+ * 
+ * public static int columns(int length)
+ *      Returns the number of columns the numbers are arranged in, which is as close to square as column sort allows
+ * 
  * public static Integer[][] step2(Integer[][] numbers)
  *      Transposes the r x s matrix and reshapes it back into an r x s matrix by writing each row of the transpose as a r/s x s submatrix.
  * 
@@ -68,65 +72,99 @@ public class ColumnSort {
 
     String filename = args[0];
     
-    List<Integer> elements = new ArrayList<Integer>();
-    File file = new File(filename);
-    Scanner scanner = null;
+    // Map the file and parse it in one pass, without boxing every number
+    int[] elements;
     try {
-      scanner = new Scanner(file);
-    } catch (FileNotFoundException e) {
-      System.out.println("That file cannot be found");
+      MappedFile file = new MappedFile(new File(filename));
+      try {
+        elements = file.readIntegers().toArray();
+      } finally {
+        file.close();
+      }
+    } catch (IOException e) {
+      System.out.println("That file cannot be read: " + e.getMessage());
       return;
     }
     
-    // Get each line, trim it, and store it
-    while (scanner.hasNextLine()) {
-      String line = scanner.nextLine().trim();
-      if (line == null || line.length() == 0)
-        continue;
-      Integer number = Integer.parseInt(line);
-      if (line.length() > 0) elements.add(number);
-    }
-    
-    int length = elements.size();
-    int rows = 1;
-    int cols = length;
-    
-    // Turn the elements into a matrix the is as square as possible
-    while (rows*cols != length || rows < 2*Math.pow(cols-1,2) || rows % cols != 0) {
-      cols--;
-      rows = length/cols;
-    }
+    int length = elements.length;
+    int cols = columns(length);
     
     System.out.println("n = "+length);
-    System.out.println("r = "+rows);
+    System.out.println("r = "+(length / cols));
     System.out.println("s = "+cols);
     
+    System.gc(); // Clear up any unneeded space
+    
+    Metrics.Timer timer = Metrics.timer("ColumnSort.sort");
+    long startTime = timer.start();
+    
+    int[] result = sort(elements);
+    
+    long elapsedTime = timer.stop(startTime);
+    long roundedTime = (int) (elapsedTime/1000000.0 + 0.5); // Round to the nearest millisecond
+    
+    System.out.println("Elapsed time = " + roundedTime / 1000.0 + " seconds.");
+    
+    // Print out sorted list
+    StringBuilder output = new StringBuilder();
+    for (int number : result)
+      output.append(number).append('\n');
+    System.out.print(output);
+  }
+  
+  /**
+   * Sorts an array of numbers with column sort. The numbers are laid out column by column in an r x s matrix, as square
+   *    as columns allows, and then go through all of the steps in order
+   *
+   * @param numbers The numbers to be sorted, which are not changed
+   * @return A new array holding the numbers in increasing order
+   */
+  public static int[] sort(int[] numbers) {
+    int length = numbers.length;
+    if (length == 0)
+      return new int[0];
+    int cols = columns(length);
+    int rows = length / cols;
+    
     // Construct 2d array given the number of rows and cols that we found above
     Integer[][] array = new Integer[rows][cols];
     for (int row=0; row<rows; row++) {
       for (int col=0; col<cols; col++) {
-        array[row][col] = elements.get((col * rows) + row);
+        array[row][col] = numbers[(col * rows) + row];
       }
     }
     
-    System.gc(); // Clear up any unneeded space
-    
-    long startTime = System.nanoTime();
-    
     // Perform all of the steps in order
     Integer[][] result = step8(oddStep(step6(oddStep(step4(oddStep(step2(oddStep(array))))))));
     
-    long elapsedTime = System.nanoTime() - startTime;
-    long roundedTime = (int) (elapsedTime/1000000.0 + 0.5); // Round to the nearest millisecond
-    
-    System.out.println("Elapsed time = " + roundedTime / 1000.0 + " seconds.");
-    
-    // Print out sorted list
+    int[] sorted = new int[length];
     for (int col=0; col<cols; col++) {
       for (int row=0; row<rows; row++) {
-        System.out.println(result[row][col]);
+        sorted[(col * rows) + row] = result[row][col];
       }
     }
+    return sorted;
+  }
+  
+  /**
+   * Returns the number of columns s to arrange the numbers in. Column sort needs r x s to be exactly the number of
+   *    numbers, r to be a multiple of s, and r >= 2(s - 1)^2, so this is the largest s that allows all three
+   *
+   * @param length The number of numbers to be sorted
+   * @return The number of columns, at least 1
+   */
+  public static int columns(int length) {
+    if (length <= 1)
+      return 1;
+    int rows = 1;
+    int cols = length;
+    
+    // Turn the elements into a matrix the is as square as possible
+    while (rows*cols != length || rows < 2*Math.pow(cols-1,2) || rows % cols != 0) {
+      cols--;
+      rows = length/cols;
+    }
+    return cols;
   }
   
   /**
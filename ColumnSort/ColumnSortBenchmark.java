@@ -0,0 +1,74 @@
+/**
+ * To run use the command `make bench`
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *
+ * Class: ColumnSortBenchmark
+ *
+ * This class measures how fast ColumnSort.sort is, against Arrays.sort as a baseline. For each size it sorts copies of
+ * the same random numbers with each sort through the Benchmark harness in Common, which prints the time per run and per
+ * number, and the spread of the measured runs at the end.
+ * This is a class who's methods are all static
+ *
+ * METHODS
+ * -------
+ * public static void main(String[] args)
+ *      Parses the options and sorts random numbers of each of the given sizes
+ *
+ * private static Benchmark sort(final int[] numbers, final boolean columnSort)
+ *      Returns a benchmark which sorts a copy of the numbers
+ *
+ */
+public class ColumnSortBenchmark {
+  /**
+   * Parses the options and sorts random numbers of each of the given sizes
+   *
+   * @param args Options followed by the numbers of numbers to sort. The options are those of Benchmark.parseOptions,
+   *    with the names ColumnSort.sort and Arrays.sort. The sizes default to 10000 100000
+   */
+  public static void main(String[] args) throws IOException {
+    List<String> sizes = Benchmark.parseOptions(args);
+    if (sizes.isEmpty())
+      sizes = Arrays.asList("10000", "100000");
+
+    Benchmark.printHeader("Numbers");
+    for (String size : sizes) {
+      int[] numbers = new int[Integer.parseInt(size)];
+      Random random = new Random(42);
+      for (int j=0; j<numbers.length; j++)
+        numbers[j] = random.nextInt();
+      Benchmark.measure("ColumnSort.sort", size, sort(numbers, true));
+      Benchmark.measure("Arrays.sort", size, sort(numbers, false));
+    }
+
+    Benchmark.report(System.out);
+  }
+
+  /**
+   * Returns a benchmark which sorts a copy of the numbers. Copying them is not timed
+   *
+   * @param numbers The numbers to sort, which are not changed
+   * @param columnSort True to sort with ColumnSort.sort, false with Arrays.sort
+   * @return The benchmark
+   */
+  private static Benchmark sort(final int[] numbers, final boolean columnSort) {
+    return new Benchmark() {
+      protected long run() {
+        int[] copy = Arrays.copyOf(numbers, numbers.length);
+        long start = System.nanoTime();
+        int[] sorted = columnSort ? ColumnSort.sort(copy) : copy;
+        if (!columnSort)
+          Arrays.sort(copy);
+        elapsed = System.nanoTime() - start;
+        sink += sorted[sorted.length / 2];
+        return numbers.length;
+      }
+    };
+  }
+}
@@ -0,0 +1,144 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *
+ * A single benchmark, and the harness which runs them, shared by the benchmarks of every component. A component's
+ *    benchmark passes its arguments to parseOptions, then hands each case to measure as a Benchmark whose run() does the
+ *    work once. measure runs it a few times to warm up the JIT, then times the measured runs, prints the average time per
+ *    run and per operation, and records each run in a Metrics timer so report can print the spread between runs.
+ *
+ * VARIABLES
+ * ---------
+ * protected long elapsed;
+ *      Set by run() to the time that should be counted, so a run can leave its setup out of the measurement
+ *
+ * private static int warmups;
+ *      The number of unmeasured runs of each benchmark
+ *
+ * private static int iterations;
+ *      The number of measured runs of each benchmark
+ *
+ * private static List<String> only;
+ *      The names of the benchmarks to run, or null to run all of them
+ *
+ * protected static long sink;
+ *      Accumulates results so the JIT cannot remove the work being measured
+ *
+ * METHODS
+ * -------
+ * protected abstract long run()
+ *      Does the work once, sets elapsed, and returns the number of operations it did
+ *
+ * public static List<String> parseOptions(String[] args)
+ *      Reads -warmups, -iterations and -only, and returns the other arguments
+ *
+ * public static boolean selected(String name)
+ *      Tells whether a benchmark was selected with -only
+ *
+ * public static void printHeader(String subject)
+ *      Prints the column headings of the lines measure prints
+ *
+ * public static void measure(String name, String subject, Benchmark benchmark)
+ *      Runs a benchmark, then prints the average time per run and per operation
+ *
+ * public static void report(PrintStream out)
+ *      Prints the spread of the measured runs from Metrics
+ *
+ */
+
+public abstract class Benchmark {
+  protected long elapsed;
+
+  private static int warmups = 2;
+  private static int iterations = 5;
+  private static List<String> only = null;
+  protected static long sink;
+
+  /**
+   * Does the work being measured once
+   * Postconditions: elapsed is the time that should be counted for this run
+   * @return The number of operations done, which the time per operation is worked out from
+   */
+  protected abstract long run() throws IOException;
+
+  /**
+   * Reads the options every benchmark understands: -warmups N, -iterations N and -only name,name,...
+   * @param args The command line arguments
+   * @return The arguments which are not one of these options, in order, for the component to read
+   */
+  public static List<String> parseOptions(String[] args) {
+    List<String> rest = new ArrayList<String>();
+    for (int i=0; i<args.length; i++) {
+      if (args[i].equals("-warmups"))
+        warmups = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-iterations"))
+        iterations = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-only"))
+        only = Arrays.asList(args[++i].split(","));
+      else
+        rest.add(args[i]);
+    }
+    return rest;
+  }
+
+  /**
+   * Tells whether a benchmark was selected with -only
+   * @param name The name of the benchmark
+   * @return True if the benchmark should be run
+   */
+  public static boolean selected(String name) {
+    return only == null || only.contains(name);
+  }
+
+  /**
+   * Prints the column headings of the lines measure prints
+   * @param subject The heading of the column which says what was measured, such as "Graph"
+   */
+  public static void printHeader(String subject) {
+    System.out.println(String.format("%-16s %-25s %10s %12s", "Benchmark", subject, "ms/run", "ns/op"));
+    System.out.println(String.format("%-16s %-25s %10s %12s", "---------", subject.replaceAll(".", "-"), "------", "-----"));
+  }
+
+  /**
+   * Runs a benchmark, then prints the average time per run and per operation. Each measured run is also recorded in
+   *    the Metrics timer name/subject, so the spread between runs is reported at the end
+   * @param name The name of the benchmark, which -only selects by
+   * @param subject What the benchmark was run on, such as the size of the input
+   * @param benchmark The benchmark to run
+   */
+  public static void measure(String name, String subject, Benchmark benchmark) throws IOException {
+    if (!selected(name))
+      return;
+
+    for (int i=0; i<warmups; i++)
+      benchmark.run();
+
+    Metrics.Timer timer = Metrics.timer(name + "/" + subject);
+    long totalTime = 0;
+    long totalOperations = 0;
+    for (int i=0; i<iterations; i++) {
+      benchmark.elapsed = 0;
+      totalOperations += benchmark.run();
+      totalTime += benchmark.elapsed;
+      timer.record(benchmark.elapsed);
+    }
+
+    System.out.println(String.format("%-16s %-25s %10.2f %12.1f", name, subject,
+        totalTime / 1e6 / iterations, totalTime / (double) totalOperations));
+  }
+
+  /**
+   * Prints the spread of the measured runs, along with every other metric recorded along the way
+   * @param out Where the metrics are printed
+   */
+  public static void report(PrintStream out) {
+    out.println();
+    Metrics.report(out);
+    if (sink == 42)
+      out.println();
+  }
+}
@@ -0,0 +1,139 @@
+import java.util.Arrays;
+
+/**
+ *
+ * A growable array of ints, for collecting numbers without boxing each one into an Integer the way an
+ *    ArrayList<Integer> does. The backing array grows by half each time it fills up, so adding n numbers
+ *    copies them a logarithmic number of times. LongArray is the same for longs.
+ *
+ * VARIABLES
+ * ---------
+ * private int[] elements;
+ *      The backing array. Only the first 'size' entries are in use
+ *
+ * private int size;
+ *      The number of ints in the array
+ *
+ * METHODS
+ * -------
+ * public IntArray()
+ *      Constructor. Makes an empty array
+ *
+ * public IntArray(int capacity)
+ *      Constructor. Makes an empty array with room for 'capacity' ints
+ *
+ * public int size()
+ *      Returns the number of ints in the array
+ *
+ * public int get(int index), set(int index, int value)
+ *      Reads or replaces one int
+ *
+ * public void add(int value)
+ *      Appends an int, growing the array if it is full
+ *
+ * public void clear()
+ *      Removes every int, keeping the backing array
+ *
+ * public void ensureCapacity(int capacity)
+ *      Makes room for at least 'capacity' ints
+ *
+ * public int[] toArray()
+ *      Returns a copy of the ints, exactly as long as the array
+ *
+ * public int[] elements()
+ *      Returns the backing array itself, without copying
+ *
+ */
+
+public class IntArray {
+  private int[] elements;
+  private int size;
+
+  /**
+   * Constructs an empty array
+   */
+  public IntArray() {
+    this(16);
+  }
+
+  /**
+   * Constructs an empty array with room for the given number of ints before it has to grow
+   * @param capacity The number of ints to make room for
+   */
+  public IntArray(int capacity) {
+    elements = new int[Math.max(1, capacity)];
+  }
+
+  /**
+   * Returns the number of ints in the array
+   * @return The number of ints
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns one int
+   * Preconditions: 0 <= index < size()
+   * @param index The index of the int
+   * @return The int at that index
+   */
+  public int get(int index) {
+    return elements[index];
+  }
+
+  /**
+   * Replaces one int
+   * Preconditions: 0 <= index < size()
+   * @param index The index of the int
+   * @param value The new value
+   */
+  public void set(int index, int value) {
+    elements[index] = value;
+  }
+
+  /**
+   * Appends an int, growing the array by half if it is full
+   * @param value The int to be added
+   */
+  public void add(int value) {
+    if (size == elements.length)
+      ensureCapacity(size + 1);
+    elements[size++] = value;
+  }
+
+  /**
+   * Removes every int. The backing array is kept, so filling the array again does not allocate
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Makes room for at least the given number of ints, growing by at least half
+   * @param capacity The number of ints to make room for
+   */
+  public void ensureCapacity(int capacity) {
+    if (capacity <= elements.length)
+      return;
+    long grown = Math.max(capacity, elements.length + (elements.length >> 1) + 1L);
+    elements = Arrays.copyOf(elements, (int) Math.min(grown, Integer.MAX_VALUE - 8));
+  }
+
+  /**
+   * Returns a copy of the ints
+   * @return A new array holding exactly the ints of this one
+   */
+  public int[] toArray() {
+    return Arrays.copyOf(elements, size);
+  }
+
+  /**
+   * Returns the backing array itself, for passing to code which takes an array and a length. It may be longer than
+   *    size(), and stops being the backing array the next time this one grows
+   * @return The backing array
+   */
+  public int[] elements() {
+    return elements;
+  }
+}
@@ -0,0 +1,139 @@
+import java.util.Arrays;
+
+/**
+ *
+ * A growable array of longs, for collecting numbers without boxing each one into a Long the way an
+ *    ArrayList<Long> does. The backing array grows by half each time it fills up, so adding n numbers
+ *    copies them a logarithmic number of times. IntArray is the same for ints.
+ *
+ * VARIABLES
+ * ---------
+ * private long[] elements;
+ *      The backing array. Only the first 'size' entries are in use
+ *
+ * private int size;
+ *      The number of longs in the array
+ *
+ * METHODS
+ * -------
+ * public LongArray()
+ *      Constructor. Makes an empty array
+ *
+ * public LongArray(int capacity)
+ *      Constructor. Makes an empty array with room for 'capacity' longs
+ *
+ * public int size()
+ *      Returns the number of longs in the array
+ *
+ * public long get(int index), set(int index, long value)
+ *      Reads or replaces one long
+ *
+ * public void add(long value)
+ *      Appends a long, growing the array if it is full
+ *
+ * public void clear()
+ *      Removes every long, keeping the backing array
+ *
+ * public void ensureCapacity(int capacity)
+ *      Makes room for at least 'capacity' longs
+ *
+ * public long[] toArray()
+ *      Returns a copy of the longs, exactly as long as the array
+ *
+ * public long[] elements()
+ *      Returns the backing array itself, without copying
+ *
+ */
+
+public class LongArray {
+  private long[] elements;
+  private int size;
+
+  /**
+   * Constructs an empty array
+   */
+  public LongArray() {
+    this(16);
+  }
+
+  /**
+   * Constructs an empty array with room for the given number of longs before it has to grow
+   * @param capacity The number of longs to make room for
+   */
+  public LongArray(int capacity) {
+    elements = new long[Math.max(1, capacity)];
+  }
+
+  /**
+   * Returns the number of longs in the array
+   * @return The number of longs
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns one long
+   * Preconditions: 0 <= index < size()
+   * @param index The index of the long
+   * @return The long at that index
+   */
+  public long get(int index) {
+    return elements[index];
+  }
+
+  /**
+   * Replaces one long
+   * Preconditions: 0 <= index < size()
+   * @param index The index of the long
+   * @param value The new value
+   */
+  public void set(int index, long value) {
+    elements[index] = value;
+  }
+
+  /**
+   * Appends a long, growing the array by half if it is full
+   * @param value The long to be added
+   */
+  public void add(long value) {
+    if (size == elements.length)
+      ensureCapacity(size + 1);
+    elements[size++] = value;
+  }
+
+  /**
+   * Removes every long. The backing array is kept, so filling the array again does not allocate
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Makes room for at least the given number of longs, growing by at least half
+   * @param capacity The number of longs to make room for
+   */
+  public void ensureCapacity(int capacity) {
+    if (capacity <= elements.length)
+      return;
+    long grown = Math.max(capacity, elements.length + (elements.length >> 1) + 1L);
+    elements = Arrays.copyOf(elements, (int) Math.min(grown, Integer.MAX_VALUE - 8));
+  }
+
+  /**
+   * Returns a copy of the longs
+   * @return A new array holding exactly the longs of this one
+   */
+  public long[] toArray() {
+    return Arrays.copyOf(elements, size);
+  }
+
+  /**
+   * Returns the backing array itself, for passing to code which takes an array and a length. It may be longer than
+   *    size(), and stops being the backing array the next time this one grows
+   * @return The backing array
+   */
+  public long[] elements() {
+    return elements;
+  }
+}
@@ -0,0 +1,224 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ *
+ * A read only view of a whole file, memory mapped instead of read through a stream. Nothing is copied onto the heap:
+ *    the operating system loads pages when they are first touched and shares them with every other process reading
+ *    the same file, and there is no per-byte cost of a Reader or Scanner. A single mapping cannot be larger than 2GB,
+ *    so the file is mapped in chunks of 1GB, and reads which straddle two chunks are put together byte by byte.
+ * The mapping stays valid after close, which only releases the file handle.
+ *
+ * VARIABLES
+ * ---------
+ * private RandomAccessFile file;
+ *      The open file
+ *
+ * private MappedByteBuffer[] chunks;
+ *      The mapped chunks, in order. Byte p of the file is byte p % 2^30 of chunk p / 2^30
+ *
+ * private long size;
+ *      The size of the file in bytes
+ *
+ * METHODS
+ * -------
+ * public MappedFile(File file)
+ *      Constructor. Maps a whole file
+ *
+ * public long size()
+ *      Returns the size of the file in bytes
+ *
+ * public byte get(long position)
+ *      Reads one byte
+ *
+ * public void get(long position, byte[] destination, int offset, int length)
+ *      Copies a run of bytes onto the heap
+ *
+ * public int getInt(long position), getLong(long position)
+ *      Reads a big endian int or long
+ *
+ * public IntArray readIntegers()
+ *      Parses every whitespace separated decimal integer in the file
+ *
+ * private int estimateIntegers()
+ *      Estimates how many integers readIntegers will find, so its array can be sized once
+ *
+ * public void close()
+ *      Closes the file, leaving the mapping usable
+ *
+ */
+
+public class MappedFile implements Closeable {
+  private static final int CHUNK_SHIFT = 30;
+  private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+  private static final int SAMPLE_SIZE = 1 << 16;
+
+  private RandomAccessFile file;
+  private MappedByteBuffer[] chunks;
+  private long size;
+
+  /**
+   * Maps a whole file, read only
+   * @param file The file to be mapped
+   * @throws IOException If the file cannot be opened or mapped
+   */
+  public MappedFile(File file) throws IOException {
+    this.file = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = this.file.getChannel();
+      size = channel.size();
+      chunks = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT)];
+      for (int i=0; i<chunks.length; i++) {
+        long start = (long) i << CHUNK_SHIFT;
+        chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, 1L << CHUNK_SHIFT));
+      }
+    } catch (IOException e) {
+      this.file.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the size of the file
+   * @return The number of bytes in the file
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Reads one byte
+   * Preconditions: 0 <= position < size()
+   * @param position Where the byte is in the file
+   * @return The byte
+   */
+  public byte get(long position) {
+    return chunks[(int) (position >>> CHUNK_SHIFT)].get((int) (position & CHUNK_MASK));
+  }
+
+  /**
+   * Copies a run of bytes onto the heap, such as one line of a text file so that it can be decoded
+   * Preconditions: 0 <= position <= size() - length, and destination has room for length bytes from offset
+   * @param position Where the first byte is in the file
+   * @param destination Where the bytes are copied to
+   * @param offset Where the first byte goes in destination
+   * @param length The number of bytes to copy
+   */
+  public void get(long position, byte[] destination, int offset, int length) {
+    while (length > 0) {
+      int chunkOffset = (int) (position & CHUNK_MASK);
+      int count = (int) Math.min(length, CHUNK_MASK + 1 - chunkOffset);
+      // A duplicate has its own position, so threads reading the same file do not disturb each other
+      ByteBuffer chunk = chunks[(int) (position >>> CHUNK_SHIFT)].duplicate();
+      chunk.position(chunkOffset);
+      chunk.get(destination, offset, count);
+      position += count;
+      offset += count;
+      length -= count;
+    }
+  }
+
+  /**
+   * Reads a big endian int
+   * Preconditions: 0 <= position <= size() - 4
+   * @param position Where the int starts in the file
+   * @return The int
+   */
+  public int getInt(long position) {
+    int offset = (int) (position & CHUNK_MASK);
+    if (offset <= CHUNK_MASK - 3)
+      return chunks[(int) (position >>> CHUNK_SHIFT)].getInt(offset);
+    int value = 0;
+    for (int i=0; i<4; i++)
+      value = (value << 8) | (get(position + i) & 0xFF);
+    return value;
+  }
+
+  /**
+   * Reads a big endian long
+   * Preconditions: 0 <= position <= size() - 8
+   * @param position Where the long starts in the file
+   * @return The long
+   */
+  public long getLong(long position) {
+    int offset = (int) (position & CHUNK_MASK);
+    if (offset <= CHUNK_MASK - 7)
+      return chunks[(int) (position >>> CHUNK_SHIFT)].getLong(offset);
+    long value = 0;
+    for (int i=0; i<8; i++)
+      value = (value << 8) | (get(position + i) & 0xFF);
+    return value;
+  }
+
+  /**
+   * Parses every decimal integer in the file. The integers may have a leading minus sign, and are separated by any
+   *    mix of spaces, tabs and line breaks
+   * @return The integers, in the order they appear in the file
+   * @throws IOException If the file holds anything else, or an integer too large for an int
+   */
+  public IntArray readIntegers() throws IOException {
+    IntArray integers = new IntArray(estimateIntegers());
+    long position = 0;
+    while (position < size) {
+      byte next = get(position);
+      if (next == ' ' || next == '\t' || next == '\n' || next == '\r') {
+        position++;
+        continue;
+      }
+
+      long start = position;
+      boolean negative = next == '-';
+      if (negative)
+        position++;
+      long value = 0;
+      while (position < size && value <= Integer.MAX_VALUE + 1L) {
+        next = get(position);
+        if (next < '0' || next > '9')
+          break;
+        value = value * 10 + (next - '0');
+        position++;
+      }
+      if (negative)
+        value = -value;
+      boolean separated = position == size || next == ' ' || next == '\t' || next == '\n' || next == '\r';
+      if (position == start + (negative ? 1 : 0) || !separated || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+        throw new IOException("Not an integer at byte " + start);
+      integers.add((int) value);
+    }
+    return integers;
+  }
+
+  /**
+   * Estimates how many integers readIntegers will find, by counting the runs of non-space bytes in the first 64KB and
+   *    scaling that up to the whole file. A file no larger than the sample is counted exactly, so its array never grows
+   * @return The estimated number of integers, with an eighth added in case the rest of the file is denser
+   */
+  private int estimateIntegers() {
+    long sample = Math.min(size, SAMPLE_SIZE);
+    long count = 0;
+    boolean inInteger = false;
+    for (long position=0; position<sample; position++) {
+      byte next = get(position);
+      boolean separator = next == ' ' || next == '\t' || next == '\n' || next == '\r';
+      if (!separator && !inInteger)
+        count++;
+      inInteger = !separator;
+    }
+    if (sample < size)
+      count = count * size / sample + count * size / sample / 8;
+    return (int) Math.min(Integer.MAX_VALUE - 8, Math.max(16, count));
+  }
+
+  /**
+   * Closes the file. Values already read, and the mapping itself, stay usable
+   * @throws IOException If the file cannot be closed
+   */
+  public void close() throws IOException {
+    file.close();
+  }
+}
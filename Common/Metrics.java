@@ -0,0 +1,210 @@
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * A registry of named counters and timers, shared by the whole program, so that code anywhere can record how often
+ *    and how long something happens and a benchmark or main method can print it all at the end. Looking a metric up
+ *    by name creates it the first time, and the same object is returned every time after, so hot code should look it
+ *    up once and keep it. Every metric can be updated from many threads at once without locking.
+ * This is a class who's methods are all static
+ *
+ * VARIABLES
+ * ---------
+ * private static Map<String, Counter> counters;
+ * private static Map<String, Timer> timers;
+ *      Every metric created so far, by name
+ *
+ * METHODS
+ * -------
+ * public static Counter counter(String name)
+ *      Returns the counter with the given name, creating it if needed
+ *
+ * public static Timer timer(String name)
+ *      Returns the timer with the given name, creating it if needed
+ *
+ * public static void report(PrintStream out)
+ *      Prints every metric, sorted by name
+ *
+ * public static void reset()
+ *      Forgets every metric
+ *
+ */
+
+public class Metrics {
+  private static Map<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+  private static Map<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+
+  /**
+   * Returns the counter with the given name, creating it the first time
+   * @param name The name of the counter, such as "EdgeListImport.edges"
+   * @return The counter
+   */
+  public static Counter counter(String name) {
+    Counter counter = counters.get(name);
+    if (counter == null) {
+      counters.putIfAbsent(name, new Counter());
+      counter = counters.get(name);
+    }
+    return counter;
+  }
+
+  /**
+   * Returns the timer with the given name, creating it the first time
+   * @param name The name of the timer, such as "EdgeListImport.sort"
+   * @return The timer
+   */
+  public static Timer timer(String name) {
+    Timer timer = timers.get(name);
+    if (timer == null) {
+      timers.putIfAbsent(name, new Timer());
+      timer = timers.get(name);
+    }
+    return timer;
+  }
+
+  /**
+   * Prints every counter with its value, then every timer with the number of times it was recorded and the total,
+   *    mean, smallest and largest time in milliseconds, each sorted by name
+   * @param out Where the metrics are printed
+   */
+  public static void report(PrintStream out) {
+    for (Map.Entry<String, Counter> entry : new TreeMap<String, Counter>(counters).entrySet())
+      out.println(String.format("%-40s %14d", entry.getKey(), entry.getValue().get()));
+    if (!timers.isEmpty())
+      out.println(String.format("%-40s %8s %12s %10s %10s %10s", "Timer", "count", "total ms", "mean ms", "min ms", "max ms"));
+    for (Map.Entry<String, Timer> entry : new TreeMap<String, Timer>(timers).entrySet()) {
+      Timer timer = entry.getValue();
+      out.println(String.format("%-40s %8d %12.2f %10.3f %10.3f %10.3f", entry.getKey(), timer.getCount(),
+          timer.getTotal() / 1e6, timer.getMean() / 1e6, timer.getMin() / 1e6, timer.getMax() / 1e6));
+    }
+  }
+
+  /**
+   * Forgets every metric. Counters and timers that are still held keep working, but are no longer reported
+   */
+  public static void reset() {
+    counters.clear();
+    timers.clear();
+  }
+
+  /**
+   *
+   * A number which only goes up, such as the number of edges imported
+   *
+   */
+  public static class Counter {
+    private LongAdder value = new LongAdder();
+
+    /**
+     * Adds one to the counter
+     */
+    public void increment() {
+      value.increment();
+    }
+
+    /**
+     * Adds to the counter
+     * @param amount The amount to add
+     */
+    public void add(long amount) {
+      value.add(amount);
+    }
+
+    /**
+     * Returns the value of the counter
+     * @return The sum of everything added so far
+     */
+    public long get() {
+      return value.sum();
+    }
+  }
+
+  /**
+   *
+   * Durations of something which happens repeatedly, such as one phase of a build. Use it as
+   *    long start = timer.start(); ... timer.stop(start);
+   *
+   */
+  public static class Timer {
+    private LongAdder count = new LongAdder();
+    private LongAdder total = new LongAdder();
+    private AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Returns the current time, to be passed to stop
+     * @return The current value of System.nanoTime
+     */
+    public long start() {
+      return System.nanoTime();
+    }
+
+    /**
+     * Records the time since start was called
+     * @param start What start returned
+     * @return The time recorded, in nanoseconds
+     */
+    public long stop(long start) {
+      long elapsed = System.nanoTime() - start;
+      record(elapsed);
+      return elapsed;
+    }
+
+    /**
+     * Records a duration measured some other way
+     * @param nanos The duration in nanoseconds
+     */
+    public void record(long nanos) {
+      count.increment();
+      total.add(nanos);
+      min.accumulateAndGet(nanos, Math::min);
+      max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Returns the number of durations recorded
+     * @return The number of durations
+     */
+    public long getCount() {
+      return count.sum();
+    }
+
+    /**
+     * Returns the sum of the durations recorded
+     * @return The total in nanoseconds
+     */
+    public long getTotal() {
+      return total.sum();
+    }
+
+    /**
+     * Returns the average duration
+     * @return The mean in nanoseconds, or 0 if nothing has been recorded
+     */
+    public double getMean() {
+      long count = getCount();
+      return count == 0 ? 0 : getTotal() / (double) count;
+    }
+
+    /**
+     * Returns the shortest duration
+     * @return The shortest in nanoseconds, or 0 if nothing has been recorded
+     */
+    public long getMin() {
+      return getCount() == 0 ? 0 : min.get();
+    }
+
+    /**
+     * Returns the longest duration
+     * @return The longest in nanoseconds, or 0 if nothing has been recorded
+     */
+    public long getMax() {
+      return getCount() == 0 ? 0 : max.get();
+    }
+  }
+}
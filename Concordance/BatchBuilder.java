@@ -0,0 +1,316 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ *
+ * Class: BatchBuilder
+ *
+ * This class builds a whole concordance at once, by sorting instead of inserting. Adding a word to a
+ *    Tree2345 finds its Entry and appends to it, one word at a time, growing its arrays as it goes; here
+ *    every word is only given a vocabulary id and written down in flat arrays indexed by token number.
+ *    When every word has been added, the tokens are sorted by word id with a counting sort: ids are small
+ *    and dense, so one pass counts the occurences of each word, every Entry's arrays are allocated at
+ *    exactly that size, and a second pass drops each token into its word's next free slot. The sort is
+ *    stable, so every word's occurences stay in document order. The entries are then sorted by word and
+ *    handed to the tree's bulk loader, which creates every node once. Words must be added in document
+ *    order, and a word's position is its token number, counted from 0, which is how Concordance numbers them.
+ * A document can also be collected by several builders at once, one per stretch of it, which are then joined.
+ *    Joining merges each part's vocabulary into the first part's, so a word has one id wherever it was found,
+ *    and notes where each part's lines belong, but copies no tokens. The counting sort then runs on every part
+ *    in parallel: each part counts its own occurences of each word, a word's slots are handed out to the parts
+ *    in document order, and each part drops its tokens into its own slots, so the sort is still stable.
+ *
+ * VARIABLES
+ * ---------
+ * private Vocabulary vocabulary
+ *    Every word added so far. Ids are handed out in the order words are first seen
+ *
+ * private IntArray tokenIds
+ *    For each token, the vocabulary id of its word
+ *
+ * private IntArray tokenLines
+ *    For each token, the index in the line tables of the line it is on
+ *
+ * private IntArray lineParagraphs
+ * private IntArray lineNumbers
+ *    For each line that has a token on it, its paragraph number and its line number in that paragraph
+ *
+ * private BatchBuilder[] parts
+ *    The builders whose tokens build sorts, in document order. Just this one unless others were joined to it
+ *
+ * private int[] globalIds
+ *    For a part joined to another builder, the id in the joined vocabulary of each of its words, until build
+ *    renumbers its tokens with them. Null otherwise
+ *
+ * private int headParagraph, headLine, nextParagraph
+ *    For a part joined to another builder, the paragraph its paragraph 0 belongs to, the number of lines of
+ *    that paragraph before the part, and the paragraph its paragraph 1 is
+ *
+ * METHODS
+ * -------
+ * public BatchBuilder();
+ *    Constructs a builder with no words
+ *
+ * public int size();
+ *    Returns the number of words added so far
+ *
+ * public void add(String word, int paragraph, int line);
+ *    Adds the next word of the document
+ *
+ * static BatchBuilder join(BatchBuilder[] parts, int[] paragraphs, int[] lines, int[] nextParagraphs);
+ *    Joins builders which each hold one stretch of a document into one builder holding all of it
+ *
+ * public Tree2345 build();
+ *    Sorts every word added and builds the tree holding them
+ *
+ * public Tree2345 build(double fillFactor);
+ *    Sorts every word added and builds a tree whose nodes are the given fraction full
+ *
+ * private int[] count(int words);
+ *    Renumbers a part's tokens into the joined vocabulary and lines, and counts its occurences of each word
+ *
+ * private void fill(int[] slots, int firstToken, int[][] paragraphs, int[][] lines, int[][] positions);
+ *    Drops a part's tokens into its slots of each word's arrays
+ *
+ */
+public class BatchBuilder {
+  private Vocabulary vocabulary = new Vocabulary();
+  private IntArray tokenIds = new IntArray(1024);
+  private IntArray tokenLines = new IntArray(1024);
+  private IntArray lineParagraphs = new IntArray();
+  private IntArray lineNumbers = new IntArray();
+  private BatchBuilder[] parts = { this };
+  private int[] globalIds;
+  private int headParagraph, headLine, nextParagraph;
+
+  /**
+   * Constructs a builder with no words
+   * Postconditions: A new builder is created
+   */
+  public BatchBuilder() {
+  }
+
+  /**
+   * Returns the number of words added so far, which is also the position the next word will get
+   * @return The number of words added so far, to this builder and every builder joined to it
+   */
+  public int size() {
+    int size = 0;
+    for (BatchBuilder part : parts)
+      size += part.tokenIds.size();
+    return size;
+  }
+
+  /**
+   * Adds the next word of the document. Its position is the number of words added before it
+   * Preconditions: Words are added in document order, so paragraph and line never go backwards. Nothing has
+   *    been joined to this builder
+   * Postconditions: The word is recorded, but not put in any tree until build is called
+   * @param word The word that was found
+   * @param paragraph The paragraph that the word was found on
+   * @param line The line that the word was found on
+   */
+  public void add(String word, int paragraph, int line) {
+    int lastLine = lineParagraphs.size() - 1;
+    if (lastLine < 0 || lineParagraphs.get(lastLine) != paragraph || lineNumbers.get(lastLine) != line) {
+      if (lastLine >= 0 && (paragraph < lineParagraphs.get(lastLine)
+          || (paragraph == lineParagraphs.get(lastLine) && line < lineNumbers.get(lastLine))))
+        throw new IllegalArgumentException("Words must be added in document order: (" + paragraph + ","
+            + line + ") comes after (" + lineParagraphs.get(lastLine) + "," + lineNumbers.get(lastLine) + ")");
+      lineParagraphs.add(paragraph);
+      lineNumbers.add(line);
+      lastLine++;
+    }
+
+    int id = vocabulary.intern(word);
+    tokenIds.add(id);
+    tokenLines.add(lastLine);
+  }
+
+  /**
+   * Joins builders which each hold one stretch of a document, in order, to the first of them. Every part but the
+   *    first numbers its lines as if its stretch began a document at paragraph 0: its paragraph 0 is the rest of the
+   *    paragraph which was open when the stretch began, and paragraph p > 0 is the p-th paragraph to begin in it.
+   *    Only whoever split the document knows where each stretch began, so it says where each part's lines belong.
+   *    Only the vocabularies are merged here; the tokens stay where they are until build sorts them
+   * Preconditions: parts[0] numbered its lines as usual. No builder has been joined or built
+   * Postconditions: parts[0] holds every word of every part, as if they had all been added to it in order. No
+   *    more words should be added to any of them
+   * @param parts The builders, in document order
+   * @param paragraphs For each part but the first, the paragraph its paragraph 0 belongs to
+   * @param lines For each part but the first, the number of lines of that paragraph before the part's stretch
+   * @param nextParagraphs For each part but the first, the paragraph its paragraph 1 is
+   * @return parts[0], holding every word
+   */
+  static BatchBuilder join(BatchBuilder[] parts, int[] paragraphs, int[] lines, int[] nextParagraphs) {
+    BatchBuilder joined = parts[0];
+    for (int i = 1; i < parts.length; i++) {
+      BatchBuilder part = parts[i];
+      part.globalIds = new int[part.vocabulary.size()];
+      for (int id = 0; id < part.globalIds.length; id++)
+        part.globalIds[id] = joined.vocabulary.intern(part.vocabulary, id);
+      part.headParagraph = paragraphs[i];
+      part.headLine = lines[i];
+      part.nextParagraph = nextParagraphs[i];
+    }
+    joined.parts = Arrays.copyOf(parts, parts.length);
+    return joined;
+  }
+
+  /**
+   * Sorts every word added and builds a fully packed tree holding them
+   * @return A tree holding every word added, the same as adding them one at a time would
+   */
+  public Tree2345 build() {
+    return build(1.0);
+  }
+
+  /**
+   * Sorts every word added and builds the tree holding them. The builder should not be used afterwards,
+   *    since the tree takes over its vocabulary
+   * Postconditions: A new tree is created in which nodes hold about 4 * fillFactor entries each
+   * @param fillFactor How full each node should be, from 0 (exclusive) to 1 (every node holds 4 entries)
+   * @return A tree holding every word added, the same as adding them one at a time would
+   */
+  public Tree2345 build(double fillFactor) {
+    long start = System.nanoTime();
+    int words = vocabulary.size();
+
+    // Count the occurences of each word in each part
+    int[][] slots = new int[parts.length][];
+    ForkJoinPool.commonPool().invoke(new Sort(slots, null, null, null, null, words, 0, parts.length));
+
+    // Give each word arrays of exactly its number of occurences, and each part the run of slots in them which
+    // follows the previous part's, so the tokens stay in document order
+    int[][] paragraphs = new int[words][];
+    int[][] lines = new int[words][];
+    int[][] positions = new int[words][];
+    for (int id = 0; id < words; id++) {
+      int filled = 0;
+      for (int part = 0; part < parts.length; part++) {
+        int count = slots[part][id];
+        slots[part][id] = filled;
+        filled += count;
+      }
+      paragraphs[id] = new int[filled];
+      lines[id] = new int[filled];
+      positions[id] = new int[filled];
+    }
+    int[] firstTokens = new int[parts.length];
+    for (int part = 1; part < parts.length; part++)
+      firstTokens[part] = firstTokens[part - 1] + parts[part - 1].tokenIds.size();
+
+    // Drop every token into the next free slot of its word
+    ForkJoinPool.commonPool().invoke(new Sort(slots, firstTokens, paragraphs, lines, positions, words, 0, parts.length));
+
+    Entry[] entries = new Entry[words];
+    for (int id = 0; id < words; id++)
+      entries[id] = new Entry(vocabulary, id, paragraphs[id], lines[id], positions[id]);
+    Metrics.timer("BatchBuilder.sort").stop(start);
+
+    start = System.nanoTime();
+    Entry[] sorted = Arrays.copyOf(entries, entries.length);
+    Arrays.parallelSort(sorted);
+    Tree2345 tree = Tree2345.bulkLoad(vocabulary, entries, sorted, fillFactor);
+    Metrics.timer("BatchBuilder.load").stop(start);
+    return tree;
+  }
+
+  /**
+   * Renumbers a part's tokens into the vocabulary and the lines of the builder it was joined to, if it was
+   *    joined to one, then counts the occurences of each word in it
+   * Postconditions: Every token's id and line are the joined builder's
+   * @param words The number of words in the joined vocabulary
+   * @return The number of occurences of each word in this part, indexed by id
+   */
+  private int[] count(int words) {
+    int[] idOf = tokenIds.elements();
+    int count = tokenIds.size();
+    if (globalIds != null) {
+      for (int i = 0; i < count; i++)
+        idOf[i] = globalIds[idOf[i]];
+      for (int line = 0; line < lineParagraphs.size(); line++) {
+        int paragraph = lineParagraphs.get(line);
+        if (paragraph == 0)
+          lineNumbers.set(line, headLine + lineNumbers.get(line));
+        lineParagraphs.set(line, paragraph == 0 ? headParagraph : nextParagraph + paragraph - 1);
+      }
+      globalIds = null;
+    }
+
+    int[] counts = new int[words];
+    for (int i = 0; i < count; i++)
+      counts[idOf[i]]++;
+    return counts;
+  }
+
+  /**
+   * Drops each of a part's tokens into the next of its slots in its word's arrays, in document order
+   * Postconditions: Every slot this part was given is filled
+   * @param slots For each word, the first of this part's slots in the word's arrays. Moved past the filled slots
+   * @param firstToken The position of this part's first token in the whole document
+   * @param paragraphs For each word, the paragraph of each of its occurences
+   * @param lines For each word, the line of each of its occurences
+   * @param positions For each word, the position of each of its occurences
+   */
+  private void fill(int[] slots, int firstToken, int[][] paragraphs, int[][] lines, int[][] positions) {
+    int[] idOf = tokenIds.elements();
+    int[] lineOf = tokenLines.elements();
+    int[] paragraphOf = lineParagraphs.elements();
+    int[] numberOf = lineNumbers.elements();
+    int count = tokenIds.size();
+    for (int token = 0; token < count; token++) {
+      int id = idOf[token];
+      int slot = slots[id]++;
+      int tokenLine = lineOf[token];
+      paragraphs[id][slot] = paragraphOf[tokenLine];
+      lines[id][slot] = numberOf[tokenLine];
+      positions[id][slot] = firstToken + token;
+    }
+  }
+
+  /**
+   *
+   * Runs one pass of the counting sort on a range of parts, split in half until each task has one part.
+   *    Without arrays to fill it counts each part's words, and with them it drops each part's tokens in
+   *
+   */
+  private class Sort extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private int[][] slots;
+    private int[] firstTokens;
+    private int[][] paragraphs, lines, positions;
+    private int words;
+    private int from, to;
+
+    private Sort(int[][] slots, int[] firstTokens, int[][] paragraphs, int[][] lines, int[][] positions, int words,
+        int from, int to) {
+      this.slots = slots;
+      this.firstTokens = firstTokens;
+      this.paragraphs = paragraphs;
+      this.lines = lines;
+      this.positions = positions;
+      this.words = words;
+      this.from = from;
+      this.to = to;
+    }
+
+    protected void compute() {
+      if (to - from > 1) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new Sort(slots, firstTokens, paragraphs, lines, positions, words, from, middle),
+            new Sort(slots, firstTokens, paragraphs, lines, positions, words, middle, to));
+        return;
+      }
+      if (from == to)
+        return;
+
+      if (paragraphs == null)
+        slots[from] = parts[from].count(words);
+      else
+        parts[from].fill(slots[from], firstTokens[from], paragraphs, lines, positions);
+    }
+  }
+}
@@ -1,7 +1,10 @@
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.LinkedList;
-import java.util.Scanner;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -18,6 +21,18 @@ import java.util.regex.Pattern;
  * private static File file
  * 		A file object for the filename given on the command line
  * 
+ * private static boolean batch
+ * 		True if the tree should be built with a BatchBuilder, when -batch is given before the filename
+ * 
+ * private static final long CHUNK_SIZE
+ * 		The number of bytes in each chunk that batchBuildTree tokenizes in parallel
+ * 
+ * static final Pattern WORD
+ * 		The pattern that every word matches
+ * 
+ * private static final Pattern OTHER_BREAKS
+ * 		The line breaks other than \n and \r
+ * 
  * 
  * METHODS
  * -------
@@ -28,17 +43,45 @@ import java.util.regex.Pattern;
  * 		Reads all the input from a file, extracts the words, stores them in a (2,5)-tree along with their paragraph
  * 		and line number. Then it prints out the tree.
  * 
+ * public static Tree2345 buildTree(File file)
+ * 		Reads all the input from a file and returns the (2,5)-tree of its words, for programs which use the
+ * 		concordance as a library
+ * 
+ * public static Tree2345 batchBuildTree(File file)
+ * 		Reads all the input from a file and builds the same tree by sorting all of its words at once, tokenizing
+ * 		chunks of the file in parallel
+ * 
+ * static int split(File file, Tree2345 tree, BatchBuilder builder)
+ * 		Reads a file through a MappedFile, one line at a time, and passes every word to a tree or a batch builder.
+ * 		ConcordanceBenchmark calls it too, so that it measures the same tokenizer
+ * 
+ * private static void split(MappedFile in, long start, long size, Cursor cursor, Tree2345 tree, BatchBuilder builder)
+ * 		Extracts the words from a range of a file, starting from where the tokenizer was
+ * 
+ * private static long[] chunks(MappedFile in)
+ * 		Splits a file into chunks of whole lines which can be tokenized independently
+ * 
  */
 public class Concordance {
 	private static File file;
+	private static boolean batch;
+	private static final long CHUNK_SIZE = 1L << 23; // The number of bytes tokenized by one task
+
+	// Starts with a letter or number and may may letters, numbers,
+	// hyphens, or apostrophes afterwards
+	static final Pattern WORD = Pattern.compile("[a-zA-z0-9][a-zA-Z0-9-']*");
+
+	// The line breaks which are not ASCII, so only lines with other bytes in them need to be split on them
+	private static final Pattern OTHER_BREAKS = Pattern.compile("[\u0085\u2028\u2029]");
 
     /**
      * Reads in a filename from command line and calls for the file to be parsed
      * Preconditions: The argument on the command line is a valid file path
-     * @param args[] Command line arguments; The first one should be a valid file path
+     * @param args[] Command line arguments; An optional -batch, then a valid file path
      */
 	public static void main(String args[]) {
-		file = new File(args[0]);
+		batch = args.length > 1 && args[0].equals("-batch");
+		file = new File(args[batch ? 1 : 0]);
 		parseFile();
 	}
 
@@ -49,62 +92,255 @@ public class Concordance {
      * Postconditions: The contents of the tree have been printed out to stdout
      */
 	private static void parseFile() {
-		Tree2345 tree = new Tree2345();
-
-		Scanner scanner = null;
+		Tree2345 tree;
 		try {
-			scanner = new Scanner(file);
+			tree = batch ? batchBuildTree(file) : buildTree(file);
 		} catch (FileNotFoundException e) {
-			e.printStackTrace();
+			System.out.println("That file cannot be found: " + file);
+			return;
+		} catch (IOException e) {
+			System.out.println("That file cannot be read: " + file);
+			return;
 		}
 
-		LinkedList<LinkedList<String>> allParagraphs = new LinkedList<LinkedList<String>>();
-		LinkedList<String> paragraph = new LinkedList<String>();
-
-		// First go through and seperate out paragraphs
-		while (scanner.hasNext()) {
-			String nextLine = scanner.nextLine();
-			if (nextLine.equals("")) {
-				allParagraphs.add(paragraph);
-				paragraph = new LinkedList<String>();
-			} else {
-				paragraph.add(nextLine);
-			}
-			if (!scanner.hasNext()) {
-				allParagraphs.add(paragraph);
-			}
-		}
+		//Output everything
+		System.out.println(tree);
+	}
+
+    /**
+     * Reads all the input from a file, extracts the words, and stores them in a (2,5)-tree along with their
+     * 		paragraph, line number and position
+     * @param file The file to be read
+     * @return A tree holding every word of the file
+     * @throws IOException If the file does not exist or cannot be read
+     */
+	public static Tree2345 buildTree(File file) throws IOException {
+		Tree2345 tree = new Tree2345();
+		split(file, tree, null);
+		return tree;
+	}
 
-		// Remove empty paragraphs
-		LinkedList<LinkedList<String>> cleanedParagraphs = new LinkedList<LinkedList<String>>();
-		for (int i = 0; i < allParagraphs.size(); i++) {
-			if (allParagraphs.get(i).size() > 0) {
-				cleanedParagraphs.add(allParagraphs.get(i));
+    /**
+     * Reads all the input from a file and builds the same tree as buildTree, but by sorting every word of the
+     * 		file at once with a BatchBuilder instead of adding them to the tree one at a time. This is faster
+     * 		for large files, but holds every word of the file in memory until the tree is built. The file is
+     * 		split into chunks of whole lines which are tokenized in parallel, each into its own BatchBuilder,
+     * 		and the builders are then joined, with each chunk's lines numbered from where the one before ended
+     * @param file The file to be read
+     * @return A tree holding every word of the file
+     * @throws IOException If the file does not exist or cannot be read
+     */
+	public static Tree2345 batchBuildTree(File file) throws IOException {
+		BatchBuilder builder;
+		MappedFile in = new MappedFile(file);
+		try {
+			long start = System.nanoTime();
+			long[] bounds = chunks(in);
+			Cursor[] cursors = new Cursor[bounds.length - 1];
+			BatchBuilder[] builders = new BatchBuilder[bounds.length - 1];
+			ForkJoinPool.commonPool().invoke(new Split(in, bounds, cursors, builders, 0, builders.length));
+			Metrics.timer("Concordance.split").stop(start);
+
+			// Work out where each chunk's paragraphs and lines belong, from where the chunk before it ended
+			start = System.nanoTime();
+			int[] paragraphs = new int[builders.length];
+			int[] lines = new int[builders.length];
+			int[] nextParagraphs = new int[builders.length];
+			int paragraph = cursors[0].paragraph;
+			int line = cursors[0].line;
+			for (int i = 1; i < builders.length; i++) {
+				Cursor cursor = cursors[i];
+				paragraphs[i] = paragraph;
+				lines[i] = line;
+				// An empty line at the very start of a chunk only ends the paragraph if the paragraph has a line
+				nextParagraphs[i] = cursor.headLines == 0 && line == 0 ? paragraph : paragraph + 1;
+				if (cursor.headLines < 0) {
+					line += cursor.line;
+				} else {
+					paragraph = nextParagraphs[i] + cursor.paragraph - 1;
+					line = cursor.line;
+				}
 			}
+			builder = BatchBuilder.join(builders, paragraphs, lines, nextParagraphs);
+			Metrics.timer("Concordance.join").stop(start);
+		} finally {
+			in.close();
 		}
+		return builder.build();
+	}
 
-		// Iterate through paragraphs
-		for (int i = 0; i < cleanedParagraphs.size(); i++) {
-			paragraph = cleanedParagraphs.get(i);
+    /**
+     * Reads all the input from a file, extracts the words, and passes each one with its paragraph, line
+     * 		number and position to either a tree or a batch builder. The file is memory mapped and read one
+     * 		line at a time, so it is never held on the heap as a whole. Lines end at \n, \r\n, \r, \u0085,
+     * 		\u2028 or \u2029, paragraphs end at empty lines, and runs of empty lines are a single break
+     * Preconditions: At most one of tree and builder is not null. If both are null the words are only counted
+     * @param file The file to be read, in UTF-8
+     * @param tree The tree to add the words to, or null
+     * @param builder The builder to add the words to, or null
+     * @return The number of words in the file
+     * @throws IOException If the file does not exist or cannot be read
+     */
+	static int split(File file, Tree2345 tree, BatchBuilder builder) throws IOException {
+		MappedFile in = new MappedFile(file);
+		try {
+			Cursor cursor = new Cursor(1);
+			split(in, 0, in.size(), cursor, tree, builder);
+			return cursor.position;
+		} finally {
+			in.close();
+		}
+	}
 
-			// Iterate through lines
-			for (int j = 0; j < paragraph.size(); j++) {
-				String line = paragraph.get(j).toLowerCase();
+    /**
+     * Extracts the words from a range of a mapped file which starts at the start of a line, the same way
+     * 		as split(File, Tree2345, BatchBuilder), starting from and moving the given cursor
+     * Preconditions: At most one of tree and builder is not null, and the range ends at the end of a line
+     * Postconditions: The cursor is where the tokenizer is at the end of the range
+     * @param in The mapped file
+     * @param start Where the range starts
+     * @param size Where the range ends
+     * @param cursor The paragraph, line and number of words before the range
+     * @param tree The tree to add the words to, or null
+     * @param builder The builder to add the words to, or null
+     */
+	private static void split(MappedFile in, long start, long size, Cursor cursor, Tree2345 tree,
+			BatchBuilder builder) {
+		byte[] bytes = new byte[256];
+		int paragraph = cursor.paragraph;
+		int line = cursor.line;
+		int position = cursor.position;
+		int headLines = cursor.headLines;
+		while (start < size) {
+			// Find the end of the line, noting whether it has anything but ASCII in it
+			long end = start;
+			boolean ascii = true;
+			byte b = 0;
+			while (end < size && (b = in.get(end)) != '\n' && b != '\r') {
+				ascii &= b >= 0;
+				end++;
+			}
+			int length = (int) (end - start);
+			if (bytes.length < length)
+				bytes = new byte[Math.max(length, 2 * bytes.length)];
+			in.get(start, bytes, 0, length);
+			start = end + (end + 1 < size && b == '\r' && in.get(end + 1) == '\n' ? 2 : 1);
 
-				// Starts with a letter or number and may may letters, numbers,
-				// hyphens, or apostrophes afterwards
-				Pattern p = Pattern.compile("[a-zA-z0-9][a-zA-Z0-9-']*");
-				Matcher m = p.matcher(line);
+			String text = new String(bytes, 0, length, StandardCharsets.UTF_8);
+			String[] pieces = ascii ? new String[] { text } : OTHER_BREAKS.split(text, -1);
+			for (String piece : pieces) {
+				if (piece.isEmpty()) {
+					// Paragraph 0 is a chunk's head, so its first empty line always ends it, and the lines before are noted
+					if (paragraph == 0)
+						headLines = line;
+					if (line > 0 || paragraph == 0) {
+						paragraph++;
+						line = 0;
+					}
+					continue;
+				}
+				line++;
+				String lower = piece.toLowerCase();
+				Matcher m = WORD.matcher(lower);
 				while (m.find()) {
-					int start = m.start();
-					int end = m.end();
-					tree.add(line.substring(start, end), i + 1, j + 1);
+					String word = lower.substring(m.start(), m.end());
+					if (tree != null)
+						tree.add(word, paragraph, line, position);
+					else if (builder != null)
+						builder.add(word, paragraph, line);
+					position++;
 				}
 			}
 		}
+		cursor.paragraph = paragraph;
+		cursor.line = line;
+		cursor.position = position;
+		cursor.headLines = headLines;
+	}
 
-		//Output everything
-		System.out.println(tree);
+    /**
+     * Splits a file into chunks of about CHUNK_SIZE bytes, each ending just after a line break, so no
+     * 		line is split between two chunks. A \r\n stays in one chunk
+     * @param in The mapped file
+     * @return The byte offset where each chunk starts, followed by the size of the file
+     */
+	private static long[] chunks(MappedFile in) {
+		long size = in.size();
+		long[] bounds = new long[(int) (size / CHUNK_SIZE) + 2];
+		int count = 0;
+		bounds[count++] = 0;
+		long start = 0;
+		while (size - start > CHUNK_SIZE) {
+			long end = start + CHUNK_SIZE;
+			// Move the end forward to just after the next \n, or the next \r which is not followed by one
+			byte b = 0;
+			while (end < size && (b = in.get(end++)) != '\n' && !(b == '\r' && (end == size || in.get(end) != '\n')))
+				;
+			if (end >= size)
+				break;
+			bounds[count++] = end;
+			start = end;
+		}
+		bounds[count++] = size;
+		return Arrays.copyOf(bounds, count);
+	}
 
+    /**
+     *
+     * Where the tokenizer is in a file: the paragraph it is in, the number of lines of that paragraph so
+     * 		far, and the number of words so far. A chunk other than the first cannot know where the chunk
+     * 		before it ended, so it starts at paragraph 0, its head, and notes in headLines how many lines
+     * 		came before its first empty line, or -1 if it has none
+     *
+     */
+	private static class Cursor {
+		private int paragraph;
+		private int line;
+		private int position;
+		private int headLines = -1;
+
+		private Cursor(int paragraph) {
+			this.paragraph = paragraph;
+		}
+	}
+
+    /**
+     *
+     * Tokenizes a range of chunks, split in half until each task has one chunk. Each chunk's words go into
+     * 		its own BatchBuilder, and the first chunk starts at paragraph 1 the way split(File) does
+     *
+     */
+	private static class Split extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private MappedFile in;
+		private long[] bounds;
+		private Cursor[] cursors;
+		private BatchBuilder[] builders;
+		private int from, to;
+
+		private Split(MappedFile in, long[] bounds, Cursor[] cursors, BatchBuilder[] builders, int from, int to) {
+			this.in = in;
+			this.bounds = bounds;
+			this.cursors = cursors;
+			this.builders = builders;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Split(in, bounds, cursors, builders, from, middle),
+						new Split(in, bounds, cursors, builders, middle, to));
+				return;
+			}
+			if (from == to)
+				return;
+
+			cursors[from] = new Cursor(from == 0 ? 1 : 0);
+			builders[from] = new BatchBuilder();
+			split(in, bounds[from], bounds[from + 1], cursors[from], null, builders[from]);
+		}
 	}
 }
@@ -0,0 +1,158 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *
+ * Class: ConcordanceBenchmark
+ *
+ * This class measures how fast the concordance is built and queried. For each corpus size it generates a
+ *    deterministic corpus with CorpusGenerator, then times tokenization, Tree2345.add, BatchBuilder,
+ *    Tree2345.find, Entry.addOccurence on the most common words, and Tree2345.toString, through the Benchmark
+ *    harness in Common, which prints the average time per run and per operation.
+ * The corpus is read by Concordance.split, the tokenizer the command line uses, so tokenize is the time split
+ *    takes on its own, and add and batch are the time Concordance takes to build each kind of tree from the file,
+ *    tokenizing included. batch is Concordance.batchBuildTree, which tokenizes chunks of the file in parallel, so
+ *    it depends on the number of cores as well; its phases are in the Concordance.split, Concordance.join,
+ *    BatchBuilder.sort and BatchBuilder.load timers.
+ *
+ * METHODS
+ * -------
+ * public static void main(String[] args)
+ *    Parses the options, runs every benchmark on a corpus of each of the given sizes, then prints the
+ *    spread of the measured runs from Metrics
+ *
+ * private static void runAll(long size)
+ *    Generates a corpus of the given size and runs every selected benchmark on it
+ *
+ */
+public class ConcordanceBenchmark {
+  private static final int FIND_OPERATIONS = 1000000;
+  private static final int HOT_OCCURENCES = 1000000;
+
+  /**
+   * Parses the options and runs every benchmark on a corpus of each of the given sizes
+   *
+   * @param args Options followed by corpus sizes. The options are those of Benchmark.parseOptions, with the names
+   *    tokenize, add, batch, find, addOccurence and toString. The sizes default to 1MB
+   */
+  public static void main(String[] args) throws IOException {
+    List<String> sizes = Benchmark.parseOptions(args);
+    if (sizes.isEmpty())
+      sizes = Arrays.asList("1MB");
+
+    Benchmark.printHeader("Corpus (bytes)");
+    for (String size : sizes)
+      runAll(CorpusGenerator.parseSize(size));
+
+    Benchmark.report(System.out);
+  }
+
+  /**
+   * Generates a corpus of the given size and runs every selected benchmark on it
+   *
+   * @param size The size of the corpus in bytes
+   */
+  private static void runAll(long size) throws IOException {
+    final File corpus = File.createTempFile("corpus", ".txt");
+    corpus.deleteOnExit();
+    Writer out = new BufferedWriter(new FileWriter(corpus), 1 << 16);
+    try {
+      new CorpusGenerator(42).write(out, size);
+    } finally {
+      out.close();
+    }
+    String subject = String.valueOf(size);
+
+    Benchmark.measure("tokenize", subject, new Benchmark() {
+      protected long run() throws IOException {
+        long start = System.nanoTime();
+        long words = Concordance.split(corpus, null, null);
+        elapsed = System.nanoTime() - start;
+        return words;
+      }
+    });
+
+    // Keep the last tree that was built for the query benchmarks. Each run drops the tree before building the next,
+    // so only one is ever alive
+    final Tree2345[] built = { null };
+    Benchmark.measure("add", subject, new Benchmark() {
+      protected long run() throws IOException {
+        built[0] = null;
+        long start = System.nanoTime();
+        built[0] = new Tree2345();
+        long words = Concordance.split(corpus, built[0], null);
+        elapsed = System.nanoTime() - start;
+        return words;
+      }
+    });
+
+    // The same words as add, collected by a BatchBuilder per chunk of the file and then built all at once
+    final long words = Benchmark.selected("batch") ? Concordance.split(corpus, null, null) : 0;
+    Benchmark.measure("batch", subject, new Benchmark() {
+      protected long run() throws IOException {
+        built[0] = null;
+        long start = System.nanoTime();
+        built[0] = Concordance.batchBuildTree(corpus);
+        elapsed = System.nanoTime() - start;
+        return words;
+      }
+    });
+    if (built[0] == null && (Benchmark.selected("find") || Benchmark.selected("toString"))) {
+      built[0] = new Tree2345();
+      Concordance.split(corpus, built[0], null);
+    }
+
+    // Look up words from the whole vocabulary, uniformly, plus as many words that are never there
+    final CorpusGenerator generator = new CorpusGenerator(42);
+    final String[] queries = new String[FIND_OPERATIONS];
+    Random random = new Random(7);
+    for (int i = 0; i < queries.length; i++) {
+      String word = generator.getWord(random.nextInt(generator.vocabularySize()));
+      queries[i] = i % 2 == 0 ? word : word + "x";
+    }
+    Benchmark.measure("find", subject, new Benchmark() {
+      protected long run() {
+        long start = System.nanoTime();
+        int found = 0;
+        for (String query : queries) {
+          if (built[0].find(query))
+            found++;
+        }
+        elapsed = System.nanoTime() - start;
+        sink += found;
+        return queries.length;
+      }
+    });
+
+    Benchmark.measure("addOccurence", subject, new Benchmark() {
+      protected long run() {
+        long start = System.nanoTime();
+        for (int rank = 0; rank < 10; rank++) {
+          Entry entry = new Entry(generator.getWord(rank), 1, 1, 0);
+          for (int i = 1; i < HOT_OCCURENCES / 10; i++)
+            entry.addOccurence(i / 64 + 1, i % 64 + 1, i);
+          sink += entry.size();
+        }
+        elapsed = System.nanoTime() - start;
+        return HOT_OCCURENCES;
+      }
+    });
+
+    Benchmark.measure("toString", subject, new Benchmark() {
+      protected long run() {
+        long start = System.nanoTime();
+        sink += built[0].toString().length();
+        elapsed = System.nanoTime() - start;
+        return 1;
+      }
+    });
+
+    corpus.delete();
+  }
+}
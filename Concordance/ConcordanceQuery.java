@@ -0,0 +1,210 @@
+/**
+ *
+ * Class: ConcordanceQuery
+ *
+ * This class answers phrase and proximity queries over a concordance by intersecting the occurence
+ *    lists of its entries. The lists are sorted, so instead of stepping through them one occurence at a
+ *    time, each list is searched by galloping: the step size doubles until the target is passed and a
+ *    binary search finishes the job. A rare word can then be matched against a very common one without
+ *    reading most of the common word's occurences.
+ * This is a class who's methods are all static and has no class variables
+ *
+ * METHODS
+ * -------
+ * public static Entry phrase(Tree2345 tree, String phrase)
+ *    Finds every place where the words of a phrase appear one after another
+ *
+ * public static Entry near(Tree2345 tree, String word, String other, int lines)
+ *    Finds every occurence of a word which is within a number of lines of another word
+ *
+ * private static int gallopToPosition(Entry entry, int from, int position)
+ *    Finds the first occurence at or after an index whose word position is at least the given one
+ *
+ * private static int gallopToLine(Entry entry, int from, int paragraph, int line)
+ *    Finds the first occurence at or after an index which is not before the given paragraph and line
+ *
+ * private static boolean isBefore(Entry entry, int index, int paragraph, int line)
+ *    Determines whether an occurence comes before the given paragraph and line
+ *
+ */
+public class ConcordanceQuery {
+
+  /**
+   * Finds every place where the words of a phrase appear one after another, such as "to be or".
+   *    The word with the fewest occurences drives the search, and every other word is galloped to
+   *    the position where it would have to be for the phrase to match
+   * Preconditions: The words were added to the tree with their positions
+   * @param tree The concordance to be searched
+   * @param phrase The words to look for, separated by whitespace
+   * @return An Entry named after the phrase, holding the paragraph, line and position of the first word
+   *    of every match, or null if the phrase does not appear
+   */
+  public static Entry phrase(Tree2345 tree, String phrase) {
+    String[] words = phrase.trim().toLowerCase().split("\\s+");
+    Entry[] entries = new Entry[words.length];
+    int rarest = 0;
+    for (int i = 0; i < words.length; i++) {
+      entries[i] = tree.getEntry(words[i]);
+      if (entries[i] == null)
+        return null;
+      if (entries[i].size() < entries[rarest].size())
+        rarest = i;
+    }
+
+    Entry result = null;
+    int[] cursors = new int[words.length];
+    Entry driver = entries[rarest];
+    for (int d = 0; d < driver.size(); d++) {
+      int start = driver.getPosition(d) - rarest;
+      if (start < 0)
+        continue;
+
+      // Every other word must be exactly its offset away from the start of the phrase
+      boolean matches = true;
+      for (int i = 0; i < words.length && matches; i++) {
+        if (i == rarest)
+          continue;
+        cursors[i] = gallopToPosition(entries[i], cursors[i], start + i);
+        matches = cursors[i] < entries[i].size() && entries[i].getPosition(cursors[i]) == start + i;
+      }
+
+      if (matches) {
+        Entry first = entries[0];
+        int index = rarest == 0 ? d : cursors[0];
+        if (result == null)
+          result = new Entry(phrase, first.getParagraph(index), first.getLine(index), start);
+        else
+          result.addOccurence(first.getParagraph(index), first.getLine(index), start);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Finds every occurence of a word which is within a number of lines of another word in the same paragraph.
+   *    Whichever of the two words is rarer drives the search, and the other one is galloped to the start
+   *    of each window
+   * @param tree The concordance to be searched
+   * @param word The word whose occurences are returned
+   * @param other The word that has to be nearby
+   * @param lines How many lines apart the two words may be
+   * @return An Entry named after the word, holding every occurence of it which has the other word nearby,
+   *    or null if there are none
+   */
+  public static Entry near(Tree2345 tree, String word, String other, int lines) {
+    Entry entry = tree.getEntry(word);
+    Entry nearby = tree.getEntry(other);
+    if (entry == null || nearby == null)
+      return null;
+
+    Entry result = null;
+    if (entry.size() <= nearby.size()) {
+      // Check each occurence of the word for the other word in its window
+      int cursor = 0;
+      for (int i = 0; i < entry.size(); i++) {
+        int paragraph = entry.getParagraph(i);
+        int line = entry.getLine(i);
+        cursor = gallopToLine(nearby, cursor, paragraph, line - lines);
+        if (cursor < nearby.size() && nearby.getParagraph(cursor) == paragraph
+            && nearby.getLine(cursor) <= line + lines) {
+          if (result == null)
+            result = new Entry(word, paragraph, line, entry.getPosition(i));
+          else
+            result.addOccurence(paragraph, line, entry.getPosition(i));
+        }
+      }
+    } else {
+      // Collect the occurences of the word in the window around each occurence of the other word
+      int cursor = 0;
+      for (int i = 0; i < nearby.size(); i++) {
+        int paragraph = nearby.getParagraph(i);
+        int line = nearby.getLine(i);
+        cursor = gallopToLine(entry, cursor, paragraph, line - lines);
+        while (cursor < entry.size() && entry.getParagraph(cursor) == paragraph
+            && entry.getLine(cursor) <= line + lines) {
+          if (result == null)
+            result = new Entry(word, paragraph, entry.getLine(cursor), entry.getPosition(cursor));
+          else
+            result.addOccurence(paragraph, entry.getLine(cursor), entry.getPosition(cursor));
+          cursor++;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Finds the first occurence at or after an index whose word position is at least the given one
+   * Preconditions: The entry's occurences all have positions
+   * @param entry The entry to be searched
+   * @param from The index to start searching from
+   * @param position The word position being searched for
+   * @return The index of the first such occurence, or entry.size() if there is none
+   */
+  private static int gallopToPosition(Entry entry, int from, int position) {
+    int size = entry.size();
+    int step = 1;
+    int low = from;
+    int high = from;
+
+    // Double the step until we pass the target, then binary search the last step
+    while (high < size && entry.getPosition(high) < position) {
+      low = high + 1;
+      high += step;
+      step *= 2;
+    }
+    high = Math.min(high, size);
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (entry.getPosition(middle) < position)
+        low = middle + 1;
+      else
+        high = middle;
+    }
+    return low;
+  }
+
+  /**
+   * Finds the first occurence at or after an index which is not before the given paragraph and line
+   * @param entry The entry to be searched
+   * @param from The index to start searching from
+   * @param paragraph The paragraph being searched for
+   * @param line The line being searched for
+   * @return The index of the first such occurence, or entry.size() if there is none
+   */
+  private static int gallopToLine(Entry entry, int from, int paragraph, int line) {
+    int size = entry.size();
+    int step = 1;
+    int low = from;
+    int high = from;
+
+    // Double the step until we pass the target, then binary search the last step
+    while (high < size && isBefore(entry, high, paragraph, line)) {
+      low = high + 1;
+      high += step;
+      step *= 2;
+    }
+    high = Math.min(high, size);
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (isBefore(entry, middle, paragraph, line))
+        low = middle + 1;
+      else
+        high = middle;
+    }
+    return low;
+  }
+
+  /**
+   * Determines whether an occurence comes before the given paragraph and line
+   * @param entry The entry holding the occurence
+   * @param index The index of the occurence
+   * @param paragraph The paragraph to compare against
+   * @param line The line to compare against
+   * @return True if the occurence is in an earlier paragraph, or an earlier line of the same paragraph
+   */
+  private static boolean isBefore(Entry entry, int index, int paragraph, int line) {
+    return entry.getParagraph(index) < paragraph
+        || (entry.getParagraph(index) == paragraph && entry.getLine(index) < line);
+  }
+}
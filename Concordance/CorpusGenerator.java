@@ -0,0 +1,248 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ *
+ * Class: CorpusGenerator
+ *
+ * This class generates synthetic text to build concordances from. Words are drawn from a made-up
+ *    vocabulary with a Zipfian distribution, so a few words are very common and most are rare, like
+ *    in real text. The same seed always produces the same corpus.
+ *
+ * VARIABLES
+ * ---------
+ * private String[] vocabulary
+ *    The words that can appear in the corpus, most common first
+ *
+ * private double[] cumulative
+ *    The cumulative probability of drawing each word of the vocabulary
+ *
+ * private Random random
+ *    The source of randomness, seeded so the corpus is reproducible
+ *
+ * private int minWordsPerLine, maxWordsPerLine
+ *    The range of the number of words on a line
+ *
+ * private int minLinesPerParagraph, maxLinesPerParagraph
+ *    The range of the number of lines in a paragraph
+ *
+ * METHODS
+ * -------
+ * public static void main(String[] args)
+ *    Writes a corpus of the given size to a file
+ *
+ * public CorpusGenerator(long seed, int vocabularySize, double exponent, int minWordsPerLine,
+ *        int maxWordsPerLine, int minLinesPerParagraph, int maxLinesPerParagraph)
+ *    Constructs a generator with the given vocabulary and paragraph shape
+ *
+ * public CorpusGenerator(long seed)
+ *    Constructs a generator with a 50,000 word vocabulary and English-like line and paragraph lengths
+ *
+ * public String nextWord()
+ *    Draws the next word from the Zipfian distribution
+ *
+ * public String getWord(int rank)
+ *    Returns the word with the given rank, where rank 0 is the most common
+ *
+ * public int vocabularySize()
+ *    Returns the number of distinct words the generator can produce
+ *
+ * public long write(Writer out, long bytes)
+ *    Writes paragraphs of text until at least the given number of bytes have been written
+ *
+ * public static long parseSize(String size)
+ *    Parses a size such as 1MB or 1GB into a number of bytes
+ *
+ * private int between(int min, int max)
+ *    Draws a number uniformly from a range
+ *
+ */
+public class CorpusGenerator {
+  private static final String[] SYLLABLES = { "a", "an", "be", "ca", "de", "el", "fo", "ga", "hi", "in", "jo",
+      "ka", "le", "mo", "ne", "or", "pa", "qu", "re", "st", "th", "to", "un", "ve", "wo", "xe", "ya", "ze" };
+
+  private String[] vocabulary;
+  private double[] cumulative;
+  private Random random;
+  private int minWordsPerLine, maxWordsPerLine;
+  private int minLinesPerParagraph, maxLinesPerParagraph;
+
+  /**
+   * Writes a corpus of the given size to a file
+   *
+   * @param args The output file, the size of the corpus (such as 1MB), and optionally the seed
+   */
+  public static void main(String[] args) throws IOException {
+    if (args == null || args.length < 2) {
+      System.out.println("Usage: java CorpusGenerator <output file> <size, e.g. 1MB> [seed]");
+      return;
+    }
+
+    long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+    Writer out = new BufferedWriter(new FileWriter(args[0]), 1 << 16);
+    try {
+      long written = new CorpusGenerator(seed).write(out, parseSize(args[1]));
+      System.out.println("Wrote " + written + " bytes to " + args[0]);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Constructs a generator with the given vocabulary and paragraph shape
+   * Postconditions: The vocabulary and its distribution are computed
+   *
+   * @param seed The seed of the generator
+   * @param vocabularySize The number of distinct words
+   * @param exponent The Zipf exponent; word k is drawn with probability proportional to 1 / (k + 1)^exponent
+   * @param minWordsPerLine The fewest words on a line
+   * @param maxWordsPerLine The most words on a line
+   * @param minLinesPerParagraph The fewest lines in a paragraph
+   * @param maxLinesPerParagraph The most lines in a paragraph
+   */
+  public CorpusGenerator(long seed, int vocabularySize, double exponent, int minWordsPerLine,
+      int maxWordsPerLine, int minLinesPerParagraph, int maxLinesPerParagraph) {
+    this.random = new Random(seed);
+    this.minWordsPerLine = minWordsPerLine;
+    this.maxWordsPerLine = maxWordsPerLine;
+    this.minLinesPerParagraph = minLinesPerParagraph;
+    this.maxLinesPerParagraph = maxLinesPerParagraph;
+
+    // Spell out each rank in syllables, so every word is distinct and shorter words are more common
+    vocabulary = new String[vocabularySize];
+    for (int rank = 0; rank < vocabularySize; rank++) {
+      StringBuilder word = new StringBuilder();
+      int n = rank;
+      do {
+        word.append(SYLLABLES[n % SYLLABLES.length]);
+        n /= SYLLABLES.length;
+      } while (n > 0);
+      vocabulary[rank] = word.toString();
+    }
+
+    cumulative = new double[vocabularySize];
+    double total = 0;
+    for (int rank = 0; rank < vocabularySize; rank++) {
+      total += 1 / Math.pow(rank + 1, exponent);
+      cumulative[rank] = total;
+    }
+    for (int rank = 0; rank < vocabularySize; rank++)
+      cumulative[rank] /= total;
+  }
+
+  /**
+   * Constructs a generator with a 50,000 word vocabulary, a Zipf exponent of 1, 6 to 14 words per line,
+   *    and 1 to 8 lines per paragraph
+   *
+   * @param seed The seed of the generator
+   */
+  public CorpusGenerator(long seed) {
+    this(seed, 50000, 1.0, 6, 14, 1, 8);
+  }
+
+  /**
+   * Draws the next word from the Zipfian distribution
+   *
+   * @return The next word
+   */
+  public String nextWord() {
+    double p = random.nextDouble();
+    int low = 0;
+    int high = cumulative.length - 1;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (cumulative[middle] < p)
+        low = middle + 1;
+      else
+        high = middle;
+    }
+    return vocabulary[low];
+  }
+
+  /**
+   * Returns the word with the given rank, where rank 0 is the most common
+   *
+   * @param rank The rank of the word
+   * @return The word with the given rank
+   */
+  public String getWord(int rank) {
+    return vocabulary[rank];
+  }
+
+  /**
+   * Returns the number of distinct words the generator can produce
+   *
+   * @return The size of the vocabulary
+   */
+  public int vocabularySize() {
+    return vocabulary.length;
+  }
+
+  /**
+   * Writes paragraphs of text until at least the given number of bytes have been written.
+   *    Paragraphs are separated by blank lines, the way Concordance expects
+   *
+   * @param out Where the text is written
+   * @param bytes The number of bytes to write
+   * @return The number of bytes actually written
+   */
+  public long write(Writer out, long bytes) throws IOException {
+    long written = 0;
+    StringBuilder line = new StringBuilder();
+    while (written < bytes) {
+      if (written > 0) {
+        out.write('\n');
+        written++;
+      }
+
+      int lines = between(minLinesPerParagraph, maxLinesPerParagraph);
+      for (int i = 0; i < lines && written < bytes; i++) {
+        line.setLength(0);
+        int words = between(minWordsPerLine, maxWordsPerLine);
+        for (int j = 0; j < words; j++) {
+          if (j > 0)
+            line.append(' ');
+          line.append(nextWord());
+        }
+        line.append('\n');
+        out.write(line.toString());
+        written += line.length();
+      }
+    }
+    return written;
+  }
+
+  /**
+   * Parses a size such as 1MB or 1GB into a number of bytes
+   *
+   * @param size A number, optionally followed by KB, MB or GB
+   * @return The number of bytes
+   */
+  public static long parseSize(String size) {
+    String upper = size.trim().toUpperCase();
+    long multiplier = 1;
+    if (upper.endsWith("KB"))
+      multiplier = 1L << 10;
+    else if (upper.endsWith("MB"))
+      multiplier = 1L << 20;
+    else if (upper.endsWith("GB"))
+      multiplier = 1L << 30;
+    if (multiplier > 1)
+      upper = upper.substring(0, upper.length() - 2);
+    return Long.parseLong(upper.trim()) * multiplier;
+  }
+
+  /**
+   * Draws a number uniformly from a range
+   *
+   * @param min The smallest number
+   * @param max The largest number
+   * @return A number from min to max, inclusive
+   */
+  private int between(int min, int max) {
+    return min + random.nextInt(max - min + 1);
+  }
+}
@@ -1,6 +1,4 @@
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * 
@@ -9,37 +7,94 @@ import java.util.List;
  * Created by Ross Miller on 4/20/10
  * 
  * The class manages an Entry object, which is just a string combine with a list of paragraph
- *    number and line numbers where this word has appeared
+ *    number and line numbers where this word has appeared. Each occurence may also record the
+ *    word's position in the document, which is what phrase queries use
  * 
  * VARIABLES
  * ---------
- * private List<Integer[]> occurences
- *    A list of 2D arrays where the first element is a paragraph number, and the second is a line number
+ * private int[] paragraphs
+ *    The paragraph number of each occurence
+ * 
+ * private int[] lines
+ *    The line number of each occurence
+ * 
+ * private int[] positions
+ *    The position of each occurence in the document, counted in words, or -1 if it was not recorded
+ * 
+ * private int size
+ *    The number of occurences
  * 
  * private String name
- *    The String that this Entry is keeping track of
+ *    The String that this Entry is keeping track of, or null if it is kept in a Vocabulary instead
+ * 
+ * private Vocabulary vocabulary
+ *    The Vocabulary holding this Entry's word, or null if the word is kept in name
+ * 
+ * private int id
+ *    The id of this Entry's word in the vocabulary
  * 
  * METHODS
  * -------
  * public Entry(String name, int paragraph, int line);
  *    Constructs an Entry object given a name, paragraph number, and a line number
  * 
+ * public Entry(Vocabulary vocabulary, int id, int paragraph, int line, int position);
+ *    Constructs an Entry object whose name is the word with the given id in a Vocabulary
+ * 
+ * public Entry(Vocabulary vocabulary, int id, Entry other);
+ *    Constructs an Entry object in a Vocabulary with a copy of another Entry's occurences
+ * 
+ * Entry(Vocabulary vocabulary, int id, int[] paragraphs, int[] lines, int[] positions);
+ *    Constructs an Entry object in a Vocabulary which takes over already sorted occurences
+ * 
  * public String getName();
  *    returns the name of this entry
  * 
+ * public int getId();
+ *    returns the vocabulary id of this entry's name
+ * 
+ * public Entry(String name, int paragraph, int line, int position);
+ *    Constructs an Entry object given a name, paragraph number, line number and word position
+ * 
  * public void addOccurence(int paragraph, int line);
  *    Adds a paragraph and line number onto an existing Entry and keeps them in increasing order
  * 
+ * public void addOccurence(int paragraph, int line, int position);
+ *    Adds a paragraph, line number and word position onto an existing Entry and keeps them in increasing order
+ * 
+ * public int size();
+ *    Returns the number of occurences
+ * 
+ * public int getParagraph(int index);
+ *    Returns the paragraph number of an occurence
+ * 
+ * public int getLine(int index);
+ *    Returns the line number of an occurence
+ * 
+ * public int getPosition(int index);
+ *    Returns the word position of an occurence
+ * 
+ * public void addOccurences(Entry other);
+ *    Adds every paragraph and line number of another Entry onto this one
+ * 
  * public String toString();
  *    Creates a String representation of this object
  * 
+ * void appendTo(StringBuilder out);
+ *    Appends the String representation of this object to a buffer
+ * 
  * public int compareTo(Entry e);
  *    Compares an entry with another based on the comparison of their respective names
  * 
  */
 public class Entry implements Comparable<Entry> {
-  private List<Integer[]> occurences;
+  private int[] paragraphs = new int[2];
+  private int[] lines = new int[2];
+  private int[] positions = new int[2];
+  private int size = 0;
   private String name;
+  private Vocabulary vocabulary;
+  private int id = -1;
 
   /**
    * Constructs an Entry object given a name, paragraph number, and a line number
@@ -49,12 +104,73 @@ public class Entry implements Comparable<Entry> {
    * @param line The line number where this word was first found
    */
   public Entry(String name, int paragraph, int line) {
+    this(name, paragraph, line, -1);
+  }
+
+  /**
+   * Constructs an Entry object given a name, paragraph number, line number and word position
+   * Postconditions: An Entry object is created
+   * @param name The string that this entry is keeping track of
+   * @param paragraph The paragraph number where this word was first found
+   * @param line The line number where this word was first found
+   * @param position The position in the document, counted in words, where this word was first found
+   */
+  public Entry(String name, int paragraph, int line, int position) {
     this.name = name;
-    occurences = new LinkedList<Integer[]>();
-    Integer[] arr = new Integer[2];
-    arr[0] = paragraph;
-    arr[1] = line;
-    occurences.add(arr);
+    addOccurence(paragraph, line, position);
+  }
+
+  /**
+   * Constructs an Entry object whose name is the word with the given id in a Vocabulary.
+   *    The name is only decoded when it is asked for
+   * Postconditions: An Entry object is created
+   * @param vocabulary The Vocabulary that holds this entry's word
+   * @param id The id of the word in the vocabulary
+   * @param paragraph The paragraph number where this word was first found
+   * @param line The line number where this word was first found
+   * @param position The word position where this word was first found, or -1 if it is not recorded
+   */
+  public Entry(Vocabulary vocabulary, int id, int paragraph, int line, int position) {
+    this(null, paragraph, line, position);
+    this.vocabulary = vocabulary;
+    this.id = id;
+  }
+
+  /**
+   * Constructs an Entry object in a Vocabulary with a copy of another Entry's occurences.
+   *    Used to move entries from one tree to another
+   * Postconditions: An Entry object is created
+   * @param vocabulary The Vocabulary that holds this entry's word
+   * @param id The id of the word in the vocabulary
+   * @param other The Entry whose occurences are copied
+   */
+  public Entry(Vocabulary vocabulary, int id, Entry other) {
+    this.vocabulary = vocabulary;
+    this.id = id;
+    paragraphs = Arrays.copyOf(other.paragraphs, other.paragraphs.length);
+    lines = Arrays.copyOf(other.lines, other.lines.length);
+    positions = Arrays.copyOf(other.positions, other.positions.length);
+    size = other.size;
+  }
+
+  /**
+   * Constructs an Entry object in a Vocabulary around occurences which have already been collected
+   *    and sorted, taking the arrays over instead of copying them. Used by BatchBuilder
+   * Preconditions: The three arrays are the same length, and sorted by paragraph, line and position
+   * Postconditions: An Entry object is created which owns the arrays
+   * @param vocabulary The Vocabulary that holds this entry's word
+   * @param id The id of the word in the vocabulary
+   * @param paragraphs The paragraph number of each occurence
+   * @param lines The line number of each occurence
+   * @param positions The word position of each occurence
+   */
+  Entry(Vocabulary vocabulary, int id, int[] paragraphs, int[] lines, int[] positions) {
+    this.vocabulary = vocabulary;
+    this.id = id;
+    this.paragraphs = paragraphs;
+    this.lines = lines;
+    this.positions = positions;
+    size = paragraphs.length;
   }
 
   /**
@@ -62,8 +178,18 @@ public class Entry implements Comparable<Entry> {
    * @return The name of this entry
    */
   public String getName() {
+    if (name == null)
+      return vocabulary.getWord(id);
     return name;
   }
+
+  /**
+   * Returns the vocabulary id of this entry's name
+   * @return The id of this entry's name, or -1 if it is not kept in a Vocabulary
+   */
+  public int getId() {
+    return id;
+  }
   
   /**
    * Adds a paragraph and line number onto an existing Entry and keeps
@@ -73,18 +199,85 @@ public class Entry implements Comparable<Entry> {
    * @param line The line number where this word was found
    */
   public void addOccurence(int paragraph, int line) {
-    Integer[] array = new Integer[2];
-    array[0] = paragraph;
-    array[1] = line;
-    int i = 0;
-    while (i < occurences.size() &&
-        (paragraph > occurences.get(i)[0]
-        || (paragraph == occurences.get(i)[0] && line > occurences
-            .get(i)[1]))) {
-      i++;
+    addOccurence(paragraph, line, -1);
+  }
+
+  /**
+   * Adds a paragraph, line number and word position onto an existing Entry and keeps
+   *    them in order, sorted by paragraph number, then line number, then position.
+   *    Occurences almost always arrive in order, so the search starts from the end
+   * Postconditions: An extra occurence is added onto this entry
+   * @param paragraph The paragraph number where this word was found
+   * @param line The line number where this word was found
+   * @param position The position in the document, counted in words, or -1 if it is not recorded
+   */
+  public void addOccurence(int paragraph, int line, int position) {
+    if (size == paragraphs.length) {
+      paragraphs = Arrays.copyOf(paragraphs, size * 2);
+      lines = Arrays.copyOf(lines, size * 2);
+      positions = Arrays.copyOf(positions, size * 2);
     }
 
-    occurences.add(i, array);
+    int i = size;
+    while (i > 0 &&
+        (paragraph < paragraphs[i - 1]
+        || (paragraph == paragraphs[i - 1] && (line < lines[i - 1]
+        || (line == lines[i - 1] && position < positions[i - 1]))))) {
+      i--;
+    }
+
+    System.arraycopy(paragraphs, i, paragraphs, i + 1, size - i);
+    System.arraycopy(lines, i, lines, i + 1, size - i);
+    System.arraycopy(positions, i, positions, i + 1, size - i);
+    paragraphs[i] = paragraph;
+    lines[i] = line;
+    positions[i] = position;
+    size++;
+  }
+
+  /**
+   * Returns the number of occurences
+   * @return The number of times this word has been found
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the paragraph number of an occurence
+   * @param index The index of the occurence, from 0 to size() - 1
+   * @return The paragraph number of the occurence
+   */
+  public int getParagraph(int index) {
+    return paragraphs[index];
+  }
+
+  /**
+   * Returns the line number of an occurence
+   * @param index The index of the occurence, from 0 to size() - 1
+   * @return The line number of the occurence
+   */
+  public int getLine(int index) {
+    return lines[index];
+  }
+
+  /**
+   * Returns the word position of an occurence
+   * @param index The index of the occurence, from 0 to size() - 1
+   * @return The position of the occurence in the document, counted in words, or -1 if it was not recorded
+   */
+  public int getPosition(int index) {
+    return positions[index];
+  }
+
+  /**
+   * Adds every paragraph and line number of another Entry onto this one
+   * Postconditions: The occurences of the other entry are added onto this entry, in order
+   * @param other The Entry whose occurences are added
+   */
+  public void addOccurences(Entry other) {
+    for (int i = 0; i < other.size; i++)
+      addOccurence(other.paragraphs[i], other.lines[i], other.positions[i]);
   }
 
   /**
@@ -92,30 +285,35 @@ public class Entry implements Comparable<Entry> {
    * @return A String representation of this object
    */
   public String toString() {
-    String str = "";
-    int i = 0;
+    StringBuilder out = new StringBuilder(32 + 8 * size);
+    appendTo(out);
+    return out.toString();
+  }
+
+  /**
+   * Appends the String representation of this object, so that a whole concordance is built in one
+   *    buffer instead of by copying ever longer strings
+   * Postconditions: The same text toString returns is appended to out
+   * @param out The buffer to append to
+   */
+  void appendTo(StringBuilder out) {
+    String name = getName();
 
     // Loop through all of the occurences
-    Iterator<Integer[]> iter = occurences.iterator();
-    while (iter.hasNext()) {
-      Integer[] arr = iter.next();
-
-      String s = "";
-      for (int j = 0; j < 24; j++)
-        s += " ";
-
-      if (i == 0)
-        str += name + s.substring(0, 24 - name.length()) + "(" + arr[0]
-            + "," + arr[1] + ")";
-      else if (i % 8 == 0)
-        str += "\n\"" + s.substring(0, 23) + "(" + arr[0] + ","
-            + arr[1] + ")";
+    for (int i = 0; i < size; i++) {
+      if (i == 0) {
+        out.append(name);
+        for (int j = name.length(); j < 24; j++)
+          out.append(' ');
+        out.append('(');
+      } else if (i % 8 == 0)
+        out.append("\n\"                       (");
       else
-        str += " (" + arr[0] + "," + arr[1] + ")";
-      i++;
+        out.append(" (");
+      out.append(paragraphs[i]).append(',').append(lines[i]).append(')');
     }
 
-    return str + "\n";
+    out.append('\n');
   }
 
   /**
@@ -125,6 +323,8 @@ public class Entry implements Comparable<Entry> {
    *    than 0 if this is greater than the argument
    */
   public int compareTo(Entry e) {
-    return name.compareTo(e.name);
+    if (vocabulary != null && vocabulary == e.vocabulary)
+      return vocabulary.compare(id, e.id);
+    return getName().compareTo(e.getName());
   }
 }
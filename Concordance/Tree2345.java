@@ -1,3 +1,8 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
 /**
  * 
  * Class: Tree2345
@@ -11,6 +16,12 @@
  * private Node root
  * 		The root Node of the tree
  * 
+ * private Vocabulary vocabulary
+ * 		Every word in the tree, stored once. Nodes are ordered by the ids of this vocabulary
+ * 
+ * private Entry[] entries
+ * 		Every Entry in the tree, indexed by the vocabulary id of its word
+ * 
  * METHODS
  * -------
  * public Tree2345();
@@ -20,17 +31,40 @@
  * 		Generates a string representation of this tree as a concordence
  * 
  * public boolean find(String value);
- * 		Starts off a recursive search for a node.
+ * 		Looks a word up in the tree's vocabulary.
+ * 
+ * public static Tree2345 bulkLoad(Iterator<Entry> sortedEntries, double fillFactor)
+ * 		Builds a tree top-down from entries which are already in sorted order
+ * 
+ * static Tree2345 bulkLoad(Vocabulary vocabulary, Entry[] entries, Entry[] sorted, double fillFactor)
+ * 		Builds a tree top-down around entries whose words are already in a vocabulary
+ * 
+ * public Entry getEntry(String value);
+ * 		Returns the entry for a word, or null if it is not in the tree
  * 
  * void add(String value, int paragraph, int line)
  * 		Adds an entry to the tree with the given value, paragraph, and line
  * 
+ * void add(String value, int paragraph, int line, int position)
+ * 		Adds an entry to the tree with the given value, paragraph, line, and word position
+ * 
+ * public Iterator<Entry> range(String from, String to)
+ * 		Iterates in order over every entry whose word is in [from, to)
+ * 
+ * public Iterator<Entry> prefix(String prefix)
+ * 		Iterates in order over every entry whose word starts with the given prefix
+ * 
+ * public Iterator<Entry> nearest(String value, int k)
+ * 		Iterates over the k entries nearest to the given word, closest first
+ * 
  * private void promoteIfNecessary(Node currentNode)
  * 		Checks to see if a given node has too many entries. If it does, it rearranges the tree.
  * 
  */
 public class Tree2345 {
 	private Node root;
+	private Vocabulary vocabulary = new Vocabulary();
+	private Entry[] entries = new Entry[64];
 
     /**
      * Constructs an empty (2,5)-tree
@@ -47,20 +81,183 @@ public class Tree2345 {
      * @return A String representation of this tree
      */
 	public String toString() {
-		String str = "Word                    Occurrences [form: (Paragraph#, Line#)]\n----                    -----------\n";
+		StringBuilder out = new StringBuilder();
+		out.append("Word                    Occurrences [form: (Paragraph#, Line#)]\n----                    -----------\n");
 		if (root != null)
-			str += root.toString();
-		return str;
+			root.appendTo(out);
+		return out.toString();
 	}
 
     /**
-     * Starts off a recursive search for a node
-     * Postconditions: Outputs how many numbers there are, the number of rows and columns, the time it takes to sort the numbers, and all of the numbers in sorted order
+     * Looks a word up in the tree's vocabulary. Every word in the vocabulary has an entry in the tree,
+     * 		so no descent is needed
      * @param value The word being searched for
      * @return True if this value is in the tree, false if it is not
      */
 	public boolean find(String value) {
-		return root.findNode(value) != null;
+		return vocabulary.lookup(value) != -1;
+	}
+
+    /**
+     * Returns the entry for a word, or null if it is not in the tree
+     * @param value The word being searched for
+     * @return The Entry holding every occurence of the word, or null if the word is not in the tree
+     */
+	public Entry getEntry(String value) {
+		int id = vocabulary.lookup(value);
+		return id == -1 ? null : entries[id];
+	}
+
+    /**
+     * Builds a fully packed tree from entries which are already in sorted order
+     * @param sortedEntries The entries to be loaded, sorted by word
+     * @return A tree holding every entry
+     */
+	public static Tree2345 bulkLoad(Iterator<Entry> sortedEntries) {
+		return bulkLoad(sortedEntries, 1.0);
+	}
+
+    /**
+     * Builds a tree from entries which are already in sorted order, in linear time. Instead of inserting one
+     * 		word at a time and splitting nodes, the height of the tree is worked out up front and every node is
+     * 		created exactly once, with the entries spread evenly between its children. The entries are copied
+     * 		into the new tree's vocabulary; consecutive entries for the same word are merged
+     * Preconditions: The entries are sorted by word
+     * Postconditions: A new tree is created in which nodes hold about 4 * fillFactor entries each
+     * @param sortedEntries The entries to be loaded, sorted by word
+     * @param fillFactor How full each node should be, from 0 (exclusive) to 1 (every node holds 4 entries)
+     * @return A tree holding every entry
+     */
+	public static Tree2345 bulkLoad(Iterator<Entry> sortedEntries, double fillFactor) {
+		if (!(fillFactor > 0 && fillFactor <= 1))
+			throw new IllegalArgumentException("Fill factor must be in (0, 1]: " + fillFactor);
+
+		Tree2345 tree = new Tree2345();
+		ArrayList<Entry> loaded = new ArrayList<Entry>();
+		while (sortedEntries.hasNext()) {
+			Entry next = sortedEntries.next();
+			int size = tree.vocabulary.size();
+			int id = tree.vocabulary.intern(next.getName());
+
+			if (id == size - 1) {
+				// Another entry for the same word
+				loaded.get(id).addOccurences(next);
+			} else if (id < size || (id > 0 && tree.vocabulary.compare(id - 1, id) > 0)) {
+				throw new IllegalArgumentException("Entries are not in sorted order: " + next.getName());
+			} else {
+				loaded.add(new Entry(tree.vocabulary, id, next));
+			}
+		}
+
+		int count = loaded.size();
+		if (count == 0)
+			return tree;
+		tree.entries = loaded.toArray(new Entry[Math.max(count, 64)]);
+		tree.root = tree.buildRoot(tree.entries, count, fillFactor);
+		return tree;
+	}
+
+    /**
+     * Builds a tree around entries whose words are already in a vocabulary, without copying them. This is
+     * 		how BatchBuilder hands over the entries it has grouped
+     * Preconditions: entries[id] is the Entry for the word with that id, for every id in the vocabulary, and
+     * 		sorted holds the same entries in sorted order. Neither is changed afterwards by the caller
+     * Postconditions: A new tree is created which owns the vocabulary and the entries
+     * @param vocabulary The vocabulary holding every word
+     * @param entries The entries indexed by the vocabulary id of their word
+     * @param sorted The entries sorted by word
+     * @param fillFactor How full each node should be, from 0 (exclusive) to 1 (every node holds 4 entries)
+     * @return A tree holding every entry
+     */
+	static Tree2345 bulkLoad(Vocabulary vocabulary, Entry[] entries, Entry[] sorted, double fillFactor) {
+		if (!(fillFactor > 0 && fillFactor <= 1))
+			throw new IllegalArgumentException("Fill factor must be in (0, 1]: " + fillFactor);
+
+		Tree2345 tree = new Tree2345();
+		int count = vocabulary.size();
+		if (count == 0)
+			return tree;
+		tree.vocabulary = vocabulary;
+		tree.entries = entries.length >= 64 ? entries : Arrays.copyOf(entries, 64);
+		tree.root = tree.buildRoot(sorted, count, fillFactor);
+		return tree;
+	}
+
+    /**
+     * Works out the height of a bulk loaded tree and builds every node of it
+     * Preconditions: count > 0 and sorted[0, count) is in sorted order
+     * @param sorted The entries being loaded, in sorted order
+     * @param count The number of entries
+     * @param fillFactor How full each node should be, from 0 (exclusive) to 1
+     * @return The root Node of the tree
+     */
+	private Node buildRoot(Entry[] sorted, int count, double fillFactor) {
+		// Aim for nodes with keysPerNode entries, but never go taller than a tree of 1-entry nodes allows
+		int keysPerNode = Math.max(1, Math.min(4, (int) Math.round(4 * fillFactor)));
+		int height = 1;
+		while (power(keysPerNode + 1, height) - 1 < count)
+			height++;
+		while (power(2, height) - 1 > count)
+			height--;
+
+		return buildNode(sorted, 0, count, height, keysPerNode);
+	}
+
+    /**
+     * Builds the subtree of the given height which holds entries[from, to)
+     * Preconditions: The number of entries is between 2^height - 1 and 5^height - 1
+     * @param sorted The entries being loaded, in sorted order
+     * @param from The index of the first entry of the subtree
+     * @param to The index after the last entry of the subtree
+     * @param height The number of levels in the subtree
+     * @param keysPerNode The number of entries each node should hold if possible
+     * @return The root Node of the subtree
+     */
+	private Node buildNode(Entry[] sorted, int from, int to, int height, int keysPerNode) {
+		Node node = new Node();
+		int count = to - from;
+		if (height == 1) {
+			for (int i = 0; i < count; i++)
+				node.data[i] = sorted[from + i];
+			return node;
+		}
+
+		// Pick the number of children that gives subtrees closest to the target size, while keeping
+		// every child within the sizes a subtree of height - 1 can have
+		long largest = power(5, height - 1);
+		long minChildren = largest > count ? 1 : (count + largest) / largest;
+		long maxChildren = (count + 1) / power(2, height - 1);
+		long children = Math.round((count + 1) / (double) power(keysPerNode + 1, height - 1));
+		children = Math.max(children, Math.max(2, minChildren));
+		children = Math.min(children, Math.min(5, maxChildren));
+
+		// Spread what is left after taking out the separators evenly across the children
+		int childEntries = count - (int) (children - 1);
+		int start = from;
+		for (int i = 0; i < children; i++) {
+			int size = (int) (childEntries / children + (i < childEntries % children ? 1 : 0));
+			node.ptrs[i] = buildNode(sorted, start, start + size, height - 1, keysPerNode);
+			start += size;
+			if (i < children - 1)
+				node.data[i] = sorted[start++];
+		}
+		return node;
+	}
+
+    /**
+     * Raises base to the given exponent, saturating at Long.MAX_VALUE
+     * @param base The base
+     * @param exponent The exponent, which must not be negative
+     * @return base^exponent, or Long.MAX_VALUE if that does not fit in a long
+     */
+	private static long power(long base, int exponent) {
+		long result = 1;
+		for (int i = 0; i < exponent; i++) {
+			if (result > Long.MAX_VALUE / base)
+				return Long.MAX_VALUE;
+			result *= base;
+		}
+		return result;
 	}
 
     /**
@@ -71,23 +268,138 @@ public class Tree2345 {
      * @param line The line that this string was found on
      */
 	void add(String value, int paragraph, int line) {
+		add(value, paragraph, line, -1);
+	}
+
+    /**
+     * Adds an entry to the tree with the given value, paragraph, line, and word position
+     * Postconditions: A new entry is added to the tree, and the tree may have had to rebalance itself
+     * @param value A string representing the entry to be added
+     * @param paragraph The paragraph that this string was found on
+     * @param line The line that this string was found on
+     * @param position The position of this string in the document, counted in words, or -1 if it is not recorded
+     */
+	void add(String value, int paragraph, int line, int position) {
+		int size = vocabulary.size();
+		int id = vocabulary.intern(value);
+
+		// Words already in the vocabulary are already in the tree
+		if (id < size) {
+			entries[id].addOccurence(paragraph, line, position);
+			return;
+		}
+
+		if (id == entries.length) {
+			Entry[] newEntries = new Entry[entries.length * 2];
+			System.arraycopy(entries, 0, newEntries, 0, entries.length);
+			entries = newEntries;
+		}
+		Entry entry = new Entry(vocabulary, id, paragraph, line, position);
+		entries[id] = entry;
+
 		// If this is the first entry to be added
 		if (root == null) {
 			root = new Node(); // First entry added
-			root.data[0] = new Entry(value, paragraph, line);
+			root.data[0] = entry;
 		} else {
 			// Otherwise search for the right node to put it in
-			Node foundNode = root.findNode(value);
-			if (foundNode != null) {
-				foundNode.data[foundNode.indexOfElement(value)].addOccurence(
-						paragraph, line);
-			} else {
-				Node nodeToBePlacedIn = root.nodeToBePlacedIn(value);
-				nodeToBePlacedIn.add(value, paragraph, line);
-			}
+			Node nodeToBePlacedIn = root.nodeToBePlacedIn(id);
+			nodeToBePlacedIn.add(entry);
 		}
 	}
 
+    /**
+     * Iterates in order over every entry whose word is in [from, to). The tree is descended once to
+     * 		find the first entry, and every later entry is reached by walking from there
+     * @param from The smallest word to be returned, or null to start at the first word in the tree
+     * @param to The word at which to stop (exclusive), or null to continue to the last word in the tree
+     * @return An iterator over the matching entries, sorted alphabetically
+     */
+	public Iterator<Entry> range(String from, String to) {
+		return new ForwardIterator(from == null ? null : Vocabulary.encode(from),
+				to == null ? null : Vocabulary.encode(to));
+	}
+
+    /**
+     * Iterates in order over every entry whose word starts with the given prefix
+     * @param prefix The prefix that every returned word must start with
+     * @return An iterator over the matching entries, sorted alphabetically
+     */
+	public Iterator<Entry> prefix(String prefix) {
+		byte[] from = Vocabulary.encode(prefix);
+		return new ForwardIterator(from, prefixEnd(from));
+	}
+
+    /**
+     * Iterates over the k entries nearest to the given word in the tree's order. Starting from where the
+     * 		word is (or would be), it walks outwards in both directions, and at each step takes whichever
+     * 		neighbour shares the longer prefix with the word. On a tie the following word wins
+     * @param value The word whose neighbours are to be found. It does not have to be in the tree
+     * @param k The maximum number of entries to return
+     * @return An iterator over at most k entries, closest first
+     */
+	public Iterator<Entry> nearest(final String value, final int k) {
+		byte[] word = Vocabulary.encode(value);
+		final ForwardIterator after = new ForwardIterator(word, null);
+		final BackwardIterator before = new BackwardIterator(word);
+
+		return new Iterator<Entry>() {
+			private int returned = 0;
+
+			public boolean hasNext() {
+				return returned < k && (after.hasNext() || before.hasNext());
+			}
+
+			public Entry next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				returned++;
+				if (!before.hasNext())
+					return after.next();
+				if (!after.hasNext())
+					return before.next();
+				if (commonPrefix(value, after.peek().getName()) >= commonPrefix(value, before.peek().getName()))
+					return after.next();
+				return before.next();
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+    /**
+     * Determines the smallest encoded word which is larger than every word starting with the given prefix
+     * @param prefix The encoded prefix to find the upper bound of
+     * @return The exclusive upper bound of the prefix, or null if there is no such word
+     */
+	private static byte[] prefixEnd(byte[] prefix) {
+		int end = prefix.length;
+		while (end > 0 && prefix[end - 1] == (byte) 0xff)
+			end--;
+		if (end == 0)
+			return null;
+		byte[] bound = new byte[end];
+		System.arraycopy(prefix, 0, bound, 0, end);
+		bound[end - 1]++;
+		return bound;
+	}
+
+    /**
+     * Determines how many leading characters two words have in common
+     * @param a The first word
+     * @param b The second word
+     * @return The length of the longest common prefix of a and b
+     */
+	private static int commonPrefix(String a, String b) {
+		int length = Math.min(a.length(), b.length());
+		int i = 0;
+		while (i < length && a.charAt(i) == b.charAt(i))
+			i++;
+		return i;
+	}
+
     /**
      * Checks to see if a given node has too many entries. If it does, it rearranges the tree
      * Preconditions: The given argument is not null
@@ -129,7 +441,7 @@ public class Tree2345 {
 				ptrs[1] = rightNode;
 				root = new Node(data, ptrs);
 			} else {
-				int index = currentNode.getParent().insertionPoint(middle.getName());
+				int index = currentNode.getParent().insertionPoint(middle.getId());
 
 				// Shift array entries over 1 to make room for new entry
 				for (int i = currentNode.data.length - 2; i >= index; i--) {
@@ -167,29 +479,35 @@ public class Tree2345 {
 	 * private Node getParent();
 	 * 		Determines the parent of this Node. Returns null if this parent is the root.
 	 * 
-	 * private Node nodeToBePlacedIn(String value);
+	 * private Node nodeToBePlacedIn(int value);
 	 * 		Determines which Node this entry would be placed in if it were to be added to the tree.
 	 * 
-	 * private int indexOfElement(String value);
+	 * private int indexOfElement(int value);
 	 * 		Returns the index of the given value in the Node. Returns -1 if it is not in the node at all
 	 * 
-	 * private int insertionPoint(String value);
+	 * private int insertionPoint(int value);
 	 * 		Determines in the case that the given value is not in this node but is in
 	 * 		one of its descendants, the index in this Node's pointer
 	 * 
-	 * private Node findNode(String value);
+	 * private int insertionPoint(byte[] value, long prefix);
+	 * 		Same as above, for an encoded word which does not have to be in the vocabulary
+	 * 
+	 * private Node findNode(int value);
 	 * 		Recursive function used to determine whether or not a value is contained inside the given
 	 * 		node or any of its descendants
 	 * 
 	 * private int dataSize();
 	 * 		Determines the number of entries in this node
 	 * 
-	 * private void add(String value, int paragraph, int line);	
-	 * 		Adds this value to the current Node. Increases the occurance if it already exists
+	 * private void add(Entry entry);	
+	 * 		Adds this entry to the current Node
 	 * 
 	 * public String toString();
 	 * Prints out each of this node's and its descendents in reverse infix order.
 	 * 
+	 * private void appendTo(StringBuilder out);
+	 * Appends each of this node's and its descendents' entries in reverse infix order to a buffer.
+	 * 
 	 * 
 	 */
 	private class Node {
@@ -223,12 +541,12 @@ public class Tree2345 {
 	     * @return The Node object which is the parent of this node. Returns null if this Node has no parent
 	     */
 		private Node getParent() {
-			String value = data[0].getName();
+			int value = data[0].getId();
 			Node currentNode = root;
 			Node parentNode = null;
 			while (currentNode != null) {
 				for (int i = 0; i < currentNode.dataSize(); i++) {
-					if (currentNode.data[i].getName().equals(value))
+					if (currentNode.data[i].getId() == value)
 						return parentNode;
 				}
 
@@ -242,12 +560,12 @@ public class Tree2345 {
 		
 	    /**
 	     * Determines which Node this entry would be placed in if it were to be added to the tree. This should only be called on externally from the root of the tree
-	     * @param value The string who's potential Node gets returned
+	     * @param value The vocabulary id of the string who's potential Node gets returned
 	     * @return A Node object which is the exact node that this value would be placed in if it were the next one to be added to the tree
 	     */
-		private Node nodeToBePlacedIn(String value) {
+		private Node nodeToBePlacedIn(int value) {
 			if (this.data[this.insertionPoint(value)] != null
-					&& this.data[this.insertionPoint(value)].getName().equals(value)) {
+					&& this.data[this.insertionPoint(value)].getId() == value) {
 				return this;
 			} else if (this.ptrs[0] == null) {
 				return this;
@@ -259,12 +577,12 @@ public class Tree2345 {
 
 	    /**
 	     * Returns the index of the given value in the Node. Returns -1 if it is not in the node at all
-	     * @param value The value who's position in the Node is to be tested
+	     * @param value The vocabulary id of the value who's position in the Node is to be tested
  	     * @return The index of the given value in the Node, or -1 if it is not in the node at all
 	     */
-		private int indexOfElement(String value) {
+		private int indexOfElement(int value) {
 			for (int i = 0; i < dataSize(); i++) {
-				if (data[i].getName().equals(value))
+				if (data[i].getId() == value)
 					return i;
 			}
 			return -1;
@@ -273,14 +591,31 @@ public class Tree2345 {
 		/**
 	     * Determines in the case that the given value is not in this node but is in
 	     * 		one of its descendants, the index in this Node's pointer
-	     * @param value The value that is eventually trying to be found
+	     * @param value The vocabulary id of the value that is eventually trying to be found
+	     * @return The index of the pointer you'd have to follow if you wanted to find this value
+	     * 		in one of this Node's descendants
+	     */
+		private int insertionPoint(int value) {
+			int i = 0;
+			while (i < data.length && data[i] != null
+					&& vocabulary.compare(data[i].getId(), value) < 0) {
+				i++;
+			}
+			return i;
+		}
+
+		/**
+	     * Determines in the case that the given encoded word is not in this node but is in
+	     * 		one of its descendants, the index in this Node's pointer
+	     * @param value The encoded word that is eventually trying to be found
+	     * @param prefix The packed prefix of the encoded word
 	     * @return The index of the pointer you'd have to follow if you wanted to find this value
 	     * 		in one of this Node's descendants
 	     */
-		private int insertionPoint(String value) {
+		private int insertionPoint(byte[] value, long prefix) {
 			int i = 0;
 			while (i < data.length && data[i] != null
-					&& data[i].getName().compareTo(value) < 0) {
+					&& vocabulary.compare(data[i].getId(), value, prefix) < 0) {
 				i++;
 			}
 			return i;
@@ -291,7 +626,7 @@ public class Tree2345 {
 	     * @param value The value to be tested for existence in this node or any of its descendants
 	     * @return The Node if it is this Node or any of its descendants. Returns null otherwise
 	     */
-		private Node findNode(String value) {
+		private Node findNode(int value) {
 			if (this.indexOfElement(value) != -1)
 				return this;
 			else if (this.ptrs[this.insertionPoint(value)] == null)
@@ -312,22 +647,18 @@ public class Tree2345 {
 		}
 
 		/**
-	     * Adds this value to the current Node. Increases the occurance if it already exists
-	     * Postconditions: This entry is either added to this node, or the occurence is noted if the entry has already been added
-	     * @param value The value to be added to the current node
-	     * @param paragraph The paragraph of this entry
-	     * @param line The line number of this entry
+	     * Adds this entry to the current Node
+	     * Preconditions: The entry's word is not already in the tree
+	     * Postconditions: This entry is added to this node, and the tree may have had to rebalance itself
+	     * @param entry The entry to be added to the current node
 	     */
-		private void add(String value, int paragraph, int line) {
-			if (indexOfElement(value) != -1)
-				data[indexOfElement(value)].addOccurence(paragraph, line);
-
-			int index = insertionPoint(value);
+		private void add(Entry entry) {
+			int index = insertionPoint(entry.getId());
 			for (int i = 3; i >= index; i--) {
 				data[i + 1] = data[i];
 			}
 
-			data[index] = new Entry(value, paragraph, line);
+			data[index] = entry;
 			promoteIfNecessary(this);
 		}
 
@@ -336,20 +667,224 @@ public class Tree2345 {
 	     * @return The reverse infix form of node
 	     */
 		public String toString() {
-			String str = "";
+			StringBuilder out = new StringBuilder();
+			appendTo(out);
+			return out.toString();
+		}
 
+		/**
+	     * Appends each of this node's and its descendents' entries in reverse infix order, into the one buffer
+	     * 		that the whole tree is printed into
+	     * @param out The buffer to append to
+	     */
+		private void appendTo(StringBuilder out) {
 			for (int i = 0; i <= data.length-1; i++) {
 				if (ptrs[i] != null)
-					str += ptrs[i].toString();
+					ptrs[i].appendTo(out);
 				if (data[i] != null)
-					str += data[i].toString();
+					data[i].appendTo(out);
 			}
 
 			Node lastPtr = ptrs[ptrs.length-1];
 			if (lastPtr != null)
-				str += lastPtr.toString();
+				lastPtr.appendTo(out);
+		}
+	}
+
+	/**
+	 * 
+	 * Class: ForwardIterator
+	 * 
+	 * An inner class of Tree2345 which walks the entries in alphabetical order. It keeps the path from the
+	 * 		root to the current entry on a stack, so the tree is only descended once.
+	 * 
+	 * VARIABLES
+	 * ---------
+	 * private Node[] nodes
+	 * 		The nodes on the path from the root down to the next entry
+	 * 
+	 * private int[] indexes
+	 * 		For each node on the path, the index of the next entry to be returned from it
+	 * 
+	 * private int depth
+	 * 		The number of nodes currently on the path
+	 * 
+	 * private byte[] to
+	 * 		The encoded word at which to stop (exclusive), or null if there is no upper bound
+	 * 
+	 * private long toPrefix
+	 * 		The packed prefix of to
+	 * 
+	 */
+	private class ForwardIterator implements Iterator<Entry> {
+		private Node[] nodes = new Node[64];
+		private int[] indexes = new int[64];
+		private int depth = 0;
+		private byte[] to;
+		private long toPrefix;
+
+	    /**
+	     * Constructs an iterator positioned on the first entry which is not less than from
+	     * @param from The smallest encoded word to be returned, or null to start at the first word
+	     * @param to The encoded word at which to stop (exclusive), or null if there is no upper bound
+	     */
+		private ForwardIterator(byte[] from, byte[] to) {
+			this.to = to;
+			if (to != null)
+				toPrefix = Vocabulary.prefix(to);
+			long fromPrefix = from == null ? 0 : Vocabulary.prefix(from);
+			Node currentNode = root;
+			while (currentNode != null) {
+				int index = from == null ? 0 : currentNode.insertionPoint(from, fromPrefix);
+				push(currentNode, index);
+				currentNode = currentNode.ptrs[index];
+			}
+			skipFinished();
+		}
+
+		public boolean hasNext() {
+			return depth > 0 && (to == null || vocabulary.compare(peek().getId(), to, toPrefix) < 0);
+		}
+
+		public Entry next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			Entry entry = peek();
+
+			// Move past this entry, then down to the leftmost entry of the subtree that follows it
+			int index = ++indexes[depth - 1];
+			Node currentNode = nodes[depth - 1].ptrs[index];
+			while (currentNode != null) {
+				push(currentNode, 0);
+				currentNode = currentNode.ptrs[0];
+			}
+			skipFinished();
+			return entry;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+	    /**
+	     * Returns the next entry without moving past it
+	     * Preconditions: The path is not empty
+	     * @return The entry that the next call to next() would return
+	     */
+		private Entry peek() {
+			return nodes[depth - 1].data[indexes[depth - 1]];
+		}
+
+	    /**
+	     * Pops every node off the path that has no entries left to return
+	     */
+		private void skipFinished() {
+			while (depth > 0 && indexes[depth - 1] >= nodes[depth - 1].dataSize())
+				depth--;
+		}
+
+	    /**
+	     * Pushes a node onto the path
+	     * @param node The node to be pushed
+	     * @param index The index of the next entry to be returned from the node
+	     */
+		private void push(Node node, int index) {
+			nodes[depth] = node;
+			indexes[depth] = index;
+			depth++;
+		}
+	}
+
+	/**
+	 * 
+	 * Class: BackwardIterator
+	 * 
+	 * An inner class of Tree2345 which walks the entries in reverse alphabetical order, starting from
+	 * 		the last entry which is less than a given word.
+	 * 
+	 * VARIABLES
+	 * ---------
+	 * private Node[] nodes
+	 * 		The nodes on the path from the root down to the next entry
+	 * 
+	 * private int[] indexes
+	 * 		For each node on the path, the index of the next entry to be returned from it
+	 * 
+	 * private int depth
+	 * 		The number of nodes currently on the path
+	 * 
+	 */
+	private class BackwardIterator implements Iterator<Entry> {
+		private Node[] nodes = new Node[64];
+		private int[] indexes = new int[64];
+		private int depth = 0;
+
+	    /**
+	     * Constructs an iterator positioned on the last entry which is less than before
+	     * @param before The encoded word that every returned entry is less than
+	     */
+		private BackwardIterator(byte[] before) {
+			long prefix = Vocabulary.prefix(before);
+			Node currentNode = root;
+			while (currentNode != null) {
+				int index = currentNode.insertionPoint(before, prefix);
+				push(currentNode, index - 1);
+				currentNode = currentNode.ptrs[index];
+			}
+			skipFinished();
+		}
+
+		public boolean hasNext() {
+			return depth > 0;
+		}
 
-			return str;
+		public Entry next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			Entry entry = peek();
+
+			// Move before this entry, then down to the rightmost entry of the subtree that precedes it
+			Node currentNode = nodes[depth - 1].ptrs[indexes[depth - 1]];
+			indexes[depth - 1]--;
+			while (currentNode != null) {
+				int size = currentNode.dataSize();
+				push(currentNode, size - 1);
+				currentNode = currentNode.ptrs[size];
+			}
+			skipFinished();
+			return entry;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+	    /**
+	     * Returns the next entry without moving past it
+	     * Preconditions: The path is not empty
+	     * @return The entry that the next call to next() would return
+	     */
+		private Entry peek() {
+			return nodes[depth - 1].data[indexes[depth - 1]];
+		}
+
+	    /**
+	     * Pops every node off the path that has no entries left to return
+	     */
+		private void skipFinished() {
+			while (depth > 0 && indexes[depth - 1] < 0)
+				depth--;
+		}
+
+	    /**
+	     * Pushes a node onto the path
+	     * @param node The node to be pushed
+	     * @param index The index of the next entry to be returned from the node
+	     */
+		private void push(Node node, int index) {
+			nodes[depth] = node;
+			indexes[depth] = index;
+			depth++;
 		}
 	}
 }
@@ -0,0 +1,358 @@
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ *
+ * Class: Vocabulary
+ *
+ * This class dictionary-encodes the words of a concordance. Each distinct word is stored once, as UTF-8,
+ *    in one shared byte arena and is given an int id. Words are compared by their UTF-8 bytes, which
+ *    orders them the same way as String.compareTo for every word made of characters below U+D800
+ *    (this includes everything the Concordance tokenizer produces)
+ *
+ * VARIABLES
+ * ---------
+ * private byte[] arena
+ *    The UTF-8 bytes of every word, one after another
+ *
+ * private int arenaSize
+ *    The number of bytes of the arena that are in use
+ *
+ * private int[] offsets
+ *    For each id, the index in the arena where its word starts
+ *
+ * private int[] lengths
+ *    For each id, the number of bytes in its word
+ *
+ * private long[] prefixes
+ *    For each id, the first 8 bytes of its word packed into a long, so most comparisons never touch the arena
+ *
+ * private int[] hashes
+ *    For each id, the hash of its word
+ *
+ * private int[] table
+ *    An open addressing hash table of ids + 1, where 0 marks an empty slot
+ *
+ * private int size
+ *    The number of words in this vocabulary
+ *
+ * private byte[] scratch
+ *    Where intern encodes each word, so that looking up a word which is already there allocates nothing
+ *
+ * METHODS
+ * -------
+ * public Vocabulary();
+ *    Constructs an empty vocabulary
+ *
+ * public int size();
+ *    Returns the number of distinct words in this vocabulary
+ *
+ * public int intern(String word);
+ *    Returns the id of the given word, adding it to the vocabulary if it is not there yet
+ *
+ * public int intern(Vocabulary other, int id);
+ *    Returns the id of a word from another vocabulary, adding it to this one if it is not there yet
+ *
+ * public int lookup(String word);
+ *    Returns the id of the given word, or -1 if it is not in the vocabulary
+ *
+ * public String getWord(int id);
+ *    Decodes the word with the given id
+ *
+ * public int compare(int first, int second);
+ *    Compares the words with the two given ids
+ *
+ * public int compare(int id, byte[] word, long prefix);
+ *    Compares the word with the given id against an encoded word that is not necessarily in the vocabulary
+ *
+ * public static byte[] encode(String word);
+ *    Encodes a word the way it would be stored in the arena
+ *
+ * public static long prefix(byte[] word);
+ *    Packs the first 8 bytes of an encoded word into a long
+ *
+ */
+public class Vocabulary {
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private byte[] arena = new byte[1024];
+  private int arenaSize = 0;
+  private int[] offsets = new int[64];
+  private int[] lengths = new int[64];
+  private long[] prefixes = new long[64];
+  private int[] hashes = new int[64];
+  private int[] table = new int[128];
+  private int size = 0;
+  private byte[] scratch = new byte[64];
+
+  /**
+   * Constructs an empty vocabulary
+   * Postconditions: A vocabulary is created containing no words
+   */
+  public Vocabulary() {
+  }
+
+  /**
+   * Returns the number of distinct words in this vocabulary
+   * @return The number of distinct words in this vocabulary
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the id of the given word, adding it to the vocabulary if it is not there yet.
+   *    Ids are handed out in order, starting from 0
+   * Postconditions: The word is in the vocabulary
+   * @param word The word to be interned
+   * @return The id of the word
+   */
+  public int intern(String word) {
+    // Copy an ASCII word straight into the scratch buffer, which is already how it encodes
+    int length = word.length();
+    if (scratch.length < length)
+      scratch = new byte[Math.max(length, scratch.length * 2)];
+    boolean ascii = true;
+    for (int i = 0; i < length && ascii; i++) {
+      char c = word.charAt(i);
+      ascii = c < 0x80;
+      scratch[i] = (byte) c;
+    }
+    byte[] bytes = scratch;
+    if (!ascii) {
+      bytes = encode(word);
+      length = bytes.length;
+    }
+    int hash = hash(bytes, length);
+
+    int slot = slotOf(bytes, 0, length, hash);
+    if (table[slot] != 0)
+      return table[slot] - 1;
+    return add(bytes, 0, length, hash, prefix(bytes, length), slot);
+  }
+
+  /**
+   * Returns the id in this vocabulary of a word from another one, adding it if it is not there yet. The word is
+   *    copied as it is encoded, without decoding it, which is how the vocabularies of separately built parts are merged
+   * Preconditions: 0 <= id < other.size()
+   * Postconditions: The word is in this vocabulary
+   * @param other The vocabulary the word is in
+   * @param id The id of the word in the other vocabulary
+   * @return The id of the word in this vocabulary
+   */
+  public int intern(Vocabulary other, int id) {
+    int offset = other.offsets[id];
+    int length = other.lengths[id];
+    int hash = other.hashes[id];
+    int slot = slotOf(other.arena, offset, length, hash);
+    if (table[slot] != 0)
+      return table[slot] - 1;
+    return add(other.arena, offset, length, hash, other.prefixes[id], slot);
+  }
+
+  /**
+   * Returns the id of the given word, or -1 if it is not in the vocabulary
+   * @param word The word to be looked up
+   * @return The id of the word, or -1 if it is not in the vocabulary
+   */
+  public int lookup(String word) {
+    byte[] bytes = encode(word);
+    return table[slotOf(bytes, 0, bytes.length, hash(bytes, bytes.length))] - 1;
+  }
+
+  /**
+   * Decodes the word with the given id
+   * Preconditions: 0 <= id < size()
+   * @param id The id of the word
+   * @return The word with the given id
+   */
+  public String getWord(int id) {
+    return new String(arena, offsets[id], lengths[id], UTF8);
+  }
+
+  /**
+   * Compares the words with the two given ids
+   * Preconditions: Both ids are less than size()
+   * @param first The id of the first word
+   * @param second The id of the second word
+   * @return An int less than 0 if the first word comes before the second; 0 if they are the same word;
+   *    and greater than 0 if the first word comes after the second
+   */
+  public int compare(int first, int second) {
+    if (first == second)
+      return 0;
+    int result = compareUnsigned(prefixes[first], prefixes[second]);
+    if (result != 0)
+      return result;
+    return compareBytes(arena, offsets[first], lengths[first], arena, offsets[second], lengths[second]);
+  }
+
+  /**
+   * Compares the word with the given id against an encoded word that is not necessarily in the vocabulary
+   * Preconditions: id is less than size(), and prefix == prefix(word)
+   * @param id The id of the word in the vocabulary
+   * @param word The encoded word to compare against
+   * @param prefix The packed prefix of the encoded word
+   * @return An int less than 0 if the word with the given id comes first; 0 if they are the same word;
+   *    and greater than 0 if it comes after
+   */
+  public int compare(int id, byte[] word, long prefix) {
+    int result = compareUnsigned(prefixes[id], prefix);
+    if (result != 0)
+      return result;
+    return compareBytes(arena, offsets[id], lengths[id], word, 0, word.length);
+  }
+
+  /**
+   * Encodes a word the way it would be stored in the arena
+   * @param word The word to be encoded
+   * @return The UTF-8 bytes of the word
+   */
+  public static byte[] encode(String word) {
+    return word.getBytes(UTF8);
+  }
+
+  /**
+   * Packs the first 8 bytes of an encoded word into a long, padding short words with zeros.
+   *    Comparing two prefixes as unsigned longs gives the same order as comparing their first 8 bytes
+   * @param word The encoded word
+   * @return The packed prefix
+   */
+  public static long prefix(byte[] word) {
+    return prefix(word, word.length);
+  }
+
+  /**
+   * Packs the first 8 bytes of the first length bytes of an array into a long, padding short words with zeros
+   * @param word The array holding the encoded word
+   * @param length The number of bytes in the word
+   * @return The packed prefix
+   */
+  private static long prefix(byte[] word, int length) {
+    long prefix = 0;
+    for (int i = 0; i < 8; i++) {
+      prefix <<= 8;
+      if (i < length)
+        prefix |= word[i] & 0xff;
+    }
+    return prefix;
+  }
+
+  /**
+   * Adds a word which is not in the vocabulary yet, giving it the next id
+   * Postconditions: The word is in the vocabulary, and the hash table is at most half full
+   * @param bytes An array holding the encoded word
+   * @param offset Where the word starts in the array
+   * @param length The number of bytes in the word
+   * @param hash The hash of the encoded word
+   * @param prefix The packed prefix of the encoded word
+   * @param slot The empty slot in the hash table where the word goes, from slotOf
+   * @return The id of the word
+   */
+  private int add(byte[] bytes, int offset, int length, int hash, long prefix, int slot) {
+    if (size == offsets.length)
+      growIds();
+    while (arenaSize + length > arena.length)
+      arena = Arrays.copyOf(arena, arena.length * 2);
+
+    System.arraycopy(bytes, offset, arena, arenaSize, length);
+    offsets[size] = arenaSize;
+    lengths[size] = length;
+    prefixes[size] = prefix;
+    hashes[size] = hash;
+    arenaSize += length;
+    table[slot] = size + 1;
+    size++;
+
+    // Keep the table at most half full
+    if (size * 2 > table.length)
+      rehash();
+    return size - 1;
+  }
+
+  /**
+   * Finds the slot in the hash table which holds the given word, or the empty slot where it would go
+   * @param bytes An array holding the encoded word
+   * @param offset Where the word starts in the array
+   * @param length The number of bytes in the word
+   * @param hash The hash of the encoded word
+   * @return The index of the slot in the hash table
+   */
+  private int slotOf(byte[] bytes, int offset, int length, int hash) {
+    int mask = table.length - 1;
+    int slot = hash & mask;
+    while (table[slot] != 0) {
+      int id = table[slot] - 1;
+      if (hashes[id] == hash
+          && compareBytes(arena, offsets[id], lengths[id], bytes, offset, length) == 0)
+        return slot;
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Doubles the size of the hash table and reinserts every id
+   * Postconditions: The hash table is at most a quarter full
+   */
+  private void rehash() {
+    table = new int[table.length * 2];
+    int mask = table.length - 1;
+    for (int id = 0; id < size; id++) {
+      int slot = hashes[id] & mask;
+      while (table[slot] != 0)
+        slot = (slot + 1) & mask;
+      table[slot] = id + 1;
+    }
+  }
+
+  /**
+   * Doubles the capacity of every per-id array
+   */
+  private void growIds() {
+    int capacity = offsets.length * 2;
+    offsets = Arrays.copyOf(offsets, capacity);
+    lengths = Arrays.copyOf(lengths, capacity);
+    prefixes = Arrays.copyOf(prefixes, capacity);
+    hashes = Arrays.copyOf(hashes, capacity);
+  }
+
+  /**
+   * Hashes an encoded word (FNV-1a)
+   * @param bytes An array starting with the encoded word
+   * @param length The number of bytes in the word
+   * @return The hash of the word
+   */
+  private static int hash(byte[] bytes, int length) {
+    int hash = 0x811c9dc5;
+    for (int i = 0; i < length; i++) {
+      hash ^= bytes[i] & 0xff;
+      hash *= 0x01000193;
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Compares two ranges of bytes as unsigned values, the shorter range first if one is a prefix of the other
+   * @return An int less than 0, 0, or greater than 0 as the first range is less than, equal to, or greater than the second
+   */
+  private static int compareBytes(byte[] a, int aOffset, int aLength, byte[] b, int bOffset, int bLength) {
+    int length = Math.min(aLength, bLength);
+    for (int i = 0; i < length; i++) {
+      int difference = (a[aOffset + i] & 0xff) - (b[bOffset + i] & 0xff);
+      if (difference != 0)
+        return difference;
+    }
+    return aLength - bLength;
+  }
+
+  /**
+   * Compares two longs as if they were unsigned
+   * @return An int less than 0, 0, or greater than 0 as a is less than, equal to, or greater than b
+   */
+  private static int compareUnsigned(long a, long b) {
+    a += Long.MIN_VALUE;
+    b += Long.MIN_VALUE;
+    return a < b ? -1 : (a == b ? 0 : 1);
+  }
+}
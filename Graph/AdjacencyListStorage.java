@@ -0,0 +1,225 @@
+import java.util.Arrays;
+
+/**
+ * 
+ * Graph storage backed by a sorted array of neighbours for each vertex. Memory grows with the number of
+ *    edges instead of the square of the number of vertices, so graphs with millions of vertices and a
+ *    handful of edges each fit easily. Because each row is sorted, isEdge is a binary search.
+ *    Edge weights, once used, are kept in a second set of rows parallel to the neighbour rows.
+ * 
+ * VARIABLES
+ * ---------
+ * private int[][] adjacency;
+ *      For each vertex, its neighbours in increasing order. Only the first degrees[vertex] elements are used
+ * 
+ * private int[] degrees;
+ *      The number of neighbours of each vertex
+ * 
+ * private double[][] weights;
+ *      For each vertex, the weight of the edge to each neighbour, in the same order as adjacency. Null until the first weight is set
+ * 
+ * METHODS
+ * -------
+ * public AdjacencyListStorage(int numVertices)
+ *      Constructor. Makes room for 'numVertices' vertices, none of which have neighbours
+ * 
+ * private static int indexOf(int[] row, int length, int vertex)
+ *      Binary searches a row for a vertex
+ * 
+ * private void insert(int vertex, int neighbour)
+ *      Inserts a neighbour into a vertex's row
+ * 
+ * private void delete(int vertex, int neighbour)
+ *      Deletes a neighbour from a vertex's row
+ * 
+ * The rest are described in GraphStorage and WeightedStorage
+ *
+ */
+
+public class AdjacencyListStorage implements WeightedStorage {
+  private static final int[] EMPTY = new int[0];
+  private static final double[] NO_WEIGHTS = new double[0];
+
+  private int[][] adjacency;
+  private int[] degrees;
+  private double[][] weights;
+
+  /**
+   * Constructs an empty adjacency list
+   * Postconditions: Storage is created for the given number of vertices, with no edges
+   * @param numVertices The number of vertices that will be stored
+   */
+  public AdjacencyListStorage(int numVertices) {
+    adjacency = new int[numVertices][];
+    Arrays.fill(adjacency, EMPTY);
+    degrees = new int[numVertices];
+  }
+
+  public int size() {
+    return adjacency.length;
+  }
+
+  public boolean isRowLocal() {
+    return true;
+  }
+
+  public boolean isEdge(int source, int destination) {
+    // Search the shorter of the two rows
+    if (degrees[source] > degrees[destination]) {
+      int swap = source;
+      source = destination;
+      destination = swap;
+    }
+    return indexOf(adjacency[source], degrees[source], destination) >= 0;
+  }
+
+  public boolean addEdge(int source, int destination) {
+    if (indexOf(adjacency[source], degrees[source], destination) >= 0)
+      return false;
+    insert(source, destination);
+    insert(destination, source);
+    return true;
+  }
+
+  public boolean removeEdge(int source, int destination) {
+    if (indexOf(adjacency[source], degrees[source], destination) < 0)
+      return false;
+    delete(source, destination);
+    delete(destination, source);
+    return true;
+  }
+
+  public void removeEdges(int vertex) {
+    int[] row = adjacency[vertex];
+    for (int i=0; i<degrees[vertex]; i++)
+      delete(row[i], vertex);
+    adjacency[vertex] = EMPTY;
+    if (weights != null)
+      weights[vertex] = NO_WEIGHTS;
+    degrees[vertex] = 0;
+  }
+
+  public int degree(int vertex) {
+    return degrees[vertex];
+  }
+
+  public int getAdjacent(int vertex, int[] buffer) {
+    System.arraycopy(adjacency[vertex], 0, buffer, 0, degrees[vertex]);
+    return degrees[vertex];
+  }
+
+  public boolean hasWeights() {
+    return weights != null;
+  }
+
+  public double getWeight(int source, int destination) {
+    if (weights == null)
+      return 1;
+    return weights[source][indexOf(adjacency[source], degrees[source], destination)];
+  }
+
+  public void setWeight(int source, int destination, double weight) {
+    if (weights == null) {
+      // Every edge so far has weight 1
+      weights = new double[adjacency.length][];
+      for (int vertex=0; vertex<adjacency.length; vertex++) {
+        weights[vertex] = new double[adjacency[vertex].length];
+        Arrays.fill(weights[vertex], 1);
+      }
+    }
+    weights[source][indexOf(adjacency[source], degrees[source], destination)] = weight;
+    weights[destination][indexOf(adjacency[destination], degrees[destination], source)] = weight;
+  }
+
+  public int getAdjacentWeights(int vertex, double[] buffer) {
+    if (weights == null)
+      Arrays.fill(buffer, 0, degrees[vertex], 1);
+    else
+      System.arraycopy(weights[vertex], 0, buffer, 0, degrees[vertex]);
+    return degrees[vertex];
+  }
+
+  public void grow(int numVertices) {
+    int oldSize = adjacency.length;
+    adjacency = Arrays.copyOf(adjacency, numVertices);
+    Arrays.fill(adjacency, oldSize, numVertices, EMPTY);
+    degrees = Arrays.copyOf(degrees, numVertices);
+    if (weights != null) {
+      weights = Arrays.copyOf(weights, numVertices);
+      Arrays.fill(weights, oldSize, numVertices, NO_WEIGHTS);
+    }
+  }
+
+  public GraphStorage compact(int[] mapping, int numVertices) {
+    // Rows are copied at their exact length, so the compacted storage has no slack either
+    AdjacencyListStorage compacted = new AdjacencyListStorage(numVertices);
+    if (weights != null) {
+      compacted.weights = new double[numVertices][];
+      Arrays.fill(compacted.weights, NO_WEIGHTS);
+    }
+    for (int vertex=0; vertex<adjacency.length; vertex++) {
+      int degree = degrees[vertex];
+      if (mapping[vertex] == -1 || degree == 0)
+        continue;
+      int[] row = new int[degree];
+      for (int i=0; i<degree; i++)
+        row[i] = mapping[adjacency[vertex][i]];
+      compacted.adjacency[mapping[vertex]] = row;
+      compacted.degrees[mapping[vertex]] = degree;
+      if (weights != null)
+        compacted.weights[mapping[vertex]] = Arrays.copyOf(weights[vertex], degree);
+    }
+    return compacted;
+  }
+
+  /**
+   * Binary searches a row for a vertex
+   * @param row The row to be searched
+   * @param length The number of elements of the row that are used
+   * @param vertex The vertex being searched for
+   * @return The index of the vertex if it is in the row, otherwise (-(insertion point) - 1)
+   */
+  private static int indexOf(int[] row, int length, int vertex) {
+    return Arrays.binarySearch(row, 0, length, vertex);
+  }
+
+  /**
+   * Inserts a neighbour into a vertex's row, keeping the row sorted and growing it if it is full. A new edge has weight 1
+   * Preconditions: The neighbour is not already in the row
+   * @param vertex The vertex whose row is changed
+   * @param neighbour The neighbour to be inserted
+   */
+  private void insert(int vertex, int neighbour) {
+    int[] row = adjacency[vertex];
+    int length = degrees[vertex];
+    if (length == row.length) {
+      row = Arrays.copyOf(row, Math.max(4, length * 2));
+      adjacency[vertex] = row;
+      if (weights != null)
+        weights[vertex] = Arrays.copyOf(weights[vertex], row.length);
+    }
+    int index = -indexOf(row, length, neighbour) - 1;
+    System.arraycopy(row, index, row, index + 1, length - index);
+    row[index] = neighbour;
+    if (weights != null) {
+      System.arraycopy(weights[vertex], index, weights[vertex], index + 1, length - index);
+      weights[vertex][index] = 1;
+    }
+    degrees[vertex]++;
+  }
+
+  /**
+   * Deletes a neighbour from a vertex's row, keeping the row sorted
+   * Preconditions: The neighbour is in the row
+   * @param vertex The vertex whose row is changed
+   * @param neighbour The neighbour to be deleted
+   */
+  private void delete(int vertex, int neighbour) {
+    int[] row = adjacency[vertex];
+    int index = indexOf(row, degrees[vertex], neighbour);
+    System.arraycopy(row, index + 1, row, index, degrees[vertex] - index - 1);
+    if (weights != null)
+      System.arraycopy(weights[vertex], index + 1, weights[vertex], index, degrees[vertex] - index - 1);
+    degrees[vertex]--;
+  }
+}
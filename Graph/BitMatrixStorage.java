@@ -0,0 +1,192 @@
+import java.util.Arrays;
+
+/**
+ * 
+ * Graph storage backed by an adjacency matrix of bits. Each row is an array of longs, so it needs one bit
+ *    per pair of vertices instead of the one byte that a boolean takes, and neighbour scans look at 64
+ *    vertices at a time using Long.bitCount and Long.numberOfTrailingZeros. Common neighbours and
+ *    triangles are counted by ANDing rows together. Best for dense graphs.
+ * 
+ * VARIABLES
+ * ---------
+ * private long[][] rows;
+ *      For each vertex, a bitset of its neighbours. Bit (d % 64) of rows[s][d / 64] is set if there is an edge from s to d.
+ *      Like the boolean matrix, every edge is set in both rows so that each row is a complete neighbour list
+ * 
+ * private int numVertices;
+ *      The number of vertices
+ * 
+ * METHODS
+ * -------
+ * public BitMatrixStorage(int numVertices)
+ *      Constructor. Makes room for 'numVertices' vertices, with no edges
+ * 
+ * public int countCommonNeighbours(int first, int second)
+ *      Counts the vertices which are neighbours of both given vertices
+ * 
+ * public long countTriangles(long[] counts)
+ *      Counts the triangles in the graph, and the triangles through each vertex
+ * 
+ * The rest are described in GraphStorage
+ *
+ */
+
+public class BitMatrixStorage implements GraphStorage {
+  private long[][] rows;
+  private int numVertices;
+
+  /**
+   * Constructs an empty bit matrix
+   * Postconditions: A matrix is created with the given number of rows and columns, and with no edges
+   * @param numVertices The number of vertices that will be stored
+   */
+  public BitMatrixStorage(int numVertices) {
+    this.numVertices = numVertices;
+    rows = new long[numVertices][(numVertices + 63) >>> 6];
+  }
+
+  public int size() {
+    return numVertices;
+  }
+
+  public boolean isRowLocal() {
+    return true;
+  }
+
+  public boolean isEdge(int source, int destination) {
+    return (rows[source][destination >>> 6] & (1L << destination)) != 0;
+  }
+
+  public boolean addEdge(int source, int destination) {
+    if (isEdge(source, destination))
+      return false;
+    rows[source][destination >>> 6] |= 1L << destination;
+    rows[destination][source >>> 6] |= 1L << source;
+    return true;
+  }
+
+  public boolean removeEdge(int source, int destination) {
+    if (!isEdge(source, destination))
+      return false;
+    rows[source][destination >>> 6] &= ~(1L << destination);
+    rows[destination][source >>> 6] &= ~(1L << source);
+    return true;
+  }
+
+  public void removeEdges(int vertex) {
+    long[] row = rows[vertex];
+    for (int word=0; word<row.length; word++) {
+      // Clear this vertex out of each neighbour's row, one set bit at a time
+      long bits = row[word];
+      while (bits != 0) {
+        int neighbour = (word << 6) + Long.numberOfTrailingZeros(bits);
+        rows[neighbour][vertex >>> 6] &= ~(1L << vertex);
+        bits &= bits - 1;
+      }
+      row[word] = 0;
+    }
+  }
+
+  public int degree(int vertex) {
+    int degree = 0;
+    for (long bits : rows[vertex])
+      degree += Long.bitCount(bits);
+    return degree;
+  }
+
+  public int getAdjacent(int vertex, int[] buffer) {
+    long[] row = rows[vertex];
+    int count = 0;
+    for (int word=0; word<row.length; word++) {
+      long bits = row[word];
+      while (bits != 0) {
+        buffer[count++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+        bits &= bits - 1;
+      }
+    }
+    return count;
+  }
+
+  public void grow(int numVertices) {
+    int words = (numVertices + 63) >>> 6;
+    long[][] grown = new long[numVertices][];
+    for (int vertex=0; vertex<numVertices; vertex++)
+      grown[vertex] = vertex < this.numVertices ? Arrays.copyOf(rows[vertex], words) : new long[words];
+    rows = grown;
+    this.numVertices = numVertices;
+  }
+
+  public GraphStorage compact(int[] mapping, int numVertices) {
+    BitMatrixStorage compacted = new BitMatrixStorage(numVertices);
+    for (int source=0; source<this.numVertices; source++) {
+      if (mapping[source] == -1)
+        continue;
+      long[] row = rows[source];
+      long[] compactedRow = compacted.rows[mapping[source]];
+      for (int word=0; word<row.length; word++) {
+        long bits = row[word];
+        while (bits != 0) {
+          int destination = mapping[(word << 6) + Long.numberOfTrailingZeros(bits)];
+          compactedRow[destination >>> 6] |= 1L << destination;
+          bits &= bits - 1;
+        }
+      }
+    }
+    return compacted;
+  }
+
+  /**
+   * Counts the vertices which are neighbours of both given vertices, by ANDing their rows
+   * @param first The index of the first vertex
+   * @param second The index of the second vertex
+   * @return The number of common neighbours
+   */
+  public int countCommonNeighbours(int first, int second) {
+    long[] a = rows[first];
+    long[] b = rows[second];
+    int count = 0;
+    for (int word=0; word<a.length; word++)
+      count += Long.bitCount(a[word] & b[word]);
+    return count;
+  }
+
+  /**
+   * Counts the triangles in the graph, and the triangles through each vertex. For every edge (u, v) with u < v, the
+   *    triangles u-v-w with w > v are the set bits of (row u AND row v) above v, so each triangle is found exactly once
+   *    and credited to all three corners
+   * @param counts Filled with the number of triangles through each vertex. Must have room for every vertex and be zeroed
+   * @return The number of triangles
+   */
+  public long countTriangles(long[] counts) {
+    long triangles = 0;
+    for (int u=0; u<numVertices; u++) {
+      long[] rowU = rows[u];
+      for (int word=u >>> 6; word<rowU.length; word++) {
+        long bits = rowU[word];
+        if (word == u >>> 6)
+          bits &= -2L << u; // only neighbours above u
+        while (bits != 0) {
+          int v = (word << 6) + Long.numberOfTrailingZeros(bits);
+          bits &= bits - 1;
+
+          long[] rowV = rows[v];
+          int found = 0;
+          for (int w=v >>> 6; w<rowU.length; w++) {
+            long common = rowU[w] & rowV[w];
+            if (w == v >>> 6)
+              common &= -2L << v; // only common neighbours above v
+            found += Long.bitCount(common);
+            while (common != 0) {
+              counts[(w << 6) + Long.numberOfTrailingZeros(common)]++;
+              common &= common - 1;
+            }
+          }
+          counts[u] += found;
+          counts[v] += found;
+          triangles += found;
+        }
+      }
+    }
+    return triangles;
+  }
+}
@@ -0,0 +1,552 @@
+import java.util.Arrays;
+
+/**
+ *
+ * Graph storage backed by the adjacency matrix compressed into a trie of small blocks, in the style of a k^2-tree.
+ *    The matrix is padded to a square whose side is 8 times a power of 4. The root of the trie covers all of it and is
+ *    split into 4 x 4 children, each of those into 4 x 4 again, and so on down to leaves of 8 x 8 bits, which are kept
+ *    in a single long. An empty block at any level is the id 0 and takes no space at all.
+ * Every block is also kept only once: a table of the unique nodes and leaves hands out the same id for equal contents,
+ *    so repeated blocks, like the ones a clustered graph or a regular structure produces, are shared wherever they
+ *    appear. Blocks are never changed in place. Setting a bit copies the path from the root down to its leaf, looks
+ *    each new block up in the table, and releases the old ones, which are freed when nothing refers to them any more.
+ * isEdge follows one path from the root to a leaf, and getAdjacent only visits the non empty blocks along one row
+ *    band, stopping at the last neighbour, so both are fast over the compressed form. Best for large graphs whose
+ *    edges are clustered: a million vertex grid takes about 400 nodes and 4 leaves. A graph with edges scattered
+ *    uniformly at random shares almost nothing, so it is smaller, and its neighbours are found faster, in an
+ *    AdjacencyListStorage.
+ * Only one thread may change the trie at a time, even when the changes are to different rows: every change rewrites
+ *    the path from the root and the shared tables of unique blocks and their reference counts. So isRowLocal is false,
+ *    and ConcurrentGraph refuses it. To build a trie from many threads, let them add the edges to a ConcurrentGraph over
+ *    an AdjacencyListStorage, then copy that storage with BlockTrieStorage(GraphStorage) once they have finished.
+ *
+ * VARIABLES
+ * ---------
+ * private int numVertices;
+ *      The number of vertices
+ *
+ * private int height;
+ *      The number of levels of 4 x 4 nodes above the leaves. The matrix covers 8 * 4^height vertices
+ *
+ * private int root;
+ *      The id of the node covering the whole matrix, or 0 if there are no edges
+ *
+ * private int[] degrees;
+ *      The number of neighbours of each vertex, kept up to date so that degree does not walk the trie
+ *
+ * private int[] children;
+ *      The children of node n are children[16 * n] to children[16 * n + 15], row by row. The children of a node on
+ *      level 1 are leaf ids, the children of a higher node are node ids. Node 0 is the empty node, and has no children
+ *
+ * private byte[] nodeLevels;
+ * private int[] nodeReferences;
+ *      The level of each node, and the number of nodes (or, for the root, the storage itself) referring to it
+ *
+ * private long[] leaves;
+ * private int[] leafReferences;
+ *      The bits of each leaf, where bit 8 * r + c is row r and column c of the block, and the number of nodes
+ *      referring to it. Leaf 0 is the empty leaf
+ *
+ * private int[] nodeBuckets, nodeNext, leafBuckets, leafNext;
+ *      The tables of unique nodes and leaves, as hash tables with chaining. The next arrays also link the free ids
+ *
+ * private int nodeCount, nodeEnd, freeNode, leafCount, leafEnd, freeLeaf;
+ *      The number of live nodes, one more than the largest id ever used, and the first free id (0 if there are none),
+ *      and the same for leaves
+ *
+ * private int[][] scratch;
+ *      One array of 16 children per level, used to build the new path when a bit is set
+ *
+ * METHODS
+ * -------
+ * public BlockTrieStorage(int numVertices)
+ *      Constructor. Makes room for 'numVertices' vertices, with no edges
+ *
+ * public BlockTrieStorage(GraphStorage storage)
+ *      Constructor. Copies the edges of another storage
+ *
+ * public int getNodeCount()
+ *      Returns the number of unique nodes in the trie
+ *
+ * public int getLeafCount()
+ *      Returns the number of unique leaves in the trie
+ *
+ * private int collect(int id, int level, int row, int column, int[] buffer, int count)
+ *      Copies the set bits of one row of a block into a buffer
+ *
+ * private void set(int row, int column, boolean value)
+ *      Sets or clears one bit of the matrix
+ *
+ * private int update(int id, int level, int row, int column, boolean value)
+ *      Returns the id of a copy of a block with one bit set or cleared
+ *
+ * private int internNode(int level, int[] node), internLeaf(long bits)
+ *      Returns the id of the unique node or leaf with the given contents, adding it if needed
+ *
+ * private void release(int id, int level)
+ *      Drops a reference to a block, freeing it and releasing its children when nothing else refers to it
+ *
+ * The rest are described in GraphStorage
+ *
+ */
+
+public class BlockTrieStorage implements GraphStorage {
+  private static final int LEAF_SHIFT = 3;   // Leaves are 8 x 8
+  private static final int FANOUT_SHIFT = 2; // Nodes are 4 x 4
+  private static final int FANOUT_MASK = (1 << FANOUT_SHIFT) - 1;
+  private static final int CHILDREN = 16;
+
+  private int numVertices;
+  private int height;
+  private int root;
+  private int[] degrees;
+
+  private int[] children;
+  private byte[] nodeLevels;
+  private int[] nodeReferences;
+  private int[] nodeBuckets;
+  private int[] nodeNext;
+  private int nodeCount, nodeEnd, freeNode;
+
+  private long[] leaves;
+  private int[] leafReferences;
+  private int[] leafBuckets;
+  private int[] leafNext;
+  private int leafCount, leafEnd, freeLeaf;
+
+  private int[][] scratch;
+
+  /**
+   * Constructs an empty trie
+   * Postconditions: A matrix is created with room for the given number of vertices, and with no edges
+   * @param numVertices The number of vertices that will be stored
+   */
+  public BlockTrieStorage(int numVertices) {
+    this.numVertices = numVertices;
+    degrees = new int[numVertices];
+    height = 1;
+    while ((long) 1 << (LEAF_SHIFT + FANOUT_SHIFT * height) < numVertices)
+      height++;
+    scratch = new int[height + 1][CHILDREN];
+
+    // Id 0 is the empty node and the empty leaf, so the first real block is 1
+    children = new int[CHILDREN * 64];
+    nodeLevels = new byte[64];
+    nodeReferences = new int[64];
+    nodeNext = new int[64];
+    nodeBuckets = new int[64];
+    nodeEnd = 1;
+    leaves = new long[64];
+    leafReferences = new int[64];
+    leafNext = new int[64];
+    leafBuckets = new int[64];
+    leafEnd = 1;
+  }
+
+  /**
+   * Constructs a trie with the same edges as another storage
+   * @param storage The storage to copy
+   */
+  public BlockTrieStorage(GraphStorage storage) {
+    this(storage.size());
+    int[] adjacent = new int[16];
+    for (int source=0; source<numVertices; source++) {
+      int degree = storage.degree(source);
+      if (adjacent.length < degree)
+        adjacent = new int[Math.max(degree, adjacent.length * 2)];
+      int count = storage.getAdjacent(source, adjacent);
+      for (int i=0; i<count; i++) {
+        if (adjacent[i] > source)
+          addEdge(source, adjacent[i]);
+      }
+    }
+  }
+
+  public int size() {
+    return numVertices;
+  }
+
+  public boolean isRowLocal() {
+    // Every change rewrites the path from the root, and the shared tables of unique blocks
+    return false;
+  }
+
+  public boolean isEdge(int source, int destination) {
+    int id = root;
+    for (int level=height; level>0 && id != 0; level--) {
+      int shift = LEAF_SHIFT + FANOUT_SHIFT * (level - 1);
+      id = children[(id << 4) + (((source >>> shift) & FANOUT_MASK) << FANOUT_SHIFT) + ((destination >>> shift) & FANOUT_MASK)];
+    }
+    return id != 0 && (leaves[id] >>> (((source & 7) << LEAF_SHIFT) + (destination & 7)) & 1) != 0;
+  }
+
+  public boolean addEdge(int source, int destination) {
+    if (isEdge(source, destination))
+      return false;
+    set(source, destination, true);
+    set(destination, source, true);
+    degrees[source]++;
+    degrees[destination]++;
+    return true;
+  }
+
+  public boolean removeEdge(int source, int destination) {
+    if (!isEdge(source, destination))
+      return false;
+    set(source, destination, false);
+    set(destination, source, false);
+    degrees[source]--;
+    degrees[destination]--;
+    return true;
+  }
+
+  public void removeEdges(int vertex) {
+    int[] adjacent = new int[degrees[vertex]];
+    int count = getAdjacent(vertex, adjacent);
+    for (int i=0; i<count; i++)
+      removeEdge(vertex, adjacent[i]);
+  }
+
+  public int degree(int vertex) {
+    return degrees[vertex];
+  }
+
+  public int getAdjacent(int vertex, int[] buffer) {
+    return degrees[vertex] == 0 ? 0 : collect(root, height, vertex, 0, buffer, 0);
+  }
+
+  public void grow(int numVertices) {
+    degrees = Arrays.copyOf(degrees, numVertices);
+    this.numVertices = numVertices;
+    // The old matrix becomes the top left block of a new root, one level higher
+    while ((long) 1 << (LEAF_SHIFT + FANOUT_SHIFT * height) < numVertices) {
+      int[] node = new int[CHILDREN];
+      node[0] = root;
+      int grown = internNode(height + 1, node);
+      release(root, height);
+      root = grown;
+      height++;
+    }
+    if (scratch.length <= height)
+      scratch = new int[height + 1][CHILDREN];
+  }
+
+  public GraphStorage compact(int[] mapping, int numVertices) {
+    BlockTrieStorage compacted = new BlockTrieStorage(numVertices);
+    int[] adjacent = new int[16];
+    for (int source=0; source<this.numVertices; source++) {
+      if (mapping[source] == -1)
+        continue;
+      if (adjacent.length < degrees[source])
+        adjacent = new int[Math.max(degrees[source], adjacent.length * 2)];
+      int count = getAdjacent(source, adjacent);
+      for (int i=0; i<count; i++) {
+        if (adjacent[i] > source)
+          compacted.addEdge(mapping[source], mapping[adjacent[i]]);
+      }
+    }
+    return compacted;
+  }
+
+  /**
+   * Returns the number of unique nodes in the trie, not counting leaves. Each takes about 80 bytes
+   * @return The number of nodes
+   */
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  /**
+   * Returns the number of unique leaves in the trie. Each takes about 20 bytes
+   * @return The number of leaves
+   */
+  public int getLeafCount() {
+    return leafCount;
+  }
+
+  /**
+   * Copies the set bits of one row of a block into a buffer, in increasing order of column, skipping empty children
+   * Preconditions: id != 0
+   * @param id The id of the block
+   * @param level The level of the block, 0 for a leaf
+   * @param row The row of the whole matrix
+   * @param column The column of the whole matrix where the block starts
+   * @param buffer Where the columns are written
+   * @param count The number of columns already in the buffer
+   * @return The number of columns in the buffer afterwards
+   */
+  private int collect(int id, int level, int row, int column, int[] buffer, int count) {
+    if (level == 0) {
+      long bits = (leaves[id] >>> ((row & 7) << LEAF_SHIFT)) & 0xFF;
+      while (bits != 0) {
+        buffer[count++] = column + Long.numberOfTrailingZeros(bits);
+        bits &= bits - 1;
+      }
+      return count;
+    }
+
+    int shift = LEAF_SHIFT + FANOUT_SHIFT * (level - 1);
+    int first = (id << 4) + (((row >>> shift) & FANOUT_MASK) << FANOUT_SHIFT);
+    for (int i=0; i<=FANOUT_MASK; i++) {
+      int child = children[first + i];
+      if (child != 0)
+        count = collect(child, level - 1, row, column + (i << shift), buffer, count);
+      // Once every neighbour has been found, the rest of the row is empty
+      if (count == degrees[row])
+        break;
+    }
+    return count;
+  }
+
+  /**
+   * Sets or clears one bit of the matrix, by replacing the path from the root down to it
+   * @param row The row of the bit
+   * @param column The column of the bit
+   * @param value True to set the bit, false to clear it
+   */
+  private void set(int row, int column, boolean value) {
+    int updated = update(root, height, row, column, value);
+    release(root, height);
+    root = updated;
+  }
+
+  /**
+   * Returns the id of a copy of a block with one bit set or cleared. The block itself is not changed, and the caller
+   *    owns one reference to the copy
+   * @param id The id of the block, which may be 0
+   * @param level The level of the block, 0 for a leaf
+   * @param row The row of the bit in the whole matrix
+   * @param column The column of the bit in the whole matrix
+   * @param value True to set the bit, false to clear it
+   * @return The id of the copy, which is 0 if it is empty
+   */
+  private int update(int id, int level, int row, int column, boolean value) {
+    if (level == 0) {
+      long mask = 1L << (((row & 7) << LEAF_SHIFT) + (column & 7));
+      return internLeaf(value ? leaves[id] | mask : leaves[id] & ~mask);
+    }
+
+    int shift = LEAF_SHIFT + FANOUT_SHIFT * (level - 1);
+    int slot = (((row >>> shift) & FANOUT_MASK) << FANOUT_SHIFT) + ((column >>> shift) & FANOUT_MASK);
+    int[] node = scratch[level];
+    System.arraycopy(children, id << 4, node, 0, CHILDREN);
+    int child = update(node[slot], level - 1, row, column, value);
+    node[slot] = child;
+    int copy = internNode(level, node);
+    // The copy holds its own reference to the child now
+    release(child, level - 1);
+    return copy;
+  }
+
+  /**
+   * Returns the id of the unique node with the given children, adding it if there is none yet. The caller owns one
+   *    reference to it, and a new node takes a reference to each of its children
+   * @param level The level of the node
+   * @param node The 16 children of the node, row by row
+   * @return The id of the node, which is 0 if every child is empty
+   */
+  private int internNode(int level, int[] node) {
+    int hash = level;
+    boolean empty = true;
+    for (int child : node) {
+      hash = hash * 31 + child;
+      empty &= child == 0;
+    }
+    if (empty)
+      return 0;
+    hash = mix(hash);
+
+    for (int id=nodeBuckets[hash & (nodeBuckets.length - 1)]; id != 0; id=nodeNext[id]) {
+      if (nodeLevels[id] == level && sameChildren(id, node)) {
+        nodeReferences[id]++;
+        return id;
+      }
+    }
+
+    int id;
+    if (freeNode != 0) {
+      id = freeNode;
+      freeNode = nodeNext[id];
+    } else {
+      if (nodeEnd == nodeReferences.length) {
+        children = Arrays.copyOf(children, children.length * 2);
+        nodeLevels = Arrays.copyOf(nodeLevels, nodeLevels.length * 2);
+        nodeReferences = Arrays.copyOf(nodeReferences, nodeReferences.length * 2);
+        nodeNext = Arrays.copyOf(nodeNext, nodeNext.length * 2);
+      }
+      id = nodeEnd++;
+    }
+    System.arraycopy(node, 0, children, id << 4, CHILDREN);
+    nodeLevels[id] = (byte) level;
+    nodeReferences[id] = 1;
+    for (int child : node) {
+      if (child == 0)
+        continue;
+      if (level == 1)
+        leafReferences[child]++;
+      else
+        nodeReferences[child]++;
+    }
+
+    int bucket = hash & (nodeBuckets.length - 1);
+    nodeNext[id] = nodeBuckets[bucket];
+    nodeBuckets[bucket] = id;
+    if (++nodeCount > nodeBuckets.length)
+      rehashNodes();
+    return id;
+  }
+
+  /**
+   * Returns the id of the unique leaf with the given bits, adding it if there is none yet. The caller owns one
+   *    reference to it
+   * @param bits The bits of the leaf
+   * @return The id of the leaf, which is 0 if no bit is set
+   */
+  private int internLeaf(long bits) {
+    if (bits == 0)
+      return 0;
+    int hash = mix((int) (bits ^ (bits >>> 32)));
+    for (int id=leafBuckets[hash & (leafBuckets.length - 1)]; id != 0; id=leafNext[id]) {
+      if (leaves[id] == bits) {
+        leafReferences[id]++;
+        return id;
+      }
+    }
+
+    int id;
+    if (freeLeaf != 0) {
+      id = freeLeaf;
+      freeLeaf = leafNext[id];
+    } else {
+      if (leafEnd == leaves.length) {
+        leaves = Arrays.copyOf(leaves, leaves.length * 2);
+        leafReferences = Arrays.copyOf(leafReferences, leafReferences.length * 2);
+        leafNext = Arrays.copyOf(leafNext, leafNext.length * 2);
+      }
+      id = leafEnd++;
+    }
+    leaves[id] = bits;
+    leafReferences[id] = 1;
+
+    int bucket = hash & (leafBuckets.length - 1);
+    leafNext[id] = leafBuckets[bucket];
+    leafBuckets[bucket] = id;
+    if (++leafCount > leafBuckets.length)
+      rehashLeaves();
+    return id;
+  }
+
+  /**
+   * Drops a reference to a block. When nothing refers to it any more it is taken out of the table, its id is freed,
+   *    and the references it held to its children are dropped in turn
+   * @param id The id of the block, which may be 0
+   * @param level The level of the block, 0 for a leaf
+   */
+  private void release(int id, int level) {
+    if (id == 0)
+      return;
+
+    if (level == 0) {
+      if (--leafReferences[id] > 0)
+        return;
+      long bits = leaves[id];
+      unlink(leafBuckets, leafNext, mix((int) (bits ^ (bits >>> 32))) & (leafBuckets.length - 1), id);
+      leaves[id] = 0;
+      leafNext[id] = freeLeaf;
+      freeLeaf = id;
+      leafCount--;
+      return;
+    }
+
+    if (--nodeReferences[id] > 0)
+      return;
+    int hash = level;
+    for (int i=0; i<CHILDREN; i++)
+      hash = hash * 31 + children[(id << 4) + i];
+    unlink(nodeBuckets, nodeNext, mix(hash) & (nodeBuckets.length - 1), id);
+    for (int i=0; i<CHILDREN; i++) {
+      release(children[(id << 4) + i], level - 1);
+      children[(id << 4) + i] = 0;
+    }
+    nodeNext[id] = freeNode;
+    freeNode = id;
+    nodeCount--;
+  }
+
+  /**
+   * Returns whether a node has the given children
+   * @param id The id of the node
+   * @param node The 16 children to compare with
+   * @return True if every child is the same
+   */
+  private boolean sameChildren(int id, int[] node) {
+    int first = id << 4;
+    for (int i=0; i<CHILDREN; i++) {
+      if (children[first + i] != node[i])
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Takes an id out of a hash table's chain
+   * @param buckets The first id in each chain
+   * @param next The next id in the chain after each id
+   * @param bucket The chain holding the id
+   * @param id The id to take out
+   */
+  private static void unlink(int[] buckets, int[] next, int bucket, int id) {
+    if (buckets[bucket] == id) {
+      buckets[bucket] = next[id];
+      return;
+    }
+    int previous = buckets[bucket];
+    while (next[previous] != id)
+      previous = next[previous];
+    next[previous] = next[id];
+  }
+
+  /**
+   * Doubles the number of chains in the table of nodes
+   */
+  private void rehashNodes() {
+    nodeBuckets = new int[nodeBuckets.length * 2];
+    for (int id=1; id<nodeEnd; id++) {
+      if (nodeReferences[id] == 0)
+        continue;
+      int hash = nodeLevels[id];
+      for (int i=0; i<CHILDREN; i++)
+        hash = hash * 31 + children[(id << 4) + i];
+      int bucket = mix(hash) & (nodeBuckets.length - 1);
+      nodeNext[id] = nodeBuckets[bucket];
+      nodeBuckets[bucket] = id;
+    }
+  }
+
+  /**
+   * Doubles the number of chains in the table of leaves
+   */
+  private void rehashLeaves() {
+    leafBuckets = new int[leafBuckets.length * 2];
+    for (int id=1; id<leafEnd; id++) {
+      if (leafReferences[id] == 0)
+        continue;
+      long bits = leaves[id];
+      int bucket = mix((int) (bits ^ (bits >>> 32))) & (leafBuckets.length - 1);
+      leafNext[id] = leafBuckets[bucket];
+      leafBuckets[bucket] = id;
+    }
+  }
+
+  /**
+   * Spreads the bits of a hash code, so that the low bits used to pick a chain depend on all of them
+   * @param hash The hash code
+   * @return The mixed hash code
+   */
+  private static int mix(int hash) {
+    hash ^= hash >>> 16;
+    hash *= 0x85EBCA6B;
+    hash ^= hash >>> 13;
+    return hash;
+  }
+}
@@ -0,0 +1,506 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ *
+ * A graph which many threads can add and remove edges and vertices in at the same time. It has the same methods as Graph
+ *    for the things it supports, but it is not a Graph: Graph's degrees, active bitset and triangle counts are changed
+ *    without locks, so rather than inherit them and leave them stale, it keeps its own state, all of it safe to share.
+ * Every vertex is guarded by one of a fixed number of locks (its stripe). Changing an edge locks the stripes of
+ *    both of its ends, always the lower stripe first so two threads can never wait on each other, which means
+ *    both directions of the edge change together and no thread ever sees only one of them. Writers touching
+ *    different vertices take different locks, so ingestion spreads across cores instead of queueing on one lock.
+ *    removeVertex locks the vertex and all of its neighbours at once, so it is safe while other threads add edges.
+ * The active vertices are an atomic bitset, so isInGraph never locks.
+ *
+ * The striping is only safe on storages which only change the rows of the two ends of an edge, so the constructor only
+ *    accepts storages whose isRowLocal() is true. Read only storages count, since they never change; writes to them
+ *    throw UnsupportedOperationException and leave the graph as it was. BlockTrieStorage does not count: every change
+ *    to it rewrites its shared root and tables of unique blocks, so two writers on different stripes would corrupt it.
+ *    Build a trie by adding the edges here over an AdjacencyListStorage and copying that storage into a
+ *    BlockTrieStorage once the writers have finished. Weighted edges are not supported.
+ * Whole-graph queries (triangles, clustering coefficients, the connected components) work on a snapshot taken with
+ *    every stripe locked, so they are not kept up to date incrementally the way Graph keeps them.
+ *    GraphTraversal, ParallelAnalytics and ConnectedComponents should also be given snapshot() rather than the live
+ *    graph, because a vertex's degree can change between reading it and reading its neighbours.
+ *
+ * VARIABLES
+ * ---------
+ * private GraphStorage storage;
+ *      The edges of the graph. Rows are only read or changed while holding the stripes of their vertices
+ *
+ * private ReentrantLock[] stripes;
+ *      The locks. Vertex v is guarded by stripes[v & (stripes.length - 1)]
+ *
+ * private int numVertices;
+ *      The number of vertices, which is fixed when the graph is made
+ *
+ * private AtomicLongArray active;
+ *      A bitset of the active vertices
+ *
+ * private AtomicInteger activeCount;
+ *      The number of active vertices
+ *
+ * METHODS
+ * -------
+ * public ConcurrentGraph(int numVertices)
+ *      Constructor. Uses an AdjacencyListStorage, and a number of stripes suited to the number of processors
+ *
+ * public ConcurrentGraph(GraphStorage storage, int numStripes)
+ *      Constructor. Uses the given storage, and at least the given number of stripes
+ *
+ * public Graph snapshot()
+ *      Returns a read only copy of the graph as it is at one instant
+ *
+ * public int getNumVertices(), List<Integer> getUnusedVertices(), PrimitiveIterator.OfInt getUnusedVertexIterator(),
+ *      IntStream getUnusedVertexStream(), int getActiveVertexCount(), boolean isEdge(int source, int destination),
+ *      void addEdge(int source, int destination), void removeEdge(int source, int destination),
+ *      boolean isInGraph(int vertex), void removeVertex(int vertex), List<Integer> getAdjacent(int vertex),
+ *      int getAdjacent(int vertex, int[] buffer), PrimitiveIterator.OfInt getAdjacentIterator(int vertex),
+ *      IntStream getAdjacentStream(int vertex), int degree(int vertex), int countCommonNeighbours(int first, int second)
+ *      The same as in Graph, each taking the stripes of the vertices it reads or changes. isEdge, addEdge and
+ *      removeEdge throw UnsupportedOperationException on a vertex past the fixed size, since the graph cannot grow
+ *
+ * public long countTriangles(), long countTriangles(int vertex), double getClusteringCoefficient(int vertex),
+ *      double getAverageClusteringCoefficient(), double getGlobalClusteringCoefficient(), boolean isConnected(),
+ *      int getComponentCount(), int getComponent(int vertex), ConnectedComponents getConnectedComponents()
+ *      The same as in Graph, answered from a snapshot
+ *
+ * private static GraphStorage checkRowLocal(GraphStorage storage)
+ *      Checks that a storage can be guarded by locking rows
+ *
+ * private void checkRange(int source, int destination)
+ *      Checks that both ends of an edge are vertices of this graph
+ *
+ * private ReentrantLock stripe(int vertex)
+ *      Returns the lock guarding a vertex
+ *
+ * private void lock(int first, int second), unlock(int first, int second)
+ *      Locks or unlocks the stripes of two vertices, in stripe order
+ *
+ * private boolean activate(int vertex), deactivate(int vertex)
+ *      Sets or clears a vertex's bit in the active bitset
+ *
+ * private int nextUnused(int from)
+ *      Finds the first vertex at or after the given one which is not active
+ *
+ * private int[] adjacentArray(int vertex)
+ *      Returns a copy of the neighbours of a vertex, taken under its stripe
+ *
+ */
+
+public class ConcurrentGraph {
+  private GraphStorage storage;
+  private int numVertices;
+  private ReentrantLock[] stripes;
+  private AtomicLongArray active;
+  private AtomicInteger activeCount = new AtomicInteger();
+
+  /**
+   * Constructs a concurrent graph backed by an AdjacencyListStorage, with 64 stripes per processor
+   * Postconditions: A graph is created with the given number of vertices, which are all empty, and with no edges
+   * @param numVertices The number of vertices that wil be in this graph
+   */
+  public ConcurrentGraph(int numVertices) {
+    this(new AdjacencyListStorage(numVertices), 64 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructs a concurrent graph on top of the given storage
+   * Postconditions: A graph is created with one vertex per vertex of the storage. Vertices which already have edges are active
+   * @param storage Where the edges of this graph are kept. It must not be used by anything else afterwards
+   * @param numStripes The least number of locks; more locks means less waiting. Rounded up to a power of two
+   * @throws IllegalArgumentException If the storage is not row local, so that locking rows cannot make it safe
+   */
+  public ConcurrentGraph(GraphStorage storage, int numStripes) {
+    this.storage = checkRowLocal(storage);
+    numVertices = storage.size();
+    int count = Integer.highestOneBit(Math.max(1, numStripes - 1)) << 1;
+    stripes = new ReentrantLock[count];
+    for (int i=0; i<count; i++)
+      stripes[i] = new ReentrantLock();
+
+    active = new AtomicLongArray((numVertices + 63) >>> 6);
+    for (int vertex=0; vertex<numVertices; vertex++) {
+      if (storage.degree(vertex) > 0)
+        activate(vertex);
+    }
+  }
+
+  /**
+   * Returns a read only copy of the graph as it is at one instant, taken with every stripe locked.
+   * Use this to run traversals and other whole-graph algorithms while writers carry on
+   * @return A frozen Graph with the same active vertices and edges as this one
+   */
+  public Graph snapshot() {
+    for (ReentrantLock stripe : stripes)
+      stripe.lock();
+    try {
+      Graph snapshot = new Graph(new CsrStorage(storage));
+      // A self loop only activates a vertex, which is the way to activate vertices that have no edges
+      for (int vertex=0; vertex<numVertices; vertex++) {
+        if (isInGraph(vertex) && storage.degree(vertex) == 0)
+          snapshot.addEdge(vertex, vertex);
+      }
+      return snapshot;
+    } finally {
+      for (int i=stripes.length - 1; i>=0; i--)
+        stripes[i].unlock();
+    }
+  }
+
+  public int getNumVertices() {
+    return numVertices;
+  }
+
+  public List<Integer> getUnusedVertices() {
+    List<Integer> unusedVertices = new ArrayList<Integer>();
+    PrimitiveIterator.OfInt iterator = getUnusedVertexIterator();
+    while (iterator.hasNext())
+      unusedVertices.add(iterator.nextInt());
+    return unusedVertices;
+  }
+
+  public PrimitiveIterator.OfInt getUnusedVertexIterator() {
+    return new PrimitiveIterator.OfInt() {
+      private int next = nextUnused(0);
+
+      public boolean hasNext() {
+        return next < numVertices;
+      }
+
+      public int nextInt() {
+        if (!hasNext())
+          throw new NoSuchElementException();
+        int vertex = next;
+        next = nextUnused(next + 1);
+        return vertex;
+      }
+    };
+  }
+
+  public IntStream getUnusedVertexStream() {
+    // The count can change while the stream runs, so it is not reported as the stream's size
+    Spliterator.OfInt spliterator = Spliterators.spliteratorUnknownSize(getUnusedVertexIterator(),
+        Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL);
+    return StreamSupport.intStream(spliterator, false);
+  }
+
+  public int getActiveVertexCount() {
+    return activeCount.get();
+  }
+
+  public boolean isEdge(int source, int destination) {
+    checkRange(source, destination);
+    lock(source, destination);
+    try {
+      return storage.isEdge(source, destination);
+    } finally {
+      unlock(source, destination);
+    }
+  }
+
+  public void addEdge(int source, int destination) {
+    checkRange(source, destination);
+    lock(source, destination);
+    try {
+      if (source != destination)
+        storage.addEdge(source, destination);
+      activate(source);
+      activate(destination);
+    } finally {
+      unlock(source, destination);
+    }
+  }
+
+  public void removeEdge(int source, int destination) {
+    checkRange(source, destination);
+    lock(source, destination);
+    try {
+      storage.removeEdge(source, destination);
+    } finally {
+      unlock(source, destination);
+    }
+  }
+
+  public boolean isInGraph(int vertex) {
+    return (active.get(vertex >>> 6) & (1L << vertex)) != 0;
+  }
+
+  public void removeVertex(int vertex) {
+    boolean[] held = new boolean[stripes.length];
+    while (true) {
+      // Find out which stripes the neighbours need, then lock them all, lowest first
+      Arrays.fill(held, false);
+      held[vertex & (stripes.length - 1)] = true;
+      for (int adjacent : adjacentArray(vertex))
+        held[adjacent & (stripes.length - 1)] = true;
+      for (int i=0; i<stripes.length; i++) {
+        if (held[i])
+          stripes[i].lock();
+      }
+
+      try {
+        // Edges may have been added between looking at the neighbours and locking them, so check again
+        boolean covered = true;
+        int[] adjacent = new int[storage.degree(vertex)];
+        storage.getAdjacent(vertex, adjacent);
+        for (int i=0; i<adjacent.length && covered; i++)
+          covered = held[adjacent[i] & (stripes.length - 1)];
+        if (covered) {
+          storage.removeEdges(vertex);
+          deactivate(vertex);
+          return;
+        }
+      } finally {
+        for (int i=stripes.length - 1; i>=0; i--) {
+          if (held[i])
+            stripes[i].unlock();
+        }
+      }
+    }
+  }
+
+  public List<Integer> getAdjacent(int vertex) {
+    int[] adjacent = isInGraph(vertex) ? adjacentArray(vertex) : new int[0];
+    List<Integer> list = new ArrayList<Integer>(adjacent.length);
+    for (int neighbour : adjacent)
+      list.add(neighbour);
+    return list;
+  }
+
+  /**
+   * Copies the vertices that are connected to the given vertex into a buffer, in increasing order, without allocating anything
+   * Preconditions: buffer.length >= degree(vertex), which edges added by other threads since degree was called can break
+   * @param vertex The vertex who's adjacent vertices are to be found
+   * @param buffer Where the adjacent vertices are written, starting at index 0
+   * @return The number of adjacent vertices written
+   */
+  public int getAdjacent(int vertex, int[] buffer) {
+    ReentrantLock stripe = stripe(vertex);
+    stripe.lock();
+    try {
+      return isInGraph(vertex) ? storage.getAdjacent(vertex, buffer) : 0;
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  public PrimitiveIterator.OfInt getAdjacentIterator(int vertex) {
+    return getAdjacentStream(vertex).iterator();
+  }
+
+  public IntStream getAdjacentStream(int vertex) {
+    return isInGraph(vertex) ? IntStream.of(adjacentArray(vertex)) : IntStream.empty();
+  }
+
+  public int degree(int vertex) {
+    ReentrantLock stripe = stripe(vertex);
+    stripe.lock();
+    try {
+      return storage.degree(vertex);
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  public int countCommonNeighbours(int first, int second) {
+    if (!isInGraph(first) || !isInGraph(second))
+      return 0;
+    int[] a = adjacentArray(first);
+    int[] b = adjacentArray(second);
+    int count = 0;
+    int i = 0, j = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] < b[j])
+        i++;
+      else if (a[i] > b[j])
+        j++;
+      else {
+        count++;
+        i++;
+        j++;
+      }
+    }
+    return count;
+  }
+
+  public long countTriangles() {
+    return snapshot().countTriangles();
+  }
+
+  public long countTriangles(int vertex) {
+    return snapshot().countTriangles(vertex);
+  }
+
+  public double getClusteringCoefficient(int vertex) {
+    return snapshot().getClusteringCoefficient(vertex);
+  }
+
+  public double getAverageClusteringCoefficient() {
+    return snapshot().getAverageClusteringCoefficient();
+  }
+
+  public double getGlobalClusteringCoefficient() {
+    return snapshot().getGlobalClusteringCoefficient();
+  }
+
+  public boolean isConnected() {
+    return getConnectedComponents().isConnected();
+  }
+
+  public int getComponentCount() {
+    return getConnectedComponents().getComponentCount();
+  }
+
+  public int getComponent(int vertex) {
+    return getConnectedComponents().getComponent(vertex);
+  }
+
+  public ConnectedComponents getConnectedComponents() {
+    return snapshot().getConnectedComponents();
+  }
+
+  /**
+   * Checks that a storage can be guarded by locking rows, before the graph is built around it
+   * @param storage The storage to be checked
+   * @return The storage
+   * @throws IllegalArgumentException If the storage is not row local
+   */
+  private static GraphStorage checkRowLocal(GraphStorage storage) {
+    if (!storage.isRowLocal())
+      throw new IllegalArgumentException(storage.getClass().getName() + " is not row local, so it cannot be shared by writer threads");
+    return storage;
+  }
+
+  /**
+   * Checks that both ends of an edge are vertices of this graph, before any lock is taken or the storage is touched
+   * @param source The index of the source vertex
+   * @param destination The index of the destination vertex
+   * @throws UnsupportedOperationException If either vertex is negative or not below getNumVertices(), since the graph
+   *      cannot grow to fit it
+   */
+  private void checkRange(int source, int destination) {
+    if (source < 0 || source >= numVertices || destination < 0 || destination >= numVertices)
+      throw new UnsupportedOperationException("Edge " + source + "-" + destination + " is outside this ConcurrentGraph, which has "
+          + numVertices + " vertices and cannot grow");
+  }
+
+  /**
+   * Returns the lock guarding a vertex
+   * @param vertex The index of the vertex
+   * @return The vertex's stripe
+   */
+  private ReentrantLock stripe(int vertex) {
+    return stripes[vertex & (stripes.length - 1)];
+  }
+
+  /**
+   * Locks the stripes of two vertices, the lower stripe first, or just one if they share a stripe
+   * @param first The index of the first vertex
+   * @param second The index of the second vertex
+   */
+  private void lock(int first, int second) {
+    int a = first & (stripes.length - 1);
+    int b = second & (stripes.length - 1);
+    stripes[Math.min(a, b)].lock();
+    if (a != b)
+      stripes[Math.max(a, b)].lock();
+  }
+
+  /**
+   * Unlocks the stripes locked by lock(first, second)
+   * @param first The index of the first vertex
+   * @param second The index of the second vertex
+   */
+  private void unlock(int first, int second) {
+    int a = first & (stripes.length - 1);
+    int b = second & (stripes.length - 1);
+    if (a != b)
+      stripes[Math.max(a, b)].unlock();
+    stripes[Math.min(a, b)].unlock();
+  }
+
+  /**
+   * Sets a vertex's bit in the active bitset
+   * @param vertex The index of the vertex
+   * @return True if the vertex was not active before
+   */
+  private boolean activate(int vertex) {
+    int word = vertex >>> 6;
+    long mask = 1L << vertex;
+    while (true) {
+      long old = active.get(word);
+      if ((old & mask) != 0)
+        return false;
+      if (active.compareAndSet(word, old, old | mask)) {
+        activeCount.incrementAndGet();
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Clears a vertex's bit in the active bitset
+   * @param vertex The index of the vertex
+   * @return True if the vertex was active before
+   */
+  private boolean deactivate(int vertex) {
+    int word = vertex >>> 6;
+    long mask = 1L << vertex;
+    while (true) {
+      long old = active.get(word);
+      if ((old & mask) == 0)
+        return false;
+      if (active.compareAndSet(word, old, old & ~mask)) {
+        activeCount.decrementAndGet();
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Finds the first vertex at or after the given one which is not active
+   * @param from The vertex to start from
+   * @return The index of the first unused vertex, or getNumVertices() if there is none
+   */
+  private int nextUnused(int from) {
+    int word = from >>> 6;
+    if (from >= numVertices)
+      return numVertices;
+    long unused = ~active.get(word) & (-1L << from);
+    while (unused == 0) {
+      if (++word == active.length())
+        return numVertices;
+      unused = ~active.get(word);
+    }
+    return Math.min(numVertices, (word << 6) + Long.numberOfTrailingZeros(unused));
+  }
+
+  /**
+   * Returns a copy of the neighbours of a vertex, taken under its stripe
+   * @param vertex The index of the vertex
+   * @return An array holding every neighbour of the vertex, in increasing order
+   */
+  private int[] adjacentArray(int vertex) {
+    ReentrantLock stripe = stripe(vertex);
+    stripe.lock();
+    try {
+      int[] adjacent = new int[storage.degree(vertex)];
+      storage.getAdjacent(vertex, adjacent);
+      return adjacent;
+    } finally {
+      stripe.unlock();
+    }
+  }
+}
@@ -0,0 +1,323 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ *
+ * Checks ConcurrentGraph with many writer threads at once, on every storage it accepts. Eight threads first add
+ *    overlapping slices of one list of random edges, after which the graph must hold exactly those edges. Then four
+ *    threads remove a set of vertices while four others keep adding edges, many of them to the neighbours of the vertices
+ *    being removed, and snapshots are taken throughout; every snapshot must be symmetric, and at the end the removed
+ *    vertices must be gone along with every edge that touched them, and every other edge must be there.
+ * Edges to a vertex outside the graph must be refused before anything is written, since a ConcurrentGraph cannot grow.
+ * BlockTrieStorage cannot be shared by writers, so ConcurrentGraph must refuse it, and a trie is instead built by copying
+ *    the storage of a graph that eight threads have written to.
+ * Prints one line per storage, and exits with status 1 at the first thing that is wrong.
+ *
+ * METHODS
+ * -------
+ * public static void main(String[] args)
+ *      Runs every check on every storage
+ *
+ * private static void check(String name, GraphStorage storage)
+ *      Runs the ingestion and removeVertex checks on one storage
+ *
+ * private static void checkOutOfRange(String name, GraphStorage storage)
+ *      Checks that edges to vertices outside the graph are refused, and leave the graph as it was
+ *
+ * private static void checkTrie()
+ *      Checks that a BlockTrieStorage is refused, and that one copied from a concurrently built graph has every edge
+ *
+ * private static void run(Thread[] threads)
+ *      Starts every thread and waits for them all to finish
+ *
+ * private static void checkSymmetric(Graph graph)
+ *      Checks that every edge of a graph is there in both directions, and that the degrees match the neighbours
+ *
+ * private static void checkEdges(ConcurrentGraph graph, List<BitSet> expected)
+ *      Checks that a graph holds exactly the expected edges
+ *
+ * private static void fail(String message)
+ *      Reports a failed check and exits
+ *
+ */
+
+public class ConcurrentGraphTest {
+  private static final int VERTICES = 2000;
+  private static final int THREADS = 8;
+  private static final int EDGES = 200000;
+
+  /**
+   * Runs every check on every storage ConcurrentGraph accepts which can be written to
+   * @param args Not used
+   */
+  public static void main(String[] args) throws InterruptedException {
+    // A storage which is corrupted by two writers at once tends to throw in one of the threads, rather than in main
+    Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+      public void uncaughtException(Thread thread, Throwable e) {
+        e.printStackTrace(System.out);
+        fail(thread.getName() + " threw " + e);
+      }
+    });
+    check("list", new AdjacencyListStorage(VERTICES));
+    check("matrix", new MatrixStorage(VERTICES));
+    check("bits", new BitMatrixStorage(VERTICES));
+    checkOutOfRange("list", new AdjacencyListStorage(10));
+    checkOutOfRange("bits", new BitMatrixStorage(10));
+    checkTrie();
+    System.out.println("ConcurrentGraphTest passed");
+  }
+
+  /**
+   * Runs the ingestion and removeVertex checks on one storage, with few stripes so that threads often share them
+   * @param name The name of the storage, for the report
+   * @param storage An empty storage with room for VERTICES vertices
+   */
+  private static void check(String name, GraphStorage storage) throws InterruptedException {
+    final ConcurrentGraph graph = new ConcurrentGraph(storage, 16);
+    final int[] sources = new int[EDGES];
+    final int[] destinations = new int[EDGES];
+    List<BitSet> expected = new ArrayList<BitSet>();
+    for (int vertex=0; vertex<VERTICES; vertex++)
+      expected.add(new BitSet(VERTICES));
+    Random random = new Random(42);
+    for (int i=0; i<EDGES; i++) {
+      sources[i] = random.nextInt(VERTICES);
+      destinations[i] = random.nextInt(VERTICES);
+      if (sources[i] != destinations[i]) {
+        expected.get(sources[i]).set(destinations[i]);
+        expected.get(destinations[i]).set(sources[i]);
+      }
+    }
+
+    // Each thread adds its own slice and half of the next one, so every edge after the first slice is added twice at once
+    Thread[] threads = new Thread[THREADS];
+    for (int t=0; t<THREADS; t++) {
+      final int from = t * (EDGES / THREADS);
+      final int to = Math.min(EDGES, from + EDGES / THREADS + EDGES / THREADS / 2);
+      threads[t] = new Thread() {
+        public void run() {
+          for (int i=from; i<to; i++)
+            graph.addEdge(sources[i], destinations[i]);
+        }
+      };
+    }
+    run(threads);
+    checkEdges(graph, expected);
+
+    // Every fourth vertex is removed while edges keep arriving between the others
+    final BitSet removed = new BitSet(VERTICES);
+    for (int vertex=0; vertex<VERTICES; vertex+=4)
+      removed.set(vertex);
+    final int[][] added = new int[THREADS / 2][];
+    for (int t=0; t<THREADS / 2; t++) {
+      final int writer = t;
+      threads[t] = new Thread() {
+        public void run() {
+          Random random = new Random(writer);
+          int[] pairs = new int[EDGES];
+          for (int i=0; i<pairs.length; i+=2) {
+            do {
+              pairs[i] = random.nextInt(VERTICES);
+              pairs[i + 1] = random.nextInt(VERTICES);
+            } while (removed.get(pairs[i]) || removed.get(pairs[i + 1]));
+            graph.addEdge(pairs[i], pairs[i + 1]);
+          }
+          added[writer] = pairs;
+        }
+      };
+      threads[THREADS / 2 + t] = new Thread() {
+        public void run() {
+          for (int vertex=4 * writer; vertex<VERTICES; vertex+=4 * (THREADS / 2))
+            graph.removeVertex(vertex);
+        }
+      };
+    }
+    final AtomicBoolean done = new AtomicBoolean();
+    final int[] snapshots = { 0 };
+    Thread checker = new Thread() {
+      public void run() {
+        while (!done.get()) {
+          checkSymmetric(graph.snapshot());
+          snapshots[0]++;
+        }
+      }
+    };
+    checker.start();
+    run(threads);
+    done.set(true);
+    checker.join();
+
+    for (int vertex=removed.nextSetBit(0); vertex>=0; vertex=removed.nextSetBit(vertex + 1)) {
+      for (int adjacent=expected.get(vertex).nextSetBit(0); adjacent>=0; adjacent=expected.get(vertex).nextSetBit(adjacent + 1))
+        expected.get(adjacent).clear(vertex);
+      expected.get(vertex).clear();
+    }
+    for (int[] pairs : added) {
+      for (int i=0; i<pairs.length; i+=2) {
+        if (pairs[i] != pairs[i + 1]) {
+          expected.get(pairs[i]).set(pairs[i + 1]);
+          expected.get(pairs[i + 1]).set(pairs[i]);
+        }
+      }
+    }
+    checkEdges(graph, expected);
+    for (int vertex=removed.nextSetBit(0); vertex>=0; vertex=removed.nextSetBit(vertex + 1)) {
+      if (graph.isInGraph(vertex))
+        fail(name + ": removed vertex " + vertex + " is still active");
+    }
+
+    System.out.println(String.format("%-8s %d threads, %d snapshots checked", name, THREADS, snapshots[0]));
+  }
+
+  /**
+   * Checks that isEdge, addEdge and removeEdge refuse a vertex past the end or below 0 with UnsupportedOperationException,
+   *    and that a refused addEdge leaves no half of the edge behind
+   * @param name The name of the storage, for the report
+   * @param storage An empty storage with room for 10 vertices
+   */
+  private static void checkOutOfRange(String name, GraphStorage storage) {
+    ConcurrentGraph graph = new ConcurrentGraph(storage, 4);
+    graph.addEdge(5, 6);
+    int[][] edges = { {5, 12}, {12, 5}, {5, 10}, {-1, 5} };
+    for (int[] edge : edges) {
+      try {
+        graph.addEdge(edge[0], edge[1]);
+        fail(name + ": addEdge(" + edge[0] + ", " + edge[1] + ") was accepted");
+      } catch (UnsupportedOperationException e) {
+        // Expected
+      }
+      try {
+        graph.removeEdge(edge[0], edge[1]);
+        fail(name + ": removeEdge(" + edge[0] + ", " + edge[1] + ") was accepted");
+      } catch (UnsupportedOperationException e) {
+        // Expected
+      }
+      try {
+        graph.isEdge(edge[0], edge[1]);
+        fail(name + ": isEdge(" + edge[0] + ", " + edge[1] + ") was accepted");
+      } catch (UnsupportedOperationException e) {
+        // Expected
+      }
+    }
+
+    if (!graph.getAdjacent(5).equals(Arrays.asList(6)) || graph.degree(5) != 1 || graph.getActiveVertexCount() != 2)
+      fail(name + ": a refused edge changed the graph, vertex 5 has neighbours " + graph.getAdjacent(5));
+    checkSymmetric(graph.snapshot());
+    if (graph.snapshot().countTriangles() != 0 || graph.getComponentCount() != 1)
+      fail(name + ": the graph cannot be queried after a refused edge");
+    System.out.println(String.format("%-8s out of range edges refused", name));
+  }
+
+  /**
+   * Checks that ConcurrentGraph refuses a BlockTrieStorage, whose shared blocks several writers would corrupt, and that the
+   *    way around it works: eight threads add edges over an AdjacencyListStorage, which is then copied into a trie
+   */
+  private static void checkTrie() throws InterruptedException {
+    try {
+      new ConcurrentGraph(new BlockTrieStorage(VERTICES), 64);
+      fail("trie: ConcurrentGraph accepted a BlockTrieStorage");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+
+    final AdjacencyListStorage list = new AdjacencyListStorage(VERTICES);
+    final ConcurrentGraph graph = new ConcurrentGraph(list, 16);
+    Thread[] threads = new Thread[THREADS];
+    for (int t=0; t<THREADS; t++) {
+      final int writer = t;
+      threads[t] = new Thread() {
+        public void run() {
+          // Clustered edges, so that the trie shares blocks: each vertex links to a few vertices just after it
+          for (int vertex=writer; vertex<VERTICES; vertex+=THREADS) {
+            for (int step=1; step<=4; step++)
+              graph.addEdge(vertex, (vertex + step) % VERTICES);
+          }
+        }
+      };
+    }
+    run(threads);
+
+    BlockTrieStorage trie = new BlockTrieStorage(list);
+    int[] expected = new int[VERTICES];
+    int[] actual = new int[VERTICES];
+    for (int vertex=0; vertex<VERTICES; vertex++) {
+      int count = list.getAdjacent(vertex, expected);
+      if (count != 8 || trie.degree(vertex) != count || trie.getAdjacent(vertex, actual) != count
+          || !Arrays.equals(Arrays.copyOf(expected, count), Arrays.copyOf(actual, count)))
+        fail("trie: vertex " + vertex + " does not have the 8 neighbours it was given");
+    }
+
+    System.out.println(String.format("%-8s refused, and copied after %d threads with %d nodes and %d leaves", "trie",
+        THREADS, trie.getNodeCount(), trie.getLeafCount()));
+  }
+
+  /**
+   * Starts every thread and waits for them all to finish
+   * @param threads The threads to run
+   */
+  private static void run(Thread[] threads) throws InterruptedException {
+    for (Thread thread : threads)
+      thread.start();
+    for (Thread thread : threads)
+      thread.join();
+  }
+
+  /**
+   * Checks that every edge of a graph is there in both directions, and that each vertex's degree is its number of neighbours
+   * @param graph The graph to be checked, which nothing else is changing
+   */
+  private static void checkSymmetric(Graph graph) {
+    for (int vertex=0; vertex<graph.getNumVertices(); vertex++) {
+      List<Integer> adjacent = graph.getAdjacent(vertex);
+      if (adjacent.size() != graph.degree(vertex))
+        fail("vertex " + vertex + " has degree " + graph.degree(vertex) + " but " + adjacent.size() + " neighbours");
+      for (int neighbour : adjacent) {
+        if (!graph.isEdge(neighbour, vertex))
+          fail("edge " + vertex + "-" + neighbour + " is only there in one direction");
+      }
+    }
+  }
+
+  /**
+   * Checks that a graph holds exactly the expected edges, that the vertices with edges are active, and that the active
+   *    count matches the active vertices
+   * @param graph The graph to be checked, which nothing else is changing
+   * @param expected The expected neighbours of each vertex
+   */
+  private static void checkEdges(ConcurrentGraph graph, List<BitSet> expected) {
+    int active = 0;
+    for (int vertex=0; vertex<VERTICES; vertex++) {
+      BitSet neighbours = expected.get(vertex);
+      int[] buffer = new int[VERTICES];
+      int count = graph.getAdjacent(vertex, buffer);
+      if (count != neighbours.cardinality() || graph.degree(vertex) != count)
+        fail("vertex " + vertex + " has " + count + " neighbours, expected " + neighbours.cardinality());
+      for (int i=0; i<count; i++) {
+        if (!neighbours.get(buffer[i]))
+          fail("unexpected edge " + vertex + "-" + buffer[i]);
+      }
+      if (count > 0 && !graph.isInGraph(vertex))
+        fail("vertex " + vertex + " has edges but is not active");
+      if (graph.isInGraph(vertex))
+        active++;
+    }
+    if (active != graph.getActiveVertexCount())
+      fail(active + " vertices are active, but the count is " + graph.getActiveVertexCount());
+    if (graph.getUnusedVertices().size() != VERTICES - active)
+      fail(graph.getUnusedVertices().size() + " vertices are unused, expected " + (VERTICES - active));
+    checkSymmetric(graph.snapshot());
+  }
+
+  /**
+   * Reports a failed check and exits with status 1
+   * @param message What went wrong
+   */
+  private static void fail(String message) {
+    System.out.println("FAILED: " + message);
+    System.exit(1);
+  }
+}
@@ -0,0 +1,224 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 
+ * The connected components of a graph at the time they were computed. Every active vertex is labelled with
+ *    the id of its component, from 0 to getComponentCount() - 1, numbered in order of each component's
+ *    smallest vertex. Two ways of computing them are offered:
+ *
+ *    breadthFirst        One breadth first search per component, O(V + E), using a visited bitset and an int queue
+ *    labelPropagation    Every vertex repeatedly takes the smallest label among itself and its neighbours, in
+ *                        parallel on a ForkJoinPool, until nothing changes. Takes O(diameter) rounds, but each
+ *                        round splits across all cores, so it wins on large graphs with a small diameter
+ * 
+ * VARIABLES
+ * ---------
+ * private int[] components;
+ *      The component id of each vertex, or -1 if the vertex is not in the graph
+ * 
+ * private int[] sizes;
+ *      The number of vertices in each component
+ * 
+ * METHODS
+ * -------
+ * public static ConnectedComponents breadthFirst(Graph graph)
+ *      Computes the components with one breadth first search per component
+ * 
+ * public static ConnectedComponents labelPropagation(Graph graph, ForkJoinPool pool)
+ *      Computes the components by parallel label propagation
+ * 
+ * private ConnectedComponents(int[] labels)
+ *      Constructor. Renumbers arbitrary component labels to 0, 1, 2, ...
+ * 
+ * public int getComponent(int vertex)
+ *      Returns the component id of a vertex
+ * 
+ * public int getComponentCount()
+ *      Returns the number of components
+ * 
+ * public int getComponentSize(int component)
+ *      Returns the number of vertices in a component
+ * 
+ * public boolean isConnected()
+ *      Returns true if there is at most one component
+ *
+ */
+
+public class ConnectedComponents {
+  private static final int THRESHOLD = 1024; // The fewest vertices worth handing to another thread
+
+  private int[] components;
+  private int[] sizes;
+
+  /**
+   * Computes the components with one breadth first search per component. Each vertex is visited once and each edge is
+   *    scanned twice, so this takes O(V + E) time
+   * @param graph The graph whose components are found
+   * @return The components of the graph
+   */
+  public static ConnectedComponents breadthFirst(Graph graph) {
+    int numVertices = graph.getNumVertices();
+    int[] labels = new int[numVertices];
+    long[] visited = new long[(numVertices + 63) >>> 6];
+    int[] queue = new int[numVertices];
+    int[] buffer = new int[16];
+
+    Arrays.fill(labels, -1);
+    for (int start=0; start<numVertices; start++) {
+      if (!graph.isInGraph(start) || (visited[start >>> 6] & (1L << start)) != 0)
+        continue;
+
+      // Visit everything reachable from start
+      int head = 0, tail = 0;
+      queue[tail++] = start;
+      visited[start >>> 6] |= 1L << start;
+      while (head < tail) {
+        int vertex = queue[head++];
+        labels[vertex] = start;
+        if (buffer.length < graph.degree(vertex))
+          buffer = new int[Math.max(graph.degree(vertex), buffer.length * 2)];
+        int count = graph.getAdjacent(vertex, buffer);
+        for (int i=0; i<count; i++) {
+          int adjacent = buffer[i];
+          if ((visited[adjacent >>> 6] & (1L << adjacent)) == 0) {
+            visited[adjacent >>> 6] |= 1L << adjacent;
+            queue[tail++] = adjacent;
+          }
+        }
+      }
+    }
+    return new ConnectedComponents(labels);
+  }
+
+  /**
+   * Computes the components by parallel label propagation. Every vertex starts labelled with its own index, and in each
+   *    round every vertex takes the smallest label among itself and its neighbours, until a round changes nothing.
+   *    Each vertex's label is only written by the thread that owns it, and labels only ever go down, so reading a
+   *    neighbour's label while it is being changed at worst costs an extra round
+   * @param graph The graph whose components are found
+   * @param pool The pool whose threads do the work
+   * @return The components of the graph
+   */
+  public static ConnectedComponents labelPropagation(final Graph graph, ForkJoinPool pool) {
+    final int numVertices = graph.getNumVertices();
+    final int[] labels = new int[numVertices];
+    for (int vertex=0; vertex<numVertices; vertex++)
+      labels[vertex] = graph.isInGraph(vertex) ? vertex : -1;
+
+    final AtomicBoolean changed = new AtomicBoolean(true);
+    while (changed.get()) {
+      changed.set(false);
+      pool.invoke(new Propagate(graph, labels, changed, 0, numVertices));
+    }
+    return new ConnectedComponents(labels);
+  }
+
+  /**
+   * Constructs the components from arbitrary labels, renumbering them 0, 1, 2, ... in order of each component's smallest vertex
+   * @param labels For each vertex, a label shared by every vertex of its component and no other, or -1 if the vertex is not in the graph
+   */
+  private ConnectedComponents(int[] labels) {
+    int[] ids = new int[labels.length];
+    int count = 0;
+    for (int vertex=0; vertex<labels.length; vertex++) {
+      // The first vertex seen with a label is the smallest vertex in its component, and the labels are all vertex indexes
+      if (labels[vertex] != -1 && ids[labels[vertex]] == 0)
+        ids[labels[vertex]] = ++count;
+    }
+
+    components = new int[labels.length];
+    sizes = new int[count];
+    for (int vertex=0; vertex<labels.length; vertex++) {
+      components[vertex] = labels[vertex] == -1 ? -1 : ids[labels[vertex]] - 1;
+      if (components[vertex] != -1)
+        sizes[components[vertex]]++;
+    }
+  }
+
+  /**
+   * Returns the component id of a vertex
+   * @param vertex The index of the vertex
+   * @return The id of the vertex's component, or -1 if the vertex is not in the graph
+   */
+  public int getComponent(int vertex) {
+    return components[vertex];
+  }
+
+  /**
+   * Returns the number of components
+   * @return The number of components
+   */
+  public int getComponentCount() {
+    return sizes.length;
+  }
+
+  /**
+   * Returns the number of vertices in a component
+   * @param component The id of the component
+   * @return The number of vertices in the component
+   */
+  public int getComponentSize(int component) {
+    return sizes[component];
+  }
+
+  /**
+   * Returns true if there is at most one component
+   * @return True if every vertex in the graph can reach every other vertex
+   */
+  public boolean isConnected() {
+    return sizes.length <= 1;
+  }
+
+  /**
+   * 
+   * One round of label propagation over a range of vertices, split in half until the ranges are small
+   * 
+   */
+  private static class Propagate extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private Graph graph;
+    private int[] labels;
+    private AtomicBoolean changed;
+    private int from, to;
+
+    private Propagate(Graph graph, int[] labels, AtomicBoolean changed, int from, int to) {
+      this.graph = graph;
+      this.labels = labels;
+      this.changed = changed;
+      this.from = from;
+      this.to = to;
+    }
+
+    protected void compute() {
+      if (to - from > THRESHOLD) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new Propagate(graph, labels, changed, from, middle),
+            new Propagate(graph, labels, changed, middle, to));
+        return;
+      }
+
+      int[] buffer = new int[16];
+      boolean changedHere = false;
+      for (int vertex=from; vertex<to; vertex++) {
+        if (labels[vertex] == -1)
+          continue;
+        if (buffer.length < graph.degree(vertex))
+          buffer = new int[Math.max(graph.degree(vertex), buffer.length * 2)];
+        int count = graph.getAdjacent(vertex, buffer);
+        int smallest = labels[vertex];
+        for (int i=0; i<count; i++)
+          smallest = Math.min(smallest, labels[buffer[i]]);
+        if (smallest < labels[vertex]) {
+          labels[vertex] = smallest;
+          changedHere = true;
+        }
+      }
+      if (changedHere)
+        changed.set(true);
+    }
+  }
+}
@@ -0,0 +1,200 @@
+import java.util.Arrays;
+
+/**
+ * 
+ * Read only graph storage in compressed sparse row (CSR) form. The neighbours of every vertex are packed
+ *    one after another into a single array, and a second array records where each vertex's neighbours
+ *    start. This is the most compact layout and the fastest to scan, but edges cannot be added or
+ *    removed. Build it from a mutable storage with Graph.freeze() once a graph stops changing.
+ *    If the source storage has edge weights, they are packed into an array parallel to the neighbours.
+ * 
+ * VARIABLES
+ * ---------
+ * private int[] offsets;
+ *      The neighbours of vertex v are neighbours[offsets[v]] to neighbours[offsets[v + 1] - 1]
+ * 
+ * private int[] neighbours;
+ *      Every vertex's neighbours, in increasing order within each vertex
+ * 
+ * private double[] weights;
+ *      The weight of the edge to each element of neighbours, or null if every edge has weight 1
+ * 
+ * METHODS
+ * -------
+ * public CsrStorage(GraphStorage source)
+ *      Constructor. Copies every edge of another storage
+ * 
+ * public CsrStorage(int[] offsets, int[] neighbours)
+ *      Constructor. Uses arrays that are already in CSR form
+ * 
+ * static CsrStorage compact(GraphStorage source, int[] mapping, int numVertices)
+ *      Builds a CsrStorage holding the edges of any storage, renumbered
+ * 
+ * The rest are described in GraphStorage and WeightedStorage. addEdge, removeEdge, removeEdges, grow and
+ *      setWeight throw UnsupportedOperationException
+ *
+ */
+
+public class CsrStorage implements WeightedStorage {
+  private int[] offsets;
+  private int[] neighbours;
+  private double[] weights;
+
+  /**
+   * Constructs a CSR copy of another storage
+   * Postconditions: This storage has exactly the same edges as the source
+   * @param source The storage to be copied
+   */
+  public CsrStorage(GraphStorage source) {
+    int numVertices = source.size();
+    offsets = new int[numVertices + 1];
+    for (int vertex=0; vertex<numVertices; vertex++)
+      offsets[vertex + 1] = offsets[vertex] + source.degree(vertex);
+
+    neighbours = new int[offsets[numVertices]];
+    int[] buffer = new int[16];
+    for (int vertex=0; vertex<numVertices; vertex++) {
+      int degree = source.degree(vertex);
+      if (buffer.length < degree)
+        buffer = new int[Math.max(degree, buffer.length * 2)];
+      source.getAdjacent(vertex, buffer);
+      System.arraycopy(buffer, 0, neighbours, offsets[vertex], degree);
+    }
+
+    if (source instanceof WeightedStorage && ((WeightedStorage) source).hasWeights()) {
+      weights = new double[neighbours.length];
+      double[] weightBuffer = new double[16];
+      for (int vertex=0; vertex<numVertices; vertex++) {
+        int degree = source.degree(vertex);
+        if (weightBuffer.length < degree)
+          weightBuffer = new double[Math.max(degree, weightBuffer.length * 2)];
+        ((WeightedStorage) source).getAdjacentWeights(vertex, weightBuffer);
+        System.arraycopy(weightBuffer, 0, weights, offsets[vertex], degree);
+      }
+    }
+  }
+
+  /**
+   * Constructs a storage from arrays that are already in CSR form
+   * Preconditions: offsets is non decreasing, offsets[0] == 0, offsets[offsets.length - 1] == neighbours.length,
+   *      each vertex's neighbours are sorted, and every edge appears in both directions
+   * @param offsets Where each vertex's neighbours start, plus one final element marking the end
+   * @param neighbours Every vertex's neighbours
+   */
+  public CsrStorage(int[] offsets, int[] neighbours) {
+    this.offsets = offsets;
+    this.neighbours = neighbours;
+  }
+
+  public int size() {
+    return offsets.length - 1;
+  }
+
+  public boolean isRowLocal() {
+    // Nothing ever changes
+    return true;
+  }
+
+  public boolean isEdge(int source, int destination) {
+    return Arrays.binarySearch(neighbours, offsets[source], offsets[source + 1], destination) >= 0;
+  }
+
+  public boolean addEdge(int source, int destination) {
+    throw new UnsupportedOperationException("CSR storage is read only");
+  }
+
+  public boolean removeEdge(int source, int destination) {
+    throw new UnsupportedOperationException("CSR storage is read only");
+  }
+
+  public void removeEdges(int vertex) {
+    throw new UnsupportedOperationException("CSR storage is read only");
+  }
+
+  public int degree(int vertex) {
+    return offsets[vertex + 1] - offsets[vertex];
+  }
+
+  public int getAdjacent(int vertex, int[] buffer) {
+    int degree = degree(vertex);
+    System.arraycopy(neighbours, offsets[vertex], buffer, 0, degree);
+    return degree;
+  }
+
+  public void grow(int numVertices) {
+    throw new UnsupportedOperationException("CSR storage is read only");
+  }
+
+  public GraphStorage compact(int[] mapping, int numVertices) {
+    return compact(this, mapping, numVertices);
+  }
+
+  /**
+   * Builds a CsrStorage holding the edges of any storage, renumbered. Used by the read only storages, which cannot
+   *    be changed in place
+   * Preconditions: The same as for GraphStorage.compact
+   * @param source The storage to be copied
+   * @param mapping The new index of each vertex of the source, or -1 for vertices which are left out
+   * @param numVertices The number of vertices of the copy
+   * @return A CSR copy of the source with its vertices renumbered
+   */
+  static CsrStorage compact(GraphStorage source, int[] mapping, int numVertices) {
+    int[] offsets = new int[numVertices + 1];
+    for (int vertex=0; vertex<source.size(); vertex++) {
+      if (mapping[vertex] != -1)
+        offsets[mapping[vertex] + 1] = source.degree(vertex);
+    }
+    for (int vertex=0; vertex<numVertices; vertex++)
+      offsets[vertex + 1] += offsets[vertex];
+
+    int[] neighbours = new int[offsets[numVertices]];
+    boolean weighted = source instanceof WeightedStorage && ((WeightedStorage) source).hasWeights();
+    double[] weights = weighted ? new double[neighbours.length] : null;
+    int[] buffer = new int[16];
+    double[] weightBuffer = new double[16];
+    for (int vertex=0; vertex<source.size(); vertex++) {
+      int degree = source.degree(vertex);
+      if (mapping[vertex] == -1 || degree == 0)
+        continue;
+      if (buffer.length < degree) {
+        buffer = new int[Math.max(degree, buffer.length * 2)];
+        weightBuffer = new double[buffer.length];
+      }
+      source.getAdjacent(vertex, buffer);
+      int start = offsets[mapping[vertex]];
+      for (int i=0; i<degree; i++)
+        neighbours[start + i] = mapping[buffer[i]];
+      if (weighted) {
+        ((WeightedStorage) source).getAdjacentWeights(vertex, weightBuffer);
+        System.arraycopy(weightBuffer, 0, weights, start, degree);
+      }
+    }
+
+    CsrStorage compacted = new CsrStorage(offsets, neighbours);
+    compacted.weights = weights;
+    return compacted;
+  }
+
+  public boolean hasWeights() {
+    return weights != null;
+  }
+
+  public double getWeight(int source, int destination) {
+    if (weights == null)
+      return 1;
+    return weights[Arrays.binarySearch(neighbours, offsets[source], offsets[source + 1], destination)];
+  }
+
+  public void setWeight(int source, int destination, double weight) {
+    throw new UnsupportedOperationException("CSR storage is read only");
+  }
+
+  public int getAdjacentWeights(int vertex, double[] buffer) {
+    int degree = degree(vertex);
+    if (weights == null)
+      Arrays.fill(buffer, 0, degree, 1);
+    else
+      System.arraycopy(weights, offsets[vertex], buffer, 0, degree);
+    return degree;
+  }
+}
@@ -0,0 +1,333 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ *
+ * Builds a graph from a file listing its edges, much faster than calling addEdge once per edge. The file is memory
+ *    mapped with a MappedFile and split into chunks which are parsed in parallel. Every edge is packed into a long with its smaller vertex in
+ *    the high half, so sorting the longs (in parallel) groups each vertex's edges together in order and puts duplicates
+ *    next to each other. One pass over the sorted edges then skips the duplicates and fills in a CsrStorage directly,
+ *    with every row already sorted. The usual rules hold: an edge listed more than once, in either direction, is only
+ *    added once, and a self loop only activates its vertex.
+ * The graph is frozen (backed by a CsrStorage), like Graph.freeze() leaves it.
+ * The time spent parsing, sorting and building is recorded in the Metrics timers EdgeListImport.parse, .sort and .build,
+ *    and the number of edges read in the counter EdgeListImport.edges.
+ * This is a class who's methods are all static and has no class variables
+ *
+ * FILE FORMATS
+ * ------------
+ *    text      One edge per line, as two vertex indexes separated by spaces or tabs. Anything after the second index is
+ *              ignored, as are blank lines and lines starting with # or %
+ *    binary    Pairs of big endian ints, with no header
+ *
+ * METHODS
+ * -------
+ * public static Graph read(File file, boolean binary)
+ *      Builds a graph from an edge list, with room for the largest vertex index in it
+ *
+ * public static Graph read(File file, boolean binary, int numVertices)
+ *      Builds a graph with the given number of vertices from an edge list
+ *
+ * private static long[] parse(MappedFile file, boolean binary)
+ *      Parses every edge of a file, in parallel
+ *
+ * private static long[] chunks(MappedFile file, boolean binary)
+ *      Splits a file into chunks which can be parsed independently
+ *
+ * private static Graph build(long[] edges, int numVertices)
+ *      Builds a graph from sorted, packed edges
+ *
+ */
+
+public class EdgeListImport {
+  private static final long CHUNK_SIZE = 1L << 25; // The number of bytes parsed by one task
+
+  /**
+   * Builds a graph from an edge list, with room for the largest vertex index in it
+   * @param file The edge list
+   * @param binary True if the file holds pairs of binary ints, false if it is text
+   * @return A frozen graph with every edge in the file
+   * @throws IOException If the file cannot be read or is malformed
+   */
+  public static Graph read(File file, boolean binary) throws IOException {
+    return read(file, binary, -1);
+  }
+
+  /**
+   * Builds a graph with the given number of vertices from an edge list
+   * @param file The edge list
+   * @param binary True if the file holds pairs of binary ints, false if it is text
+   * @param numVertices The number of vertices the graph has room for, or -1 for one more than the largest index in the file
+   * @return A frozen graph with every edge in the file
+   * @throws IOException If the file cannot be read, is malformed, or has a vertex index of numVertices or more
+   */
+  public static Graph read(File file, boolean binary, int numVertices) throws IOException {
+    long[] edges;
+    Metrics.Timer parseTimer = Metrics.timer("EdgeListImport.parse");
+    long start = parseTimer.start();
+    MappedFile in = new MappedFile(file);
+    try {
+      edges = parse(in, binary);
+    } finally {
+      in.close();
+    }
+    parseTimer.stop(start);
+    Metrics.counter("EdgeListImport.edges").add(edges.length);
+
+    Metrics.Timer sortTimer = Metrics.timer("EdgeListImport.sort");
+    start = sortTimer.start();
+    Arrays.parallelSort(edges);
+    sortTimer.stop(start);
+    // The larger vertex of each edge is in the low half
+    int largest = -1;
+    for (long edge : edges)
+      largest = Math.max(largest, (int) edge);
+    if (numVertices < 0)
+      numVertices = largest + 1;
+    else if (largest >= numVertices)
+      throw new IOException(file + " has vertex " + largest + ", but the graph only has room for " + numVertices);
+
+    Metrics.Timer buildTimer = Metrics.timer("EdgeListImport.build");
+    start = buildTimer.start();
+    Graph graph = build(edges, numVertices);
+    buildTimer.stop(start);
+    return graph;
+  }
+
+  /**
+   * Parses every edge of a file, one task per chunk, and packs each one into a long as (smaller << 32) | larger
+   * @param file The mapped file
+   * @param binary True if the file holds pairs of binary ints, false if it is text
+   * @return The packed edges, in no particular order
+   * @throws IOException If the file is malformed
+   */
+  private static long[] parse(MappedFile file, boolean binary) throws IOException {
+    long[] bounds = chunks(file, binary);
+    long[][] results = new long[bounds.length - 1][];
+    int[] counts = new int[bounds.length - 1];
+    try {
+      ForkJoinPool.commonPool().invoke(new Parse(file, binary, bounds, results, counts, 0, results.length));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    long total = 0;
+    for (int count : counts)
+      total += count;
+    if (total > Integer.MAX_VALUE - 8)
+      throw new IOException("Too many edges to import: " + total);
+    long[] edges = new long[(int) total];
+    int position = 0;
+    for (int i=0; i<results.length; i++) {
+      System.arraycopy(results[i], 0, edges, position, counts[i]);
+      position += counts[i];
+      results[i] = null;
+    }
+    return edges;
+  }
+
+  /**
+   * Splits a file into chunks of about CHUNK_SIZE bytes. Binary chunks are a multiple of 8 bytes, and text chunks end just
+   *    after a newline, so no edge is split between two chunks
+   * @param file The mapped file
+   * @param binary True if the file holds pairs of binary ints, false if it is text
+   * @return The byte offset where each chunk starts, followed by the size of the file
+   * @throws IOException If a binary file is not a whole number of pairs
+   */
+  private static long[] chunks(MappedFile file, boolean binary) throws IOException {
+    long size = file.size();
+    if (binary && size % 8 != 0)
+      throw new IOException("A binary edge list must be a whole number of int pairs, but it has " + size + " bytes");
+
+    long[] bounds = new long[(int) (size / CHUNK_SIZE) + 2];
+    int count = 0;
+    bounds[count++] = 0;
+    long start = 0;
+    while (size - start > CHUNK_SIZE) {
+      long end = start + CHUNK_SIZE;
+      if (!binary) {
+        // Move the end forward to just after the next newline
+        while (end < size && file.get(end++) != '\n')
+          ;
+      }
+      if (end >= size)
+        break;
+      bounds[count++] = end;
+      start = end;
+    }
+    bounds[count++] = size;
+    return Arrays.copyOf(bounds, count);
+  }
+
+  /**
+   * Builds a graph from sorted, packed edges. Because the edges are sorted by their smaller vertex and then their larger one,
+   *    every vertex first receives its smaller neighbours in increasing order, then its larger ones in increasing order, so
+   *    each row comes out sorted without being sorted again
+   * @param edges The packed edges, sorted, possibly with duplicates and self loops
+   * @param numVertices The number of vertices
+   * @return A frozen graph with every edge
+   */
+  private static Graph build(long[] edges, int numVertices) {
+    int[] offsets = new int[numVertices + 1];
+    for (int i=0; i<edges.length; i++) {
+      int smaller = (int) (edges[i] >>> 32);
+      int larger = (int) edges[i];
+      if (smaller != larger && (i == 0 || edges[i] != edges[i - 1])) {
+        offsets[smaller + 1]++;
+        offsets[larger + 1]++;
+      }
+    }
+    for (int vertex=0; vertex<numVertices; vertex++)
+      offsets[vertex + 1] += offsets[vertex];
+
+    int[] neighbours = new int[offsets[numVertices]];
+    int[] next = Arrays.copyOf(offsets, numVertices);
+    for (int i=0; i<edges.length; i++) {
+      int smaller = (int) (edges[i] >>> 32);
+      int larger = (int) edges[i];
+      if (smaller != larger && (i == 0 || edges[i] != edges[i - 1])) {
+        neighbours[next[smaller]++] = larger;
+        neighbours[next[larger]++] = smaller;
+      }
+    }
+
+    Graph graph = new Graph(new CsrStorage(offsets, neighbours));
+    for (long edge : edges) {
+      int vertex = (int) edge;
+      if (vertex == (int) (edge >>> 32) && !graph.isInGraph(vertex))
+        graph.addEdge(vertex, vertex);
+    }
+    return graph;
+  }
+
+  /**
+   *
+   * Parses a range of chunks, split in half until each task has one chunk. Each chunk's edges go into its own array
+   *
+   */
+  private static class Parse extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private MappedFile file;
+    private boolean binary;
+    private long[] bounds;
+    private long[][] results;
+    private int[] counts;
+    private int from, to;
+    private long cursor; // Where readNumber reads from
+
+    private Parse(MappedFile file, boolean binary, long[] bounds, long[][] results, int[] counts, int from, int to) {
+      this.file = file;
+      this.binary = binary;
+      this.bounds = bounds;
+      this.results = results;
+      this.counts = counts;
+      this.from = from;
+      this.to = to;
+    }
+
+    protected void compute() {
+      if (to - from > 1) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new Parse(file, binary, bounds, results, counts, from, middle),
+            new Parse(file, binary, bounds, results, counts, middle, to));
+        return;
+      }
+      if (from == to)
+        return;
+
+      try {
+        if (binary)
+          parseBinary();
+        else
+          parseText();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    /**
+     * Parses this task's chunk of binary int pairs
+     * @throws IOException If a vertex index is negative
+     */
+    private void parseBinary() throws IOException {
+      long[] edges = new long[(int) ((bounds[from + 1] - bounds[from]) / 8)];
+      for (int i=0; i<edges.length; i++) {
+        long position = bounds[from] + i * 8L;
+        edges[i] = pack(file.getInt(position), file.getInt(position + 4), position);
+      }
+      results[from] = edges;
+      counts[from] = edges.length;
+    }
+
+    /**
+     * Parses this task's chunk of text, one edge per line
+     * @throws IOException If a line does not start with two vertex indexes
+     */
+    private void parseText() throws IOException {
+      long limit = bounds[from + 1];
+      LongArray edges = new LongArray((int) Math.max(16, (limit - bounds[from]) / 16));
+      long i = bounds[from];
+      while (i < limit) {
+        long lineStart = i;
+        while (i < limit && (file.get(i) == ' ' || file.get(i) == '\t'))
+          i++;
+        byte first = i < limit ? file.get(i) : (byte) '\n';
+        if (first == '#' || first == '%' || first == '\n' || first == '\r') {
+          while (i < limit && file.get(i) != '\n')
+            i++;
+          i++;
+          continue;
+        }
+
+        // Read two numbers, then skip the rest of the line
+        cursor = i;
+        int source = readNumber(limit);
+        int destination = source < 0 ? -1 : readNumber(limit);
+        if (destination < 0)
+          throw new IOException("Malformed edge on the line starting at byte " + lineStart);
+        i = cursor;
+        while (i < limit && file.get(i) != '\n')
+          i++;
+        i++;
+
+        edges.add(pack(source, destination, lineStart));
+      }
+      results[from] = edges.elements();
+      counts[from] = edges.size();
+    }
+
+    /**
+     * Reads a vertex index starting at the cursor, after any spaces or tabs, and moves the cursor past it
+     * @param limit The end of the chunk
+     * @return The vertex index, or -1 if there is no number at the cursor or it is too large for an int
+     */
+    private int readNumber(long limit) {
+      while (cursor < limit && (file.get(cursor) == ' ' || file.get(cursor) == '\t'))
+        cursor++;
+      long start = cursor;
+      long value = 0;
+      while (cursor < limit && file.get(cursor) >= '0' && file.get(cursor) <= '9' && value <= Integer.MAX_VALUE)
+        value = value * 10 + (file.get(cursor++) - '0');
+      return cursor == start || value > Integer.MAX_VALUE ? -1 : (int) value;
+    }
+
+    /**
+     * Packs an edge into a long, with the smaller vertex in the high half
+     * @param source One end of the edge
+     * @param destination The other end of the edge
+     * @param position Where the edge is in the file, for the error message
+     * @return The packed edge
+     * @throws IOException If a vertex index is negative
+     */
+    private static long pack(int source, int destination, long position) throws IOException {
+      if (source < 0 || destination < 0)
+        throw new IOException("Negative vertex index in the edge at byte " + position);
+      return ((long) Math.min(source, destination) << 32) | Math.max(source, destination);
+    }
+  }
+}
@@ -6,13 +6,31 @@
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.HashSet;
+import java.util.PrimitiveIterator;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 /**
  * 
  * An undirected graph data structure, that does not allow multiple edges.
+ * The edges are kept in a GraphStorage. By default this is a MatrixStorage, and the note below applies;
+ *    large sparse graphs should be constructed with an AdjacencyListStorage instead, dense ones with a
+ *    BitMatrixStorage, large clustered ones with a BlockTrieStorage, and graphs that have stopped changing
+ *    can be frozen into a CsrStorage.
+ * Traversals and shortest paths are done by a GraphTraversal, which reuses its buffers between queries, and
+ *    parallel breadth first search, PageRank and triangle counts by ParallelAnalytics. For several writer threads, use a
+ *    ConcurrentGraph. Once triangles or clustering coefficients have been asked for, the graph keeps the triangle
+ *    counts up to date as edges change, so reading them again takes constant time.
+ * GraphSnapshot saves a graph to a file and loads it back, memory mapped, as a read only graph, and
+ *    EdgeListImport builds a frozen graph from a large edge list far faster than calling addEdge per edge.
  * Note: This is highly inefficient for large graphs with few edges,
  *    because they result in a sparse 2D array whose size grows exponentially with
  *    the number of edges. This was just a homework assignment, and should not be
@@ -24,17 +42,41 @@ import java.util.Set;
  *        size is (4 x 4) elements, then the original 2D matrix can be compressed into a 
  *        2D array of size (5 x 5) elements, where each element is a reference to a trie node.
  *        Additionally, you would need to store an index of all of the different unique trie nodes.
+ *
+ *    BlockTrieStorage is this trie, with 4 x 4 nodes over 8 x 8 leaves and the index of unique nodes.
  * 
  * VARIABLES
  * ---------
- * private boolean[] vertices;
- *      A 1d array of booleans, where each index corresponds to that elements id (as given by getTerritoryId for example)
- *      If an element is true, that vertice is active, if it is false, it is inactive.
+ * private BitSet vertices;
+ *      A bitset, where each index corresponds to that elements id (as given by getTerritoryId for example)
+ *      If a bit is set, that vertice is active, if it is clear, it is inactive.
+ * 
+ * private int numVertices;
+ *      The number of vertices this graph has room for. It grows, by at least half each time, when an edge is added to a vertex
+ *      past the end, and shrinks when the graph is compacted
+ * 
+ * private int activeCount;
+ *      The number of active vertices, which is the number of set bits in vertices
+ * 
+ * private int[] degrees;
+ *      The number of neighbours of each vertex, kept up to date by addEdge, removeEdge and removeVertex so that
+ *      degree never has to ask the storage (which has to scan a whole row for the matrix storages)
  *      
- * private boolean[][] edges;
- *      A 2d array of booleans. The 1st column and the 1st row both correspond to element id 1, etc.
- *      So if I add an edge from id 4 to id 6, then boolean[4][6] == boolean[6][4] == true
- *      Note, this is not a diagonal matrix
+ * private GraphStorage edges;
+ *      The edges of the graph. If I add an edge from id 4 to id 6, then
+ *      edges.isEdge(4, 6) == edges.isEdge(6, 4) == true
+ * 
+ * private UnionFind components;
+ *      The connected components, kept up to date as edges are added. Removing an edge or a vertex can split a
+ *      component, which a union-find cannot undo, so it is set to null and rebuilt the next time it is needed
+ * 
+ * private long[] triangles;
+ *      The number of triangles through each vertex, or null until a triangle count or clustering coefficient is first
+ *      asked for. From then on addEdge, removeEdge and removeVertex keep it up to date by intersecting the sorted
+ *      neighbours of the ends of the edge, so the counts never have to be rebuilt
+ * 
+ * private long triangleCount, wedgeCount;
+ *      The number of triangles, and of paths of two edges (the sum of degree * (degree - 1) / 2), kept along with triangles
  * 
  * 
  * METHODS
@@ -42,8 +84,35 @@ import java.util.Set;
  * public Graph(int numVertices)
  *      Constructor. Takes in an integer, and makes vertices have size 'numVertices', and edges has 'numVertices' number of rows and columns
  * 
+ * public Graph(GraphStorage storage)
+ *      Constructor. Uses the given storage for the edges, and activates every vertex that already has an edge
+ * 
+ * public void freeze()
+ *      Converts the edges into a read only CsrStorage
+ * 
+ * public void ensureCapacity(int numVertices)
+ *      Makes room for at least the given number of vertices
+ * 
+ * public int addVertex()
+ *      Activates an unused vertex, reusing the lowest free id, and returns it
+ * 
+ * public int[] compact()
+ *      Renumbers the active vertices 0, 1, 2, ... and drops every unused vertex
+ * 
+ * public int getNumVertices()
+ *      Returns the number of vertices this graph has room for
+ * 
  * public List<Integer> getUnusedVertices()
  *      Loops through all of the vertices and returns a list of vertices that are active
+ * 
+ * public PrimitiveIterator.OfInt getUnusedVertexIterator()
+ *      Iterates over the vertices that are not active, without boxing
+ * 
+ * public IntStream getUnusedVertexStream()
+ *      Streams the vertices that are not active, without boxing
+ * 
+ * public int getActiveVertexCount()
+ *      Returns the number of vertices that are active
  *      
  * public boolean isEdge(int source, int destination)
  *      Returns whether or not a given edge exists.
@@ -51,29 +120,98 @@ import java.util.Set;
  * public void addEdge(int source, int destination)
  *      Adds an edge given a source and destination.
  *      
+ * public void addEdge(int source, int destination, double weight)
+ *      Adds an edge with a weight, given a source and destination.
+ * 
+ * public boolean isWeighted()
+ *      Returns whether the edges of this graph have weights
+ * 
+ * public double getWeight(int source, int destination)
+ *      Returns the weight of an edge
+ * 
+ * public int getAdjacentWeights(int vertex, double[] buffer)
+ *      Copies the weights of the edges of the given vertex into a buffer, in the same order as getAdjacent
+ * 
  * public void removeEdge(int source, int destination)
  *      Removes a given edge
  * 
  * public boolean isInGraph(int vertex)
  *      Returns a boolean determining whether or not a vertex is in the graph
  *      
+ * private void activate(int vertex)
+ *      Makes a vertex active, if it is not already
+ * 
  * public void removeVertex(int vertex)
  *      Removes a given vertex from the graph
  * 
  * public List<Integer> getAdjacent(int vertex)
  *      Returns a list of all of the vertices that are connected to the given vertex through an edge
  *      
+ * public int getAdjacent(int vertex, int[] buffer)
+ *      Copies the vertices that are connected to the given vertex into a buffer, without allocating anything
+ * 
+ * public PrimitiveIterator.OfInt getAdjacentIterator(int vertex)
+ *      Iterates over the vertices that are connected to the given vertex, without boxing
+ * 
+ * public IntStream getAdjacentStream(int vertex)
+ *      Streams the vertices that are connected to the given vertex, without boxing
+ * 
  * public int degree(int vertex)
  *      Returns the number of vertices that are directly connected to the given vertex
  * 
+ * public int countCommonNeighbours(int first, int second)
+ *      Returns the number of vertices that are directly connected to both of the given vertices
+ * 
+ * public long countTriangles()
+ *      Returns the number of triangles in the graph
+ * 
+ * public long countTriangles(int vertex)
+ *      Returns the number of triangles the given vertex is a corner of
+ * 
+ * public double getClusteringCoefficient(int vertex)
+ *      Returns the fraction of pairs of the given vertex's neighbours which are connected to each other
+ * 
+ * public double getAverageClusteringCoefficient()
+ *      Returns the average of the clustering coefficients of the active vertices
+ * 
+ * public double getGlobalClusteringCoefficient()
+ *      Returns the fraction of paths of two edges which are closed into a triangle
+ * 
+ * private long[] getTriangles()
+ *      Returns the number of triangles through each vertex, counting them if they are not being kept up to date
+ * 
+ * private void updateTriangles(int source, int destination, int sign)
+ *      Adds or takes away the triangles closed by an edge
+ * 
+ * private int[] adjacentArray(int vertex)
+ *      Returns the neighbours of a vertex in increasing order, as an array
+ * 
  * public boolean isConnected()
  *      Returns true if it is possible to get from any vertex to any other vertex through a finite number of edges. False otherwise
+ * 
+ * public int getComponentCount()
+ *      Returns the number of connected components
+ * 
+ * public int getComponent(int vertex)
+ *      Returns an id which is the same for every vertex in the given vertex's connected component
+ * 
+ * public ConnectedComponents getConnectedComponents()
+ *      Labels every vertex with the id of its connected component
+ * 
+ * private UnionFind getUnionFind()
+ *      Returns the union-find of the connected components, rebuilding it if it is out of date
  *
  */
 
 public class Graph {
-  private boolean[] vertices;
-  private boolean[][] edges;
+  private BitSet vertices;
+  private int numVertices;
+  private int activeCount;
+  private int[] degrees;
+  private GraphStorage edges;
+  private UnionFind components;
+  private long[] triangles;
+  private long triangleCount, wedgeCount;
   
   /**
    * Constructs a graph object.
@@ -82,8 +220,112 @@ public class Graph {
    * @return Initialized Graph object
    */
   public Graph(int numVertices) {
-    vertices = new boolean[numVertices];
-    edges = new boolean[numVertices][numVertices];
+    this(new MatrixStorage(numVertices));
+  }
+  
+  /**
+   * Constructs a graph object on top of the given storage.
+   * Postconditions: A graph is created with one vertex per vertex of the storage. Vertices which already have edges are active
+   * @param storage Where the edges of this graph are kept
+   * @return Initialized Graph object
+   */
+  public Graph(GraphStorage storage) {
+    edges = storage;
+    numVertices = storage.size();
+    vertices = new BitSet(numVertices);
+    degrees = new int[numVertices];
+    for (int vertex=0; vertex<numVertices; vertex++) {
+      degrees[vertex] = storage.degree(vertex);
+      if (degrees[vertex] > 0)
+        activate(vertex);
+    }
+  }
+  
+  /**
+   * Converts the edges into a read only CsrStorage, which is the most compact and fastest to read.
+   * Postconditions: The graph has the same vertices and edges, but addEdge, removeEdge and removeVertex throw UnsupportedOperationException
+   */
+  public void freeze() {
+    if (!(edges instanceof CsrStorage))
+      edges = new CsrStorage(edges);
+  }
+  
+  /**
+   * Makes room for at least the given number of vertices. The room grows by at least half at a time, so adding vertices
+   *    one after another only copies the edges a logarithmic number of times
+   * Postconditions: getNumVertices() >= numVertices, and the new vertices are unused
+   * @param numVertices The number of vertices to make room for
+   * @throws UnsupportedOperationException If the graph is frozen
+   */
+  public void ensureCapacity(int numVertices) {
+    if (numVertices <= this.numVertices)
+      return;
+    int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(numVertices, this.numVertices + (this.numVertices >> 1) + 1L));
+    edges.grow(capacity);
+    degrees = Arrays.copyOf(degrees, capacity);
+    if (components != null)
+      components.grow(capacity);
+    if (triangles != null)
+      triangles = Arrays.copyOf(triangles, capacity);
+    this.numVertices = capacity;
+  }
+
+  /**
+   * Activates an unused vertex and returns it. Ids freed by removeVertex are reused, lowest first, and the graph only grows
+   *    when every vertex is in use
+   * Postconditions: The returned vertex is active and has no edges
+   * @return The index of the new vertex
+   */
+  public int addVertex() {
+    int vertex = vertices.nextClearBit(0);
+    ensureCapacity(vertex + 1);
+    activate(vertex);
+    if (components != null)
+      components.add(vertex);
+    return vertex;
+  }
+
+  /**
+   * Renumbers the active vertices 0, 1, 2, ... in their current order and drops every unused vertex, so that the edges of
+   *    a graph which has had many vertices removed are packed together again. Any index held outside the graph must be
+   *    translated with the returned mapping
+   * Postconditions: getNumVertices() == getActiveVertexCount(), every vertex is active, and the edges are renumbered
+   * @return The new index of each old vertex, or -1 for the vertices which were dropped
+   */
+  public int[] compact() {
+    int[] mapping = new int[numVertices];
+    int count = 0;
+    for (int vertex=0; vertex<numVertices; vertex++)
+      mapping[vertex] = vertices.get(vertex) ? count++ : -1;
+
+    edges = edges.compact(mapping, count);
+    int[] compactedDegrees = new int[count];
+    for (int vertex=0; vertex<numVertices; vertex++) {
+      if (mapping[vertex] != -1)
+        compactedDegrees[mapping[vertex]] = degrees[vertex];
+    }
+    degrees = compactedDegrees;
+    if (triangles != null) {
+      long[] compactedTriangles = new long[count];
+      for (int vertex=0; vertex<numVertices; vertex++) {
+        if (mapping[vertex] != -1)
+          compactedTriangles[mapping[vertex]] = triangles[vertex];
+      }
+      triangles = compactedTriangles;
+    }
+    vertices = new BitSet(count);
+    vertices.set(0, count);
+    numVertices = count;
+    components = null;
+    return mapping;
+  }
+  
+  /**
+   * Returns the number of vertices this graph has room for
+   * @return The number of vertices, which are numbered from 0 to getNumVertices() - 1
+   */
+  public int getNumVertices() {
+    return numVertices;
   }
   
   /**
@@ -91,16 +333,53 @@ public class Graph {
    * @return List of all unused vertices that are active
    */
   public List<Integer> getUnusedVertices() {
-    List<Integer> unusedVertices = new ArrayList<Integer>(); // keeps track of the unused vertices in the graph
-    int i=0;
-    for (boolean isVertex : vertices) {
-      if (!isVertex)
-        unusedVertices.add(i);
-      i++;
-    }
+    List<Integer> unusedVertices = new ArrayList<Integer>(numVertices - activeCount); // keeps track of the unused vertices in the graph
+    PrimitiveIterator.OfInt iterator = getUnusedVertexIterator();
+    while (iterator.hasNext())
+      unusedVertices.add(iterator.nextInt());
     return unusedVertices;
   }
   
+  /**
+   * Iterates over the vertices that are not active, in increasing order, without boxing. Skips over 64 active vertices at a time
+   * @return An iterator over the unused vertices
+   */
+  public PrimitiveIterator.OfInt getUnusedVertexIterator() {
+    return new PrimitiveIterator.OfInt() {
+      private int next = vertices.nextClearBit(0);
+
+      public boolean hasNext() {
+        return next < numVertices;
+      }
+
+      public int nextInt() {
+        if (!hasNext())
+          throw new NoSuchElementException();
+        int vertex = next;
+        next = vertices.nextClearBit(next + 1);
+        return vertex;
+      }
+    };
+  }
+  
+  /**
+   * Streams the vertices that are not active, in increasing order, without boxing
+   * @return A stream of the unused vertices
+   */
+  public IntStream getUnusedVertexStream() {
+    Spliterator.OfInt spliterator = Spliterators.spliterator(getUnusedVertexIterator(), numVertices - activeCount,
+        Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL);
+    return StreamSupport.intStream(spliterator, false);
+  }
+  
+  /**
+   * Returns the number of vertices that are active
+   * @return The number of active vertices
+   */
+  public int getActiveVertexCount() {
+    return activeCount;
+  }
+  
   /**
    * Returns whether or not a given edge exists.
    * @param source The index of the source vertex
@@ -108,23 +387,89 @@ public class Graph {
    * @return True if the edge exists, otherwise false.
    */
   public boolean isEdge(int source, int destination) {
-    return (edges[source][destination] || edges[destination][source]);
+    return edges.isEdge(source, destination);
   }
   
   /**
-   * Adds an edge given a source and destination.
+   * Adds an edge given a source and destination. The graph grows if either vertex is past the end
    * Postconditions: Adds an edge to the graph. Also sets the source and destination vertices to be active
    * @param source The index of the source vertex
    * @param destination The index of the destination vertex
+   * @throws UnsupportedOperationException If the graph is frozen or read only and source != destination, in which case
+   *      the graph is left unchanged
    */
   public void addEdge(int source, int destination) {
-    vertices[source] = true;
-    vertices[destination] = true;
+    ensureCapacity(Math.max(source, destination) + 1);
+    // The storage goes first, so a read only storage throws before anything in this graph has changed
+    boolean added = source!=destination && edges.addEdge(source, destination);
+    activate(source);
+    activate(destination);
 
-    if (source!=destination) {
-      edges[source][destination] = true;
-      edges[destination][source] = true;
+    if (added) {
+      degrees[source]++;
+      degrees[destination]++;
+      if (triangles != null)
+        updateTriangles(source, destination, 1);
     }
+
+    if (components != null) {
+      components.add(source);
+      components.add(destination);
+      components.union(source, destination);
+    }
+  }
+  
+  /**
+   * Adds an edge with a weight, given a source and destination.
+   * Postconditions: Adds an edge to the graph, or changes the weight of an existing one. Also sets the source and destination vertices to be active
+   * @param source The index of the source vertex
+   * @param destination The index of the destination vertex
+   * @param weight The weight of the edge, which must not be negative
+   * @throws IllegalArgumentException If the weight is negative or not a number
+   * @throws UnsupportedOperationException If the storage of this graph cannot keep weights
+   */
+  public void addEdge(int source, int destination, double weight) {
+    if (!(weight >= 0))
+      throw new IllegalArgumentException("Edge weights must not be negative: " + weight);
+    if (!(edges instanceof WeightedStorage))
+      throw new UnsupportedOperationException(edges.getClass().getName() + " cannot keep edge weights");
+
+    addEdge(source, destination);
+    if (source!=destination)
+      ((WeightedStorage) edges).setWeight(source, destination, weight);
+  }
+  
+  /**
+   * Returns whether the edges of this graph have weights
+   * @return True if any edge has been given a weight, false if every edge has weight 1
+   */
+  public boolean isWeighted() {
+    return edges instanceof WeightedStorage && ((WeightedStorage) edges).hasWeights();
+  }
+  
+  /**
+   * Returns the weight of an edge. Edges added without a weight have weight 1
+   * Preconditions: isEdge(source, destination) is true
+   * @param source The index of the source vertex
+   * @param destination The index of the destination vertex
+   * @return The weight of the edge
+   */
+  public double getWeight(int source, int destination) {
+    return isWeighted() ? ((WeightedStorage) edges).getWeight(source, destination) : 1;
+  }
+  
+  /**
+   * Copies the weights of the edges of the given vertex into a buffer, in the same order as getAdjacent, without allocating anything
+   * Preconditions: buffer.length >= degree(vertex)
+   * @param vertex The index of the vertex
+   * @param buffer Where the weights are written, starting at index 0
+   * @return The number of weights written
+   */
+  public int getAdjacentWeights(int vertex, double[] buffer) {
+    if (isWeighted())
+      return ((WeightedStorage) edges).getAdjacentWeights(vertex, buffer);
+    Arrays.fill(buffer, 0, degrees[vertex], 1);
+    return degrees[vertex];
   }
   
   /**
@@ -134,8 +479,13 @@ public class Graph {
    * @param destination The index of the destination vertex
    */
   public void removeEdge(int source, int destination) {
-     edges[source][destination] = false;
-     edges[destination][source] = false;
+     if (edges.removeEdge(source, destination)) {
+       degrees[source]--;
+       degrees[destination]--;
+       components = null;
+       if (triangles != null)
+         updateTriangles(source, destination, -1);
+     }
   }
   
   /**
@@ -144,18 +494,58 @@ public class Graph {
    * @return True if the given vertex is in the graph, false otherwise
    */
   public boolean isInGraph(int vertex) {
-    return vertices[vertex];
+    return vertices.get(vertex);
+  }
+  
+  /**
+   * Makes a vertex active, if it is not already
+   * Postconditions: The vertex is active, and activeCount counts it
+   * @param vertex The index of the vertex
+   */
+  private void activate(int vertex) {
+    if (!vertices.get(vertex)) {
+      vertices.set(vertex);
+      activeCount++;
+    }
   }
   
   /**
    * Removes a given vertex from the graph
    * Postconditions: Deactivates the vertex and removes all edges to this vertex
    * @param vertex The index of the vertex to be removed
+   * @throws UnsupportedOperationException If the graph is frozen or read only, in which case the graph is left unchanged
    */
   public void removeVertex(int vertex) {
-    vertices[vertex] = false;
-    for (int destination=0; destination<vertices.length; destination++)
-      removeEdge(vertex, destination);
+    int[] neighbours = adjacentArray(vertex);
+    long[] shared = null;
+    if (triangles != null) {
+      // Each triangle through the vertex is also a triangle through two of its neighbours, which share the third corner.
+      // They have to be counted while the edges are still there
+      shared = new long[neighbours.length];
+      for (int i=0; i<neighbours.length; i++)
+        shared[i] = countCommonNeighbours(vertex, neighbours[i]);
+    }
+
+    // The storage goes first, so a read only storage throws before anything in this graph has changed
+    edges.removeEdges(vertex);
+
+    if (shared != null && neighbours.length > 0) {
+      for (int i=0; i<neighbours.length; i++) {
+        triangles[neighbours[i]] -= shared[i];
+        wedgeCount -= degrees[neighbours[i]] - 1;
+      }
+      triangleCount -= triangles[vertex];
+      wedgeCount -= (long) degrees[vertex] * (degrees[vertex] - 1) / 2;
+      triangles[vertex] = 0;
+    }
+    if (vertices.get(vertex)) {
+      vertices.clear(vertex);
+      activeCount--;
+    }
+    for (int adjacent : neighbours)
+      degrees[adjacent]--;
+    degrees[vertex] = 0;
+    components = null;
   }
   
   /**
@@ -164,23 +554,231 @@ public class Graph {
    * @param vertex The vertex who's adjacent vertices are to be found
    */
   public List<Integer> getAdjacent(int vertex) {
-    List<Integer> list = new ArrayList<Integer>(); // Keeps track of all adjacent vertices
+    List<Integer> list = new ArrayList<Integer>(degrees[vertex]); // Keeps track of all adjacent vertices
     if (isInGraph(vertex)) {
-      for (int destination=0; destination<vertices.length; destination++){
-        if (isEdge(vertex, destination))
-          list.add(destination);
-      }
+      for (int adjacent : adjacentArray(vertex))
+        list.add(adjacent);
     }
     return list;
   }
   
+  /**
+   * Copies the vertices that are connected to the given vertex into a buffer, in increasing order, without allocating anything
+   * Preconditions: buffer.length >= degree(vertex)
+   * @param vertex The vertex who's adjacent vertices are to be found
+   * @param buffer Where the adjacent vertices are written, starting at index 0
+   * @return The number of adjacent vertices written
+   */
+  public int getAdjacent(int vertex, int[] buffer) {
+    return isInGraph(vertex) ? edges.getAdjacent(vertex, buffer) : 0;
+  }
+  
+  /**
+   * Iterates over the vertices that are connected to the given vertex, in increasing order, without boxing
+   * @param vertex The vertex who's adjacent vertices are to be found
+   * @return An iterator over the adjacent vertices
+   */
+  public PrimitiveIterator.OfInt getAdjacentIterator(int vertex) {
+    return getAdjacentStream(vertex).iterator();
+  }
+  
+  /**
+   * Streams the vertices that are connected to the given vertex, in increasing order, without boxing
+   * @param vertex The vertex who's adjacent vertices are to be found
+   * @return A stream of the adjacent vertices
+   */
+  public IntStream getAdjacentStream(int vertex) {
+    return isInGraph(vertex) ? IntStream.of(adjacentArray(vertex)) : IntStream.empty();
+  }
+  
   /**
    * Returns the number of vertices that are directly connected to the given vertex
    * @param vertex The index of the vertex who's degree is to be found
    * @return The number of vertices adjacent to the given vertex
    */
   public int degree(int vertex) {
-    return getAdjacent(vertex).size();
+    return degrees[vertex];
+  }
+  
+  /**
+   * Returns the number of vertices that are directly connected to both of the given vertices.
+   * With a BitMatrixStorage this ANDs the two rows together, otherwise it merges the two sorted neighbour lists
+   * @param first The index of the first vertex
+   * @param second The index of the second vertex
+   * @return The number of common neighbours
+   */
+  public int countCommonNeighbours(int first, int second) {
+    if (!isInGraph(first) || !isInGraph(second))
+      return 0;
+    if (edges instanceof BitMatrixStorage)
+      return ((BitMatrixStorage) edges).countCommonNeighbours(first, second);
+
+    int[] a = adjacentArray(first);
+    int[] b = adjacentArray(second);
+    int count = 0;
+    int i = 0, j = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] < b[j])
+        i++;
+      else if (a[i] > b[j])
+        j++;
+      else {
+        count++;
+        i++;
+        j++;
+      }
+    }
+    return count;
+  }
+  
+  /**
+   * Returns the number of triangles in the graph, that is sets of three vertices which are all connected to each other.
+   *    The first call counts them, and from then on the count is kept up to date as edges change, so it takes constant time
+   * @return The number of triangles
+   */
+  public long countTriangles() {
+    getTriangles();
+    return triangleCount;
+  }
+  
+  /**
+   * Returns the number of triangles the given vertex is a corner of. Takes constant time once the triangles have been counted
+   * @param vertex The index of the vertex
+   * @return The number of pairs of the vertex's neighbours which are connected to each other
+   */
+  public long countTriangles(int vertex) {
+    return getTriangles()[vertex];
+  }
+  
+  /**
+   * Returns the local clustering coefficient of a vertex, the fraction of pairs of its neighbours which are connected
+   *    to each other. Takes constant time once the triangles have been counted
+   * @param vertex The index of the vertex
+   * @return The clustering coefficient, from 0 to 1, or 0 if the vertex has fewer than two neighbours
+   */
+  public double getClusteringCoefficient(int vertex) {
+    long[] counts = getTriangles();
+    long degree = degrees[vertex];
+    return degree < 2 ? 0 : 2.0 * counts[vertex] / (degree * (degree - 1));
+  }
+  
+  /**
+   * Returns the average of the clustering coefficients of the active vertices, counting vertices with fewer than two
+   *    neighbours as 0. Takes time linear in the number of vertices
+   * @return The average clustering coefficient, or 0 if there are no active vertices
+   */
+  public double getAverageClusteringCoefficient() {
+    if (activeCount == 0)
+      return 0;
+    double sum = 0;
+    for (int vertex=vertices.nextSetBit(0); vertex>=0; vertex=vertices.nextSetBit(vertex + 1))
+      sum += getClusteringCoefficient(vertex);
+    return sum / activeCount;
+  }
+  
+  /**
+   * Returns the global clustering coefficient (transitivity), the fraction of paths of two edges whose ends are also
+   *    connected, closing a triangle. Takes constant time once the triangles have been counted
+   * @return 3 * countTriangles() divided by the number of paths of two edges, or 0 if there are none
+   */
+  public double getGlobalClusteringCoefficient() {
+    getTriangles();
+    return wedgeCount == 0 ? 0 : 3.0 * triangleCount / wedgeCount;
+  }
+  
+  /**
+   * Returns the number of triangles through each vertex, counting them the first time. For each edge (u, v) with u < v,
+   *    the common neighbours w above v are found by merging the two sorted neighbour lists, so each triangle u-v-w is found
+   *    exactly once and credited to all three corners. With a BitMatrixStorage the common neighbours above v are found by
+   *    ANDing the two rows instead, which also finds each triangle once
+   * @return The number of triangles through each vertex
+   */
+  private long[] getTriangles() {
+    if (triangles == null) {
+      long[] counts = new long[numVertices];
+      long total = 0;
+      if (edges instanceof BitMatrixStorage) {
+        total = ((BitMatrixStorage) edges).countTriangles(counts);
+      } else {
+        for (int u=vertices.nextSetBit(0); u>=0; u=vertices.nextSetBit(u + 1)) {
+          int[] a = adjacentArray(u);
+          for (int k=0; k<a.length; k++) {
+            int v = a[k];
+            if (v < u)
+              continue;
+            int[] b = adjacentArray(v);
+            int i = k + 1;
+            int j = 0;
+            while (j < b.length && b[j] <= v)
+              j++;
+            while (i < a.length && j < b.length) {
+              if (a[i] < b[j])
+                i++;
+              else if (a[i] > b[j])
+                j++;
+              else {
+                counts[u]++;
+                counts[v]++;
+                counts[a[i]]++;
+                total++;
+                i++;
+                j++;
+              }
+            }
+          }
+        }
+      }
+
+      long wedges = 0;
+      for (int vertex=0; vertex<numVertices; vertex++)
+        wedges += (long) degrees[vertex] * (degrees[vertex] - 1) / 2;
+      triangleCount = total;
+      wedgeCount = wedges;
+      triangles = counts;
+    }
+    return triangles;
+  }
+  
+  /**
+   * Adds or takes away the triangles closed by an edge which has just been added or removed: one for each common
+   *    neighbour of its ends, credited to both ends and to the common neighbour
+   * @param source One end of the edge
+   * @param destination The other end of the edge
+   * @param sign 1 if the edge was added, -1 if it was removed
+   */
+  private void updateTriangles(int source, int destination, int sign) {
+    int[] a = adjacentArray(source);
+    int[] b = adjacentArray(destination);
+    int common = 0;
+    int i = 0, j = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] < b[j])
+        i++;
+      else if (a[i] > b[j])
+        j++;
+      else {
+        triangles[a[i]] += sign;
+        common++;
+        i++;
+        j++;
+      }
+    }
+    triangles[source] += sign * common;
+    triangles[destination] += sign * common;
+    triangleCount += sign * common;
+    // The degrees have already changed, and a vertex of degree d is the middle of d * (d - 1) / 2 paths of two edges
+    wedgeCount += sign > 0 ? degrees[source] - 1 + degrees[destination] - 1 : -(degrees[source] + degrees[destination]);
+  }
+  
+  /**
+   * Returns the neighbours of a vertex in increasing order, as an array
+   * @param vertex The index of the vertex
+   * @return An array holding every neighbour of the vertex
+   */
+  private int[] adjacentArray(int vertex) {
+    int[] adjacent = new int[degrees[vertex]];
+    edges.getAdjacent(vertex, adjacent);
+    return adjacent;
   }
   
   /**
@@ -188,33 +786,57 @@ public class Graph {
    * @return True if the graph is connected, false if it is not
    */
   public boolean isConnected() {
-    List<Integer> nodes = new ArrayList<Integer>(); // Keeps track of all of the vertices connected to the first node
-    
-    int firstNode=0;
-    while (firstNode<vertices.length && vertices[firstNode]==false)
-      firstNode++;
-
-    if (firstNode >= vertices.length)
-      return true;
-    
-    nodes.add(firstNode);
-    
-    // While territories are still being added
-    boolean keepGoing = true;
-    while (keepGoing) {
-      keepGoing = false;
-      int currentSize = nodes.size();
-      for (Integer node : nodes) {
-        List<Integer> adjacents = getAdjacent(node);
-        for (Integer adjacent : adjacents) {
-          if (!nodes.contains(adjacent)) {
-            nodes.add(adjacent);
-            keepGoing = true;
-          }
+    return getComponentCount() <= 1;
+  }
+  
+  /**
+   * Returns the number of connected components. While edges are only being added this takes constant time
+   * @return The number of connected components, 0 if the graph has no vertices
+   */
+  public int getComponentCount() {
+    return getUnionFind().count();
+  }
+  
+  /**
+   * Returns an id which is the same for every vertex in the given vertex's connected component, and different for every other component.
+   * The ids are vertex indexes, and may change when edges are added or removed
+   * @param vertex The index of the vertex
+   * @return The id of the vertex's component, or -1 if the vertex is not in the graph
+   */
+  public int getComponent(int vertex) {
+    return isInGraph(vertex) ? getUnionFind().find(vertex) : -1;
+  }
+  
+  /**
+   * Labels every vertex with the id of its connected component, numbered from 0, with a breadth first search.
+   * For large graphs, ConnectedComponents.labelPropagation does the same work in parallel
+   * @return The connected components of the graph as it is now
+   */
+  public ConnectedComponents getConnectedComponents() {
+    return ConnectedComponents.breadthFirst(this);
+  }
+  
+  /**
+   * Returns the union-find of the connected components, rebuilding it from every edge if it is out of date
+   * @return The union-find of the connected components
+   */
+  private UnionFind getUnionFind() {
+    if (components == null) {
+      UnionFind unionFind = new UnionFind(numVertices);
+      int[] buffer = new int[16];
+      for (int vertex=vertices.nextSetBit(0); vertex>=0; vertex=vertices.nextSetBit(vertex + 1)) {
+        unionFind.add(vertex);
+        if (buffer.length < degrees[vertex])
+          buffer = new int[Math.max(degrees[vertex], buffer.length * 2)];
+        int count = edges.getAdjacent(vertex, buffer);
+        for (int i=0; i<count; i++) {
+          // Each edge is seen from both ends, so only union from the smaller one
+          if (buffer[i] < vertex)
+            unionFind.union(vertex, buffer[i]);
         }
       }
+      components = unionFind;
     }
-
-    return nodes.size() == (vertices.length - getUnusedVertices().size());
+    return components;
   }
 }
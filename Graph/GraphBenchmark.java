@@ -0,0 +1,224 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *
+ * Measures how fast Graph's operations are with each storage, on graphs from GraphGenerator. For every kind of graph,
+ *    size and storage it times addEdge, isEdge, getAdjacent, degree, removeVertex and isConnected through the Benchmark
+ *    harness in Common, which prints the average time per run and per operation, so a new storage can be compared
+ *    against the boolean matrix and regressions show up as a change in ns/op.
+ * The storages are matrix (MatrixStorage), bits (BitMatrixStorage), list (AdjacencyListStorage), trie
+ *    (BlockTrieStorage) and csr (CsrStorage, copied from an AdjacencyListStorage). The matrix storages need memory for
+ *    every pair of vertices, so they are skipped for graphs with more than MAX_MATRIX_VERTICES vertices, and csr is read
+ *    only, so it skips addEdge and removeVertex.
+ *
+ * METHODS
+ * -------
+ * public static void main(String[] args)
+ *      Parses the options and runs every benchmark on every graph, then prints the spread of the measured runs from Metrics
+ *
+ * private static void runAll(String kind, String storage, int numVertices, double averageDegree)
+ *      Generates a graph and runs every selected benchmark on it with one storage
+ *
+ * private static Graph build(String storage, int numVertices, long[] edges)
+ *      Builds a graph with the given storage from packed edges
+ *
+ */
+
+public class GraphBenchmark {
+  private static final int MAX_MATRIX_VERTICES = 20000;
+  private static final int QUERIES = 1000000;
+
+  /**
+   * Parses the options and runs every benchmark on every graph
+   * @param args Options followed by graph sizes. The options are those of Benchmark.parseOptions, with the names
+   *    addEdge, isEdge, getAdjacent, degree, removeVertex and isConnected, and -graphs er,rmat,grid and
+   *    -storages matrix,bits,list,trie,csr. Each size is a number of vertices, optionally followed by a colon and an
+   *    average degree, such as 100000:16. The sizes default to 1000:8 10000:8 10000:64 100000:8
+   */
+  public static void main(String[] args) throws IOException {
+    List<String> kinds = Arrays.asList("er", "rmat", "grid");
+    List<String> storages = Arrays.asList("matrix", "bits", "list", "trie", "csr");
+    List<String> rest = Benchmark.parseOptions(args);
+    List<String> sizes = new ArrayList<String>();
+    for (int i=0; i<rest.size(); i++) {
+      if (rest.get(i).equals("-graphs"))
+        kinds = Arrays.asList(rest.get(++i).split(","));
+      else if (rest.get(i).equals("-storages"))
+        storages = Arrays.asList(rest.get(++i).split(","));
+      else
+        sizes.add(rest.get(i));
+    }
+    if (sizes.isEmpty())
+      sizes.addAll(Arrays.asList("1000:8", "10000:8", "10000:64", "100000:8"));
+
+    Benchmark.printHeader("Graph");
+    for (String size : sizes) {
+      String[] parts = size.split(":");
+      int numVertices = Integer.parseInt(parts[0]);
+      double averageDegree = parts.length > 1 ? Double.parseDouble(parts[1]) : 8;
+      for (String kind : kinds) {
+        for (String storage : storages) {
+          if (numVertices > MAX_MATRIX_VERTICES && (storage.equals("matrix") || storage.equals("bits")))
+            continue;
+          runAll(kind, storage, numVertices, averageDegree);
+        }
+      }
+    }
+
+    Benchmark.report(System.out);
+  }
+
+  /**
+   * Generates a graph and runs every selected benchmark on it with one storage
+   * @param kind The kind of graph, er, rmat or grid
+   * @param storage The storage, matrix, bits, list, trie or csr
+   * @param numVertices The number of vertices
+   * @param averageDegree The average number of neighbours of each vertex
+   */
+  private static void runAll(String kind, final String storage, final int numVertices, double averageDegree)
+      throws IOException {
+    final long[] edges = GraphGenerator.generate(kind, numVertices, averageDegree, 42);
+    String name = kind + "/" + storage + "/" + numVertices + (kind.equals("grid") ? "" : ":" + (int) averageDegree);
+    final Graph graph = build(storage, numVertices, edges);
+    final boolean mutable = !storage.equals("csr");
+
+    if (mutable) {
+      Benchmark.measure("addEdge", name, new Benchmark() {
+        protected long run() {
+          Graph fresh = build(storage, numVertices, new long[0]);
+          long start = System.nanoTime();
+          for (long edge : edges)
+            fresh.addEdge(GraphGenerator.source(edge), GraphGenerator.destination(edge));
+          elapsed = System.nanoTime() - start;
+          sink += fresh.getActiveVertexCount();
+          return edges.length;
+        }
+      });
+    }
+
+    // Half of the queries are edges of the graph, the other half are random pairs, which are almost never edges
+    final int[] sources = new int[QUERIES];
+    final int[] destinations = new int[QUERIES];
+    Random random = new Random(7);
+    for (int i=0; i<QUERIES; i++) {
+      if (i % 2 == 0 && edges.length > 0) {
+        long edge = edges[random.nextInt(edges.length)];
+        sources[i] = GraphGenerator.source(edge);
+        destinations[i] = GraphGenerator.destination(edge);
+      } else {
+        sources[i] = random.nextInt(numVertices);
+        destinations[i] = random.nextInt(numVertices);
+      }
+    }
+    Benchmark.measure("isEdge", name, new Benchmark() {
+      protected long run() {
+        long start = System.nanoTime();
+        int found = 0;
+        for (int i=0; i<QUERIES; i++) {
+          if (graph.isEdge(sources[i], destinations[i]))
+            found++;
+        }
+        elapsed = System.nanoTime() - start;
+        sink += found;
+        return QUERIES;
+      }
+    });
+
+    final int[] buffer = new int[numVertices];
+    Benchmark.measure("getAdjacent", name, new Benchmark() {
+      protected long run() {
+        long start = System.nanoTime();
+        long total = 0;
+        for (int vertex=0; vertex<numVertices; vertex++)
+          total += graph.getAdjacent(vertex, buffer);
+        elapsed = System.nanoTime() - start;
+        sink += total;
+        return numVertices;
+      }
+    });
+
+    Benchmark.measure("degree", name, new Benchmark() {
+      protected long run() {
+        long start = System.nanoTime();
+        long total = 0;
+        for (int vertex=0; vertex<numVertices; vertex++)
+          total += graph.degree(vertex);
+        elapsed = System.nanoTime() - start;
+        sink += total;
+        return numVertices;
+      }
+    });
+
+    if (mutable) {
+      // Remove 1% of the vertices from a fresh copy each run
+      final int[] victims = new int[Math.max(1, numVertices / 100)];
+      for (int i=0; i<victims.length; i++)
+        victims[i] = random.nextInt(numVertices);
+      Benchmark.measure("removeVertex", name, new Benchmark() {
+        protected long run() {
+          Graph fresh = build(storage, numVertices, edges);
+          long start = System.nanoTime();
+          for (int victim : victims)
+            fresh.removeVertex(victim);
+          elapsed = System.nanoTime() - start;
+          sink += fresh.getActiveVertexCount();
+          return victims.length;
+        }
+      });
+    }
+
+    // Edges that are only added keep the components up to date, so time the rebuild after a removal
+    Benchmark.measure("isConnected", name, new Benchmark() {
+      protected long run() {
+        Graph fresh = build(storage, numVertices, edges);
+        if (mutable && edges.length > 0) {
+          int source = GraphGenerator.source(edges[0]);
+          int destination = GraphGenerator.destination(edges[0]);
+          fresh.removeEdge(source, destination);
+          fresh.addEdge(source, destination);
+        }
+        long start = System.nanoTime();
+        sink += fresh.isConnected() ? 1 : 0;
+        elapsed = System.nanoTime() - start;
+        return 1;
+      }
+    });
+  }
+
+  /**
+   * Builds a graph with the given storage from packed edges
+   * @param storage The storage, matrix, bits, list, trie or csr
+   * @param numVertices The number of vertices
+   * @param edges The packed edges
+   * @return The graph
+   */
+  private static Graph build(String storage, int numVertices, long[] edges) {
+    if (storage.equals("csr")) {
+      // Fill the storage directly, so the graph starts without components, as if it had been loaded
+      AdjacencyListStorage list = new AdjacencyListStorage(numVertices);
+      for (long edge : edges)
+        list.addEdge(GraphGenerator.source(edge), GraphGenerator.destination(edge));
+      return new Graph(new CsrStorage(list));
+    }
+
+    Graph graph;
+    if (storage.equals("matrix"))
+      graph = new Graph(new MatrixStorage(numVertices));
+    else if (storage.equals("bits"))
+      graph = new Graph(new BitMatrixStorage(numVertices));
+    else if (storage.equals("list"))
+      graph = new Graph(new AdjacencyListStorage(numVertices));
+    else if (storage.equals("trie"))
+      graph = new Graph(new BlockTrieStorage(numVertices));
+    else
+      throw new IllegalArgumentException("Unknown storage: " + storage + " (expected matrix, bits, list, trie or csr)");
+
+    for (long edge : edges)
+      graph.addEdge(GraphGenerator.source(edge), GraphGenerator.destination(edge));
+    return graph;
+  }
+}
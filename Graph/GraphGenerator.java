@@ -0,0 +1,221 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ *
+ * Generates synthetic graphs to benchmark Graph with. Each generator returns its edges packed into longs, source in the
+ *    high half and destination in the low half, so that building a graph from them can be timed on its own. The same
+ *    seed always produces the same edges. Edges may repeat, but there are no self loops.
+ *
+ *    erdosRenyi    Every edge joins two vertices chosen uniformly at random, so degrees cluster tightly around the average
+ *    rmat          Recursive matrix (R-MAT): each edge picks a quadrant of the adjacency matrix with probabilities a, b, c and d,
+ *                  then a quadrant of that quadrant, and so on. Gives a power-law degree distribution with a few large hubs,
+ *                  like real social and web graphs
+ *    grid          A square lattice where every vertex is joined to the vertices to its right and below it. Every degree is at
+ *                  most 4, and the diameter is large
+ *
+ * VARIABLES
+ * ---------
+ * private Random random;
+ *      The source of randomness, seeded so the graphs are reproducible
+ *
+ * METHODS
+ * -------
+ * public static void main(String[] args)
+ *      Writes a generated graph to a file as an edge list
+ *
+ * public GraphGenerator(long seed)
+ *      Constructor. Seeds the generator
+ *
+ * public long[] erdosRenyi(int numVertices, double averageDegree)
+ *      Generates a uniformly random graph
+ *
+ * public long[] rmat(int numVertices, double averageDegree)
+ *      Generates a power-law graph with the usual R-MAT probabilities
+ *
+ * public long[] rmat(int numVertices, double averageDegree, double a, double b, double c)
+ *      Generates a power-law graph with the given quadrant probabilities
+ *
+ * public static long[] grid(int numVertices)
+ *      Generates a square lattice
+ *
+ * public static long[] generate(String kind, int numVertices, double averageDegree, long seed)
+ *      Generates a graph of a kind named on the command line
+ *
+ * public static int source(long edge), destination(long edge)
+ *      Unpacks an edge
+ *
+ * private static long pack(int source, int destination)
+ *      Packs an edge
+ *
+ */
+
+public class GraphGenerator {
+  private Random random;
+
+  /**
+   * Writes a generated graph to a file as a text edge list, which EdgeListImport can read
+   * @param args The kind of graph (er, rmat or grid), the number of vertices, the average degree, the output file, and
+   *    optionally the seed
+   */
+  public static void main(String[] args) throws IOException {
+    if (args == null || args.length < 4) {
+      System.out.println("Usage: java GraphGenerator <er|rmat|grid> <vertices> <average degree> <output file> [seed]");
+      return;
+    }
+
+    long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+    long[] edges = generate(args[0], Integer.parseInt(args[1]), Double.parseDouble(args[2]), seed);
+    Writer out = new BufferedWriter(new FileWriter(args[3]), 1 << 16);
+    try {
+      for (long edge : edges)
+        out.write(source(edge) + " " + destination(edge) + "\n");
+    } finally {
+      out.close();
+    }
+    System.out.println("Wrote " + edges.length + " edges to " + args[3]);
+  }
+
+  /**
+   * Constructs a generator
+   * @param seed The seed of the generator
+   */
+  public GraphGenerator(long seed) {
+    random = new Random(seed);
+  }
+
+  /**
+   * Generates a uniformly random (Erdos-Renyi) graph
+   * @param numVertices The number of vertices
+   * @param averageDegree The average number of neighbours of each vertex
+   * @return numVertices * averageDegree / 2 packed edges
+   */
+  public long[] erdosRenyi(int numVertices, double averageDegree) {
+    if (numVertices < 2)
+      return new long[0];
+    long[] edges = new long[(int) (numVertices * averageDegree / 2)];
+    for (int i=0; i<edges.length; i++) {
+      int source = random.nextInt(numVertices);
+      int destination = random.nextInt(numVertices - 1);
+      // Skip over the source so there are no self loops
+      if (destination >= source)
+        destination++;
+      edges[i] = pack(source, destination);
+    }
+    return edges;
+  }
+
+  /**
+   * Generates a power-law graph with the quadrant probabilities of the Graph500 benchmark (0.57, 0.19, 0.19, 0.05)
+   * @param numVertices The number of vertices
+   * @param averageDegree The average number of neighbours of each vertex
+   * @return numVertices * averageDegree / 2 packed edges
+   */
+  public long[] rmat(int numVertices, double averageDegree) {
+    return rmat(numVertices, averageDegree, 0.57, 0.19, 0.19);
+  }
+
+  /**
+   * Generates a power-law (R-MAT) graph. Each edge starts with the whole adjacency matrix, rounded up to a power of two, and
+   *    halves it in both directions once per bit, choosing the top left, top right, bottom left or bottom right quadrant with
+   *    probabilities a, b, c and 1 - a - b - c. Edges which land outside the graph, or on the diagonal, are drawn again
+   * @param numVertices The number of vertices
+   * @param averageDegree The average number of neighbours of each vertex
+   * @param a The probability of the top left quadrant
+   * @param b The probability of the top right quadrant
+   * @param c The probability of the bottom left quadrant
+   * @return numVertices * averageDegree / 2 packed edges
+   */
+  public long[] rmat(int numVertices, double averageDegree, double a, double b, double c) {
+    if (numVertices < 2)
+      return new long[0];
+    int scale = 32 - Integer.numberOfLeadingZeros(numVertices - 1);
+    long[] edges = new long[(int) (numVertices * averageDegree / 2)];
+    for (int i=0; i<edges.length; i++) {
+      int source, destination;
+      do {
+        source = 0;
+        destination = 0;
+        for (int bit=scale - 1; bit>=0; bit--) {
+          double p = random.nextDouble();
+          if (p >= a + b)
+            source |= 1 << bit;
+          if ((p >= a && p < a + b) || p >= a + b + c)
+            destination |= 1 << bit;
+        }
+      } while (source >= numVertices || destination >= numVertices || source == destination);
+      edges[i] = pack(source, destination);
+    }
+    return edges;
+  }
+
+  /**
+   * Generates a square lattice, as close to square as the number of vertices allows. Vertex v is in row v / width and
+   *    column v % width, and is joined to the vertices to its right and below it
+   * @param numVertices The number of vertices
+   * @return The packed edges, about 2 per vertex
+   */
+  public static long[] grid(int numVertices) {
+    int width = Math.max(1, (int) Math.sqrt(numVertices));
+    long[] edges = new long[2 * numVertices];
+    int count = 0;
+    for (int vertex=0; vertex<numVertices; vertex++) {
+      if ((vertex + 1) % width != 0 && vertex + 1 < numVertices)
+        edges[count++] = pack(vertex, vertex + 1);
+      if (vertex + width < numVertices)
+        edges[count++] = pack(vertex, vertex + width);
+    }
+    return Arrays.copyOf(edges, count);
+  }
+
+  /**
+   * Generates a graph of a kind named on the command line
+   * @param kind er, rmat or grid
+   * @param numVertices The number of vertices
+   * @param averageDegree The average number of neighbours of each vertex, which grids ignore
+   * @param seed The seed of the generator
+   * @return The packed edges
+   * @throws IllegalArgumentException If the kind is not known
+   */
+  public static long[] generate(String kind, int numVertices, double averageDegree, long seed) {
+    if (kind.equals("er"))
+      return new GraphGenerator(seed).erdosRenyi(numVertices, averageDegree);
+    if (kind.equals("rmat"))
+      return new GraphGenerator(seed).rmat(numVertices, averageDegree);
+    if (kind.equals("grid"))
+      return grid(numVertices);
+    throw new IllegalArgumentException("Unknown kind of graph: " + kind + " (expected er, rmat or grid)");
+  }
+
+  /**
+   * Returns the source of a packed edge
+   * @param edge The packed edge
+   * @return The index of the source vertex
+   */
+  public static int source(long edge) {
+    return (int) (edge >>> 32);
+  }
+
+  /**
+   * Returns the destination of a packed edge
+   * @param edge The packed edge
+   * @return The index of the destination vertex
+   */
+  public static int destination(long edge) {
+    return (int) edge;
+  }
+
+  /**
+   * Packs an edge into a long
+   * @param source The index of the source vertex
+   * @param destination The index of the destination vertex
+   * @return The packed edge
+   */
+  private static long pack(int source, int destination) {
+    return ((long) source << 32) | destination;
+  }
+}
@@ -0,0 +1,174 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ *
+ * Saves graphs to a compact binary file, and loads them back by memory mapping the file instead of reading it.
+ *    Loading only maps the file and scans the offsets to count degrees, so even a graph with hundreds of millions
+ *    of edges is ready almost at once, and processes loading the same file share one copy of it in the page cache.
+ *    A loaded graph is read only, like a frozen one. Edge weights are not saved.
+ * This is a class who's methods are all static and has no class variables
+ *
+ * FILE FORMAT
+ * -----------
+ * Every number is big endian.
+ *
+ *    int magic                  0x47524150 ("GRAP")
+ *    int version                1
+ *    int numVertices            The number of vertices
+ *    int neighbourCount         The number of neighbours, which is twice the number of edges
+ *    long[(numVertices + 63) / 64] active
+ *                               The active vertices, as a bitset. Bit v is bit (v % 64) of word v / 64
+ *    int[numVertices + 1] offsets
+ *                               The neighbours of vertex v are neighbours[offsets[v]] to neighbours[offsets[v + 1] - 1]
+ *    int[neighbourCount] neighbours
+ *                               Every vertex's neighbours, in increasing order within each vertex
+ *
+ * METHODS
+ * -------
+ * public static void write(Graph graph, File file)
+ *      Saves a graph to a file
+ *
+ * public static Graph read(File file)
+ *      Loads a graph from a file by memory mapping it with a MappedFile
+ *
+ * private static void ensureRoom(FileChannel channel, ByteBuffer buffer, int bytes)
+ *      Writes out the buffer if it does not have room for a number of bytes
+ *
+ */
+
+public class GraphSnapshot {
+  private static final int MAGIC = 0x47524150;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 16;
+
+  /**
+   * Saves a graph to a file, replacing anything already there. The graph must not change while it is being saved;
+   *    to save a ConcurrentGraph that writers are still using, save its snapshot()
+   * @param graph The graph to be saved
+   * @param file Where the graph is saved
+   * @throws IOException If the file cannot be written
+   */
+  public static void write(Graph graph, File file) throws IOException {
+    int numVertices = graph.getNumVertices();
+    long neighbourCount = 0;
+    for (int vertex=0; vertex<numVertices; vertex++)
+      neighbourCount += graph.degree(vertex);
+    if (neighbourCount > Integer.MAX_VALUE)
+      throw new IOException("Too many edges for a snapshot: " + neighbourCount / 2);
+
+    RandomAccessFile out = new RandomAccessFile(file, "rw");
+    try {
+      out.setLength(0);
+      FileChannel channel = out.getChannel();
+      ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+      buffer.putInt(MAGIC).putInt(VERSION).putInt(numVertices).putInt((int) neighbourCount);
+
+      for (int word=0; word<(numVertices + 63) >>> 6; word++) {
+        long bits = 0;
+        for (int bit=0; bit<64 && (word << 6) + bit < numVertices; bit++) {
+          if (graph.isInGraph((word << 6) + bit))
+            bits |= 1L << bit;
+        }
+        ensureRoom(channel, buffer, 8);
+        buffer.putLong(bits);
+      }
+
+      int offset = 0;
+      for (int vertex=0; vertex<numVertices; vertex++) {
+        ensureRoom(channel, buffer, 4);
+        buffer.putInt(offset);
+        offset += graph.degree(vertex);
+      }
+      ensureRoom(channel, buffer, 4);
+      buffer.putInt(offset);
+
+      int[] adjacent = new int[16];
+      for (int vertex=0; vertex<numVertices; vertex++) {
+        int degree = graph.degree(vertex);
+        if (adjacent.length < degree)
+          adjacent = new int[Math.max(degree, adjacent.length * 2)];
+        int count = graph.getAdjacent(vertex, adjacent);
+        for (int i=0; i<count; i++) {
+          ensureRoom(channel, buffer, 4);
+          buffer.putInt(adjacent[i]);
+        }
+      }
+
+      // Write out whatever is left in the buffer
+      ensureRoom(channel, buffer, buffer.capacity());
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Loads a graph from a file written by write, by memory mapping it. The edges are read from the mapped file
+   *    whenever they are needed, so the file must not be changed while the graph is in use
+   * @param file The file to be loaded
+   * @return A read only graph with the vertices and edges that were saved
+   * @throws IOException If the file cannot be read, is not a graph snapshot, or is truncated or corrupt
+   */
+  public static Graph read(File file) throws IOException {
+    MappedFile in = new MappedFile(file);
+    try {
+      if (in.size() < HEADER_SIZE || in.getInt(0) != MAGIC)
+        throw new IOException(file + " is not a graph snapshot");
+      int version = in.getInt(4);
+      if (version != VERSION)
+        throw new IOException(file + " is a version " + version + " graph snapshot, only version " + VERSION + " can be read");
+      int numVertices = in.getInt(8);
+      int neighbourCount = in.getInt(12);
+      if (numVertices < 0 || neighbourCount < 0)
+        throw new IOException(file + " is corrupt: it has " + numVertices + " vertices and " + neighbourCount + " neighbours");
+
+      long activeBytes = 8L * ((numVertices + 63L) >>> 6);
+      long offsetsPosition = HEADER_SIZE + activeBytes;
+      long neighboursPosition = offsetsPosition + 4L * (numVertices + 1L);
+      if (in.size() < neighboursPosition + 4L * neighbourCount)
+        throw new IOException(file + " is truncated");
+      // The offsets must start at the first neighbour and end at the last, or the storage would read outside the neighbours
+      int first = in.getInt(offsetsPosition);
+      int last = in.getInt(offsetsPosition + 4L * numVertices);
+      if (first != 0 || last != neighbourCount)
+        throw new IOException(file + " is corrupt: its offsets run from " + first + " to " + last + ", not 0 to " + neighbourCount);
+
+      Graph graph = new Graph(new MappedCsrStorage(in, numVertices, offsetsPosition, neighboursPosition));
+
+      // Vertices with edges are already active, a self loop activates the rest
+      for (long word=0; word<activeBytes / 8; word++) {
+        long bits = in.getLong(HEADER_SIZE + 8 * word);
+        while (bits != 0) {
+          int vertex = (int) (word << 6) + Long.numberOfTrailingZeros(bits);
+          if (vertex >= numVertices)
+            throw new IOException(file + " is corrupt: vertex " + vertex + " is active but there are only " + numVertices);
+          if (!graph.isInGraph(vertex))
+            graph.addEdge(vertex, vertex);
+          bits &= bits - 1;
+        }
+      }
+      return graph;
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Writes out the buffer if it does not have room for a number of bytes
+   * @param channel Where the buffer is written
+   * @param buffer The buffer
+   * @param bytes The number of bytes about to be put in the buffer
+   * @throws IOException If the buffer cannot be written
+   */
+  private static void ensureRoom(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+    if (buffer.remaining() >= bytes)
+      return;
+    buffer.flip();
+    while (buffer.hasRemaining())
+      channel.write(buffer);
+    buffer.clear();
+  }
+}
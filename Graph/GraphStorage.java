@@ -0,0 +1,137 @@
+/**
+ * 
+ * The way a Graph stores its edges. Every implementation is undirected: if there is an edge from
+ *    source to destination, there is also one from destination to source. Self loops are never stored,
+ *    Graph handles those by only activating the vertex.
+ *
+ * Implementations:
+ *    MatrixStorage          A 2D array of booleans. Fast for small, dense graphs, but its size is the square of the number of vertices
+ *    BitMatrixStorage       A 2D array of bits. 8 times smaller than MatrixStorage, with word parallel neighbour scans
+ *    AdjacencyListStorage   A sorted array of neighbours per vertex. Memory grows with the number of edges
+ *    BlockTrieStorage       The bit matrix as a trie of blocks, with empty blocks left out and equal blocks shared. For clustered graphs
+ *    CsrStorage             All neighbour lists packed into one array. Read only, and the most compact
+ *    MappedCsrStorage       CsrStorage's layout, read straight from a memory mapped GraphSnapshot file. Read only
+ *
+ * Storages which can keep a weight on each edge also implement WeightedStorage.
+ * 
+ * METHODS
+ * -------
+ * public int size()
+ *      Returns the number of vertices that can be stored
+ * 
+ * public boolean isRowLocal()
+ *      Returns whether changing an edge only touches the rows of its two ends
+ * 
+ * public boolean isEdge(int source, int destination)
+ *      Returns whether or not a given edge exists
+ * 
+ * public boolean addEdge(int source, int destination)
+ *      Adds an edge in both directions
+ *      
+ * public boolean removeEdge(int source, int destination)
+ *      Removes an edge in both directions
+ * 
+ * public void removeEdges(int vertex)
+ *      Removes every edge of a vertex
+ * 
+ * public int degree(int vertex)
+ *      Returns the number of neighbours of a vertex
+ * 
+ * public int getAdjacent(int vertex, int[] buffer)
+ *      Copies the neighbours of a vertex into a buffer, in increasing order
+ * 
+ * public void grow(int numVertices)
+ *      Makes room for more vertices, keeping every edge
+ * 
+ * public GraphStorage compact(int[] mapping, int numVertices)
+ *      Returns a copy of this storage with its vertices renumbered
+ *
+ */
+
+public interface GraphStorage {
+
+  /**
+   * Returns the number of vertices that can be stored
+   * @return The number of vertices, which are numbered from 0 to size() - 1
+   */
+  int size();
+
+  /**
+   * Returns whether changing an edge only reads and writes the rows of its two ends, and nothing shared between rows.
+   *    If so, threads which change edges with no end in common never touch the same memory, so holding a lock per
+   *    row is enough to use the storage from many threads, which is what ConcurrentGraph relies on. Read only
+   *    storages never change, so they are row local too
+   * @return True if the storage is row local
+   */
+  boolean isRowLocal();
+
+  /**
+   * Returns whether or not a given edge exists.
+   * @param source The index of the source vertex
+   * @param destination The index of the destination vertex
+   * @return True if the edge exists, otherwise false.
+   */
+  boolean isEdge(int source, int destination);
+
+  /**
+   * Adds an edge in both directions
+   * Preconditions: source != destination
+   * Postconditions: isEdge(source, destination) and isEdge(destination, source) are both true
+   * @param source The index of the source vertex
+   * @param destination The index of the destination vertex
+   * @return True if the edge was added, false if it was already there
+   */
+  boolean addEdge(int source, int destination);
+
+  /**
+   * Removes an edge in both directions
+   * Postconditions: isEdge(source, destination) and isEdge(destination, source) are both false
+   * @param source The index of the source vertex
+   * @param destination The index of the destination vertex
+   * @return True if the edge was removed, false if it was not there
+   */
+  boolean removeEdge(int source, int destination);
+
+  /**
+   * Removes every edge of a vertex
+   * Postconditions: The vertex has no neighbours, and no vertex has it as a neighbour
+   * @param vertex The index of the vertex
+   */
+  void removeEdges(int vertex);
+
+  /**
+   * Returns the number of neighbours of a vertex
+   * @param vertex The index of the vertex
+   * @return The number of vertices connected to the given vertex by an edge
+   */
+  int degree(int vertex);
+
+  /**
+   * Copies the neighbours of a vertex into a buffer, in increasing order
+   * Preconditions: buffer.length >= degree(vertex)
+   * @param vertex The index of the vertex
+   * @param buffer Where the neighbours are written, starting at index 0
+   * @return The number of neighbours written
+   */
+  int getAdjacent(int vertex, int[] buffer);
+
+  /**
+   * Makes room for more vertices, keeping every edge. The new vertices have no neighbours
+   * Preconditions: numVertices >= size()
+   * Postconditions: size() == numVertices
+   * @param numVertices The number of vertices to make room for
+   * @throws UnsupportedOperationException If the storage is read only
+   */
+  void grow(int numVertices);
+
+  /**
+   * Returns a copy of this storage with its vertices renumbered. The copy is the same kind of storage, except that read
+   *    only storages may return a CsrStorage
+   * Preconditions: Every vertex mapped to -1 has no neighbours, and mapping is increasing over the other vertices, so
+   *      that rows stay in the same order
+   * @param mapping The new index of each vertex, or -1 for vertices which are left out
+   * @param numVertices The number of vertices of the copy, which is more than every new index
+   * @return A storage in which there is an edge between mapping[s] and mapping[d] for every edge between s and d
+   */
+  GraphStorage compact(int[] mapping, int numVertices);
+}
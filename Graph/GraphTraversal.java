@@ -0,0 +1,537 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ *
+ * Breadth first and depth first traversals and shortest paths over a Graph. All of the working memory
+ *    (queues, the stack, the heap, parent and distance arrays) is allocated once and reused by every
+ *    query, so after the first query nothing is allocated unless the graph has grown. Instead of clearing
+ *    the visited marks before each query, every query gets a new stamp, and a vertex has been visited by
+ *    the current query if its mark equals the current stamp.
+ * One GraphTraversal should only run one query at a time, and starting a new query invalidates the
+ *    iterators and results of the previous one. Use one GraphTraversal per thread.
+ *
+ * Unweighted graphs use breadth first search for shortest paths, and bidirectional breadth first search
+ *    between two vertices. Weighted graphs (see Graph.addEdge(int, int, double)) use Dijkstra's algorithm
+ *    with an indexed binary heap, stopping early when there is a target.
+ *
+ * VARIABLES
+ * ---------
+ * private Graph graph;
+ *      The graph being traversed
+ *
+ * private int[] stamps, otherStamps;
+ *      The visited marks of the forward search and of the backward search (or, for Dijkstra, the settled marks)
+ *
+ * private int stamp;
+ *      The mark of the current query
+ *
+ * private int[] parents, otherParents;
+ *      The vertex each vertex was reached from, for the forward and backward searches
+ *
+ * private double[] distances, otherDistances;
+ *      The distance of each vertex from the source, and from the target for the backward search
+ *
+ * private int[] queue, otherQueue;
+ *      The breadth first queues of the forward and backward searches
+ *
+ * private int[] stack;
+ *      The depth first stack
+ *
+ * private int[] heap, heapIndex;
+ *      Dijkstra's priority queue, and the position of each vertex in it
+ *
+ * private int[] buffer;
+ * private double[] weightBuffer;
+ *      Where the neighbours of a vertex, and the weights of its edges, are copied
+ *
+ * private int meeting;
+ *      The vertex where the two halves of the last bidirectional search met
+ *
+ * METHODS
+ * -------
+ * public GraphTraversal(Graph graph)
+ *      Constructor. Allocates the working memory for the given graph
+ *
+ * public PrimitiveIterator.OfInt breadthFirst(int source)
+ *      Iterates over every vertex reachable from the source, closest first
+ *
+ * public PrimitiveIterator.OfInt depthFirst(int source)
+ *      Iterates over every vertex reachable from the source in depth first order
+ *
+ * public void shortestPaths(int source)
+ *      Finds the shortest path from the source to every vertex
+ *
+ * public double getDistance(int vertex)
+ *      Returns the distance of a vertex found by the last query
+ *
+ * public int getParent(int vertex)
+ *      Returns the vertex before the given one on the shortest path found by the last query
+ *
+ * public int getPath(int target, int[] path)
+ *      Copies the path from the last source to a target into a buffer
+ *
+ * public double distance(int source, int target)
+ *      Returns the length of the shortest path between two vertices
+ *
+ * public int shortestPath(int source, int target, int[] path)
+ *      Copies the shortest path between two vertices into a buffer
+ *
+ */
+
+public class GraphTraversal {
+  private Graph graph;
+  private int[] stamps, otherStamps;
+  private int stamp;
+  private int[] parents, otherParents;
+  private double[] distances, otherDistances;
+  private int[] queue, otherQueue;
+  private int[] stack = new int[16];
+  private int[] heap, heapIndex;
+  private int heapSize;
+  private int[] buffer = new int[16];
+  private double[] weightBuffer = new double[16];
+  private int meeting = -1;
+  private boolean bidirectional;
+
+  private BreadthFirstIterator breadthFirstIterator = new BreadthFirstIterator();
+  private DepthFirstIterator depthFirstIterator = new DepthFirstIterator();
+
+  /**
+   * Constructs a traversal for the given graph.
+   * Postconditions: The working memory for the graph's vertices is allocated
+   * @param graph The graph to be traversed
+   */
+  public GraphTraversal(Graph graph) {
+    this.graph = graph;
+    ensureCapacity();
+  }
+
+  /**
+   * Iterates over every vertex reachable from the source, in breadth first order, starting with the source itself.
+   * As each vertex is returned, getDistance and getParent give its depth and the vertex it was reached from
+   * @param source The vertex to start from
+   * @return An iterator over the reachable vertices, which is reused by the next call
+   */
+  public PrimitiveIterator.OfInt breadthFirst(int source) {
+    start();
+    breadthFirstIterator.head = 0;
+    breadthFirstIterator.tail = 0;
+    if (graph.isInGraph(source)) {
+      visit(source, -1, 0);
+      queue[breadthFirstIterator.tail++] = source;
+    }
+    return breadthFirstIterator;
+  }
+
+  /**
+   * Iterates over every vertex reachable from the source, in depth first order (the order a recursive depth first search
+   * would visit them, trying neighbours in increasing order), starting with the source itself
+   * @param source The vertex to start from
+   * @return An iterator over the reachable vertices, which is reused by the next call
+   */
+  public PrimitiveIterator.OfInt depthFirst(int source) {
+    start();
+    depthFirstIterator.top = 0;
+    depthFirstIterator.next = -1;
+    if (graph.isInGraph(source)) {
+      stack[depthFirstIterator.top++] = source;
+      parents[source] = -1;
+    }
+    return depthFirstIterator;
+  }
+
+  /**
+   * Finds the shortest path from the source to every vertex that can be reached from it.
+   * Postconditions: getDistance, getParent and getPath describe the paths from the source
+   * @param source The vertex to start from
+   */
+  public void shortestPaths(int source) {
+    if (graph.isWeighted()) {
+      dijkstra(source, -1);
+    } else {
+      PrimitiveIterator.OfInt iterator = breadthFirst(source);
+      while (iterator.hasNext())
+        iterator.nextInt();
+    }
+  }
+
+  /**
+   * Returns the distance of a vertex from the source of the last query. After a query with a target, only the distances
+   * of vertices on the path found are final
+   * @param vertex The index of the vertex
+   * @return The distance from the source, or Double.POSITIVE_INFINITY if the vertex was not reached
+   */
+  public double getDistance(int vertex) {
+    return stamps[vertex] == stamp ? distances[vertex] : Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * Returns the vertex before the given one on the shortest path from the source of the last query
+   * @param vertex The index of the vertex
+   * @return The previous vertex on the path, or -1 if the vertex is the source or was not reached
+   */
+  public int getParent(int vertex) {
+    return stamps[vertex] == stamp ? parents[vertex] : -1;
+  }
+
+  /**
+   * Copies the path from the source of the last query to a target into a buffer, without allocating anything
+   * Preconditions: path is long enough to hold the path
+   * @param target The last vertex of the path
+   * @param path Where the path is written, source first
+   * @return The number of vertices on the path, or -1 if the target was not reached
+   */
+  public int getPath(int target, int[] path) {
+    if (stamps[target] != stamp)
+      return -1;
+    int length = 0;
+    for (int vertex=target; vertex!=-1; vertex=parents[vertex])
+      length++;
+    int i = length;
+    for (int vertex=target; vertex!=-1; vertex=parents[vertex])
+      path[--i] = vertex;
+    return length;
+  }
+
+  /**
+   * Returns the length of the shortest path between two vertices, using bidirectional breadth first search for
+   * unweighted graphs and Dijkstra's algorithm, stopping at the target, for weighted ones
+   * @param source The first vertex
+   * @param target The last vertex
+   * @return The length of the shortest path, or Double.POSITIVE_INFINITY if there is none
+   */
+  public double distance(int source, int target) {
+    if (graph.isWeighted()) {
+      bidirectional = false;
+      dijkstra(source, target);
+      return getDistance(target);
+    }
+    bidirectional = true;
+    return bidirectionalSearch(source, target);
+  }
+
+  /**
+   * Copies the shortest path between two vertices into a buffer, without allocating anything
+   * Preconditions: path is long enough to hold the path
+   * @param source The first vertex
+   * @param target The last vertex
+   * @param path Where the path is written, source first
+   * @return The number of vertices on the path, or -1 if there is no path
+   */
+  public int shortestPath(int source, int target, int[] path) {
+    if (distance(source, target) == Double.POSITIVE_INFINITY)
+      return -1;
+    if (!bidirectional)
+      return getPath(target, path);
+
+    // The forward half runs from the source to the meeting point, the backward half from there to the target
+    int length = getPath(meeting, path);
+    for (int vertex=otherParents[meeting]; vertex!=-1; vertex=otherParents[vertex])
+      path[length++] = vertex;
+    return length;
+  }
+
+  /**
+   * Searches forwards from the source and backwards from the target at the same time, always expanding a whole level of
+   * whichever side has the smaller frontier, until the two searches meet
+   * @param source The first vertex
+   * @param target The last vertex
+   * @return The number of edges on the shortest path, or Double.POSITIVE_INFINITY if there is none
+   */
+  private double bidirectionalSearch(int source, int target) {
+    start();
+    meeting = -1;
+    if (!graph.isInGraph(source) || !graph.isInGraph(target))
+      return Double.POSITIVE_INFINITY;
+
+    visit(source, -1, 0);
+    otherStamps[target] = stamp;
+    otherParents[target] = -1;
+    otherDistances[target] = 0;
+    if (source == target) {
+      meeting = source;
+      return 0;
+    }
+
+    int head = 0, tail = 0, otherHead = 0, otherTail = 0;
+    queue[tail++] = source;
+    otherQueue[otherTail++] = target;
+    double best = Double.POSITIVE_INFINITY;
+    while (head < tail && otherHead < otherTail && best == Double.POSITIVE_INFINITY) {
+      boolean forward = tail - head <= otherTail - otherHead;
+      int[] fromStamps = forward ? stamps : otherStamps;
+      int[] toStamps = forward ? otherStamps : stamps;
+      int[] fromParents = forward ? parents : otherParents;
+      double[] fromDistances = forward ? distances : otherDistances;
+      double[] toDistances = forward ? otherDistances : distances;
+      int[] fromQueue = forward ? queue : otherQueue;
+      int levelHead = forward ? head : otherHead;
+      int levelTail = forward ? tail : otherTail;
+      int newTail = levelTail;
+
+      while (levelHead < levelTail) {
+        int vertex = fromQueue[levelHead++];
+        int count = adjacent(vertex, false);
+        for (int i=0; i<count; i++) {
+          int adjacent = buffer[i];
+          if (fromStamps[adjacent] == stamp)
+            continue;
+          fromStamps[adjacent] = stamp;
+          fromParents[adjacent] = vertex;
+          fromDistances[adjacent] = fromDistances[vertex] + 1;
+          fromQueue[newTail++] = adjacent;
+          if (toStamps[adjacent] == stamp && fromDistances[adjacent] + toDistances[adjacent] < best) {
+            best = fromDistances[adjacent] + toDistances[adjacent];
+            meeting = adjacent;
+          }
+        }
+      }
+
+      if (forward) {
+        head = levelHead;
+        tail = newTail;
+      } else {
+        otherHead = levelHead;
+        otherTail = newTail;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Dijkstra's algorithm from the source, stopping once the target is settled
+   * @param source The vertex to start from
+   * @param target The vertex to stop at, or -1 to find every shortest path
+   */
+  private void dijkstra(int source, int target) {
+    start();
+    heapSize = 0;
+    if (!graph.isInGraph(source))
+      return;
+
+    visit(source, -1, 0);
+    push(source);
+    while (heapSize > 0) {
+      int vertex = pop();
+      otherStamps[vertex] = stamp; // settled
+      if (vertex == target)
+        return;
+
+      int count = adjacent(vertex, true);
+      for (int i=0; i<count; i++) {
+        int adjacent = buffer[i];
+        if (otherStamps[adjacent] == stamp)
+          continue;
+        double distance = distances[vertex] + weightBuffer[i];
+        if (stamps[adjacent] != stamp) {
+          visit(adjacent, vertex, distance);
+          push(adjacent);
+        } else if (distance < distances[adjacent]) {
+          distances[adjacent] = distance;
+          parents[adjacent] = vertex;
+          siftUp(heapIndex[adjacent]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Starts a new query by moving to a new stamp, clearing the marks only when the stamp wraps around
+   */
+  private void start() {
+    ensureCapacity();
+    stamp++;
+    if (stamp == Integer.MAX_VALUE) {
+      Arrays.fill(stamps, 0);
+      Arrays.fill(otherStamps, 0);
+      stamp = 1;
+    }
+  }
+
+  /**
+   * Marks a vertex as visited by the forward search
+   * @param vertex The vertex
+   * @param parent The vertex it was reached from, or -1
+   * @param distance Its distance from the source
+   */
+  private void visit(int vertex, int parent, double distance) {
+    stamps[vertex] = stamp;
+    parents[vertex] = parent;
+    distances[vertex] = distance;
+  }
+
+  /**
+   * Copies the neighbours of a vertex, and optionally the weights of its edges, into the buffers, growing them if needed
+   * @param vertex The vertex
+   * @param weights Whether to copy the weights too
+   * @return The number of neighbours
+   */
+  private int adjacent(int vertex, boolean weights) {
+    int degree = graph.degree(vertex);
+    if (buffer.length < degree) {
+      buffer = new int[Math.max(degree, buffer.length * 2)];
+      weightBuffer = new double[buffer.length];
+    }
+    if (weights)
+      graph.getAdjacentWeights(vertex, weightBuffer);
+    return graph.getAdjacent(vertex, buffer);
+  }
+
+  /**
+   * Makes sure the per-vertex arrays are big enough for the graph
+   */
+  private void ensureCapacity() {
+    int numVertices = graph.getNumVertices();
+    if (stamps != null && stamps.length >= numVertices)
+      return;
+    stamps = new int[numVertices];
+    otherStamps = new int[numVertices];
+    stamp = 0;
+    parents = new int[numVertices];
+    otherParents = new int[numVertices];
+    distances = new double[numVertices];
+    otherDistances = new double[numVertices];
+    queue = new int[numVertices];
+    otherQueue = new int[numVertices];
+    heap = new int[numVertices];
+    heapIndex = new int[numVertices];
+  }
+
+  /**
+   * Adds a vertex to the heap
+   * @param vertex The vertex, whose distance has been set
+   */
+  private void push(int vertex) {
+    heap[heapSize] = vertex;
+    heapIndex[vertex] = heapSize;
+    siftUp(heapSize++);
+  }
+
+  /**
+   * Removes the vertex with the smallest distance from the heap
+   * @return The vertex with the smallest distance
+   */
+  private int pop() {
+    int top = heap[0];
+    heapSize--;
+    if (heapSize > 0) {
+      heap[0] = heap[heapSize];
+      heapIndex[heap[0]] = 0;
+      siftDown(0);
+    }
+    return top;
+  }
+
+  /**
+   * Moves the vertex at a position in the heap up until its parent is not further away
+   * @param position The position in the heap
+   */
+  private void siftUp(int position) {
+    int vertex = heap[position];
+    while (position > 0) {
+      int parent = (position - 1) >>> 1;
+      if (distances[heap[parent]] <= distances[vertex])
+        break;
+      heap[position] = heap[parent];
+      heapIndex[heap[position]] = position;
+      position = parent;
+    }
+    heap[position] = vertex;
+    heapIndex[vertex] = position;
+  }
+
+  /**
+   * Moves the vertex at a position in the heap down until neither child is closer
+   * @param position The position in the heap
+   */
+  private void siftDown(int position) {
+    int vertex = heap[position];
+    while (true) {
+      int child = 2 * position + 1;
+      if (child >= heapSize)
+        break;
+      if (child + 1 < heapSize && distances[heap[child + 1]] < distances[heap[child]])
+        child++;
+      if (distances[heap[child]] >= distances[vertex])
+        break;
+      heap[position] = heap[child];
+      heapIndex[heap[position]] = position;
+      position = child;
+    }
+    heap[position] = vertex;
+    heapIndex[vertex] = position;
+  }
+
+  /**
+   *
+   * Breadth first iterator over the queue. The vertices between head and tail have been found but not returned yet
+   *
+   */
+  private class BreadthFirstIterator implements PrimitiveIterator.OfInt {
+    private int head, tail;
+
+    public boolean hasNext() {
+      return head < tail;
+    }
+
+    public int nextInt() {
+      if (!hasNext())
+        throw new NoSuchElementException();
+      int vertex = queue[head++];
+      int count = adjacent(vertex, false);
+      for (int i=0; i<count; i++) {
+        int adjacent = buffer[i];
+        if (stamps[adjacent] != stamp) {
+          visit(adjacent, vertex, distances[vertex] + 1);
+          queue[tail++] = adjacent;
+        }
+      }
+      return vertex;
+    }
+  }
+
+  /**
+   *
+   * Depth first iterator over the stack. Vertices are marked when they are returned rather than when they are pushed,
+   * which gives the same order as recursion at the cost of a vertex sometimes being pushed more than once
+   *
+   */
+  private class DepthFirstIterator implements PrimitiveIterator.OfInt {
+    private int top;
+    private int next;
+
+    public boolean hasNext() {
+      // Throw away vertices that were visited after they were pushed
+      while (next == -1 && top > 0) {
+        int vertex = stack[--top];
+        if (stamps[vertex] != stamp)
+          next = vertex;
+      }
+      return next != -1;
+    }
+
+    public int nextInt() {
+      if (!hasNext())
+        throw new NoSuchElementException();
+      int vertex = next;
+      next = -1;
+      stamps[vertex] = stamp;
+      distances[vertex] = parents[vertex] == -1 ? 0 : distances[parents[vertex]] + 1;
+
+      // Push the neighbours in reverse, so the smallest is on top
+      int count = adjacent(vertex, false);
+      if (stack.length < top + count)
+        stack = Arrays.copyOf(stack, Math.max(top + count, stack.length * 2));
+      for (int i=count - 1; i>=0; i--) {
+        int adjacent = buffer[i];
+        if (stamps[adjacent] != stamp) {
+          parents[adjacent] = vertex;
+          stack[top++] = adjacent;
+        }
+      }
+      return vertex;
+    }
+  }
+}
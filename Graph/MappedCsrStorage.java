@@ -0,0 +1,133 @@
+/**
+ *
+ * Read only graph storage in compressed sparse row form, served straight out of a memory mapped file
+ *    written by GraphSnapshot. Nothing is copied onto the heap: isEdge and getAdjacent read the mapped
+ *    pages, which the operating system loads on first use and shares between every process mapping the
+ *    same file. The file is mapped by a MappedFile, which takes care of files larger than a single 2GB mapping.
+ *
+ * VARIABLES
+ * ---------
+ * private int numVertices;
+ *      The number of vertices
+ *
+ * private MappedFile file;
+ *      The mapped snapshot file
+ *
+ * private long offsets;
+ *      Where the offsets array starts in the file. The neighbours of vertex v are entries offsets[v] to offsets[v + 1] - 1
+ *      of neighbours
+ *
+ * private long neighbours;
+ *      Where the neighbours array starts in the file. It is in increasing order within each vertex
+ *
+ * METHODS
+ * -------
+ * public MappedCsrStorage(MappedFile file, int numVertices, long offsetsPosition, long neighboursPosition)
+ *      Constructor. Reads the offsets and neighbours arrays of a mapped snapshot file
+ *
+ * private int offset(int vertex), neighbour(int index)
+ *      Reads one element of the offsets or neighbours array
+ *
+ * The rest are described in GraphStorage. addEdge, removeEdge, removeEdges and grow throw UnsupportedOperationException, and
+ *      compact returns a CsrStorage
+ *
+ */
+
+public class MappedCsrStorage implements GraphStorage {
+  private int numVertices;
+  private MappedFile file;
+  private long offsets;
+  private long neighbours;
+
+  /**
+   * Reads the offsets and neighbours arrays of a mapped snapshot file. The mapping stays valid after the file is closed
+   * Preconditions: The file holds numVertices + 1 offsets at offsetsPosition and offsets[numVertices] neighbours at
+   *      neighboursPosition, both as big endian ints
+   * @param file The mapped snapshot file
+   * @param numVertices The number of vertices
+   * @param offsetsPosition Where the offsets start in the file
+   * @param neighboursPosition Where the neighbours start in the file
+   */
+  public MappedCsrStorage(MappedFile file, int numVertices, long offsetsPosition, long neighboursPosition) {
+    this.numVertices = numVertices;
+    this.file = file;
+    offsets = offsetsPosition;
+    neighbours = neighboursPosition;
+  }
+
+  public int size() {
+    return numVertices;
+  }
+
+  public boolean isRowLocal() {
+    // Nothing ever changes
+    return true;
+  }
+
+  public boolean isEdge(int source, int destination) {
+    int low = offset(source);
+    int high = offset(source + 1) - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int neighbour = neighbour(middle);
+      if (neighbour < destination)
+        low = middle + 1;
+      else if (neighbour > destination)
+        high = middle - 1;
+      else
+        return true;
+    }
+    return false;
+  }
+
+  public boolean addEdge(int source, int destination) {
+    throw new UnsupportedOperationException("Mapped storage is read only");
+  }
+
+  public boolean removeEdge(int source, int destination) {
+    throw new UnsupportedOperationException("Mapped storage is read only");
+  }
+
+  public void removeEdges(int vertex) {
+    throw new UnsupportedOperationException("Mapped storage is read only");
+  }
+
+  public int degree(int vertex) {
+    return offset(vertex + 1) - offset(vertex);
+  }
+
+  public int getAdjacent(int vertex, int[] buffer) {
+    int start = offset(vertex);
+    int degree = offset(vertex + 1) - start;
+    for (int i=0; i<degree; i++)
+      buffer[i] = neighbour(start + i);
+    return degree;
+  }
+
+  public void grow(int numVertices) {
+    throw new UnsupportedOperationException("Mapped storage is read only");
+  }
+
+  public GraphStorage compact(int[] mapping, int numVertices) {
+    // The file cannot be rewritten under the mapping, so the compacted copy lives on the heap
+    return CsrStorage.compact(this, mapping, numVertices);
+  }
+
+  /**
+   * Reads one element of the offsets array
+   * @param vertex The index of the element
+   * @return Where the neighbours of the vertex start in the neighbours array
+   */
+  private int offset(int vertex) {
+    return file.getInt(offsets + 4L * vertex);
+  }
+
+  /**
+   * Reads one element of the neighbours array
+   * @param index The index of the element
+   * @return The neighbour
+   */
+  private int neighbour(int index) {
+    return file.getInt(neighbours + 4L * index);
+  }
+}
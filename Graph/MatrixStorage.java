@@ -0,0 +1,108 @@
+import java.util.Arrays;
+
+/**
+ * 
+ * Graph storage backed by a 2D array of booleans. This is how Graph has always stored its edges, and it
+ *    is still the fastest for small, dense graphs, but it needs numVertices^2 booleans no matter how many
+ *    edges there are.
+ * 
+ * VARIABLES
+ * ---------
+ * private boolean[][] edges;
+ *      A 2d array of booleans. The 1st column and the 1st row both correspond to element id 1, etc.
+ *      So if I add an edge from id 4 to id 6, then boolean[4][6] == boolean[6][4] == true
+ * 
+ * METHODS
+ * -------
+ * public MatrixStorage(int numVertices)
+ *      Constructor. Makes edges have 'numVertices' number of rows and columns
+ * 
+ * The rest are described in GraphStorage
+ *
+ */
+
+public class MatrixStorage implements GraphStorage {
+  private boolean[][] edges;
+
+  /**
+   * Constructs an empty matrix
+   * Postconditions: A matrix is created with the given number of rows and columns, and with no edges
+   * @param numVertices The number of vertices that wil be stored
+   */
+  public MatrixStorage(int numVertices) {
+    edges = new boolean[numVertices][numVertices];
+  }
+
+  public int size() {
+    return edges.length;
+  }
+
+  public boolean isRowLocal() {
+    return true;
+  }
+
+  public boolean isEdge(int source, int destination) {
+    return edges[source][destination];
+  }
+
+  public boolean addEdge(int source, int destination) {
+    if (edges[source][destination])
+      return false;
+    edges[source][destination] = true;
+    edges[destination][source] = true;
+    return true;
+  }
+
+  public boolean removeEdge(int source, int destination) {
+    if (!edges[source][destination])
+      return false;
+    edges[source][destination] = false;
+    edges[destination][source] = false;
+    return true;
+  }
+
+  public void removeEdges(int vertex) {
+    for (int destination=0; destination<edges.length; destination++) {
+      edges[vertex][destination] = false;
+      edges[destination][vertex] = false;
+    }
+  }
+
+  public int degree(int vertex) {
+    int degree = 0;
+    for (boolean isEdge : edges[vertex]) {
+      if (isEdge)
+        degree++;
+    }
+    return degree;
+  }
+
+  public int getAdjacent(int vertex, int[] buffer) {
+    int count = 0;
+    for (int destination=0; destination<edges.length; destination++) {
+      if (edges[vertex][destination])
+        buffer[count++] = destination;
+    }
+    return count;
+  }
+
+  public void grow(int numVertices) {
+    boolean[][] grown = new boolean[numVertices][];
+    for (int vertex=0; vertex<numVertices; vertex++)
+      grown[vertex] = vertex < edges.length ? Arrays.copyOf(edges[vertex], numVertices) : new boolean[numVertices];
+    edges = grown;
+  }
+
+  public GraphStorage compact(int[] mapping, int numVertices) {
+    MatrixStorage compacted = new MatrixStorage(numVertices);
+    for (int source=0; source<edges.length; source++) {
+      if (mapping[source] == -1)
+        continue;
+      for (int destination=0; destination<edges.length; destination++) {
+        if (edges[source][destination])
+          compacted.edges[mapping[source]][mapping[destination]] = true;
+      }
+    }
+    return compacted;
+  }
+}
@@ -0,0 +1,570 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * Whole-graph kernels which run in parallel on a ForkJoinPool:
+ *
+ *    breadthFirst    Direction-optimizing breadth first search. The frontier is a bitset, and each level is either
+ *                    expanded top-down (every frontier vertex claims its unvisited neighbours) or bottom-up (every
+ *                    unvisited vertex looks for a neighbour in the frontier), whichever will scan fewer edges
+ *    pageRank        PageRank by repeated parallel aggregation over each vertex's neighbours, until the ranks
+ *                    stop changing
+ *    triangles       The triangles through every vertex, by merging its sorted neighbours with each neighbour's.
+ *                    Each vertex only writes its own count, so there is nothing to synchronize
+ *
+ * Work is split by degree rather than by vertex count. Every vertex counts as its degree + 1 units of work, and a range
+ *    of vertices is halved at the vertex where half of its work has been done, so a task holding a few hubs gets as
+ *    much work as one holding many leaves. A single vertex whose degree is more than the grain on its own has its
+ *    neighbours split across tasks too, so one hub never stalls one worker.
+ * This is a class who's methods are all static and has no class variables
+ *
+ * METHODS
+ * -------
+ * public static int[] breadthFirst(Graph graph, int source, ForkJoinPool pool)
+ *      Returns the distance in edges of every vertex from the source
+ *
+ * public static double[] pageRank(Graph graph, ForkJoinPool pool)
+ *      Returns the PageRank of every vertex with the usual damping factor of 0.85
+ *
+ * public static double[] pageRank(Graph graph, ForkJoinPool pool, double damping, double tolerance, int maxIterations)
+ *      Returns the PageRank of every vertex
+ *
+ * public static long[] triangles(Graph graph, ForkJoinPool pool)
+ *      Returns the number of triangles through every vertex
+ *
+ * public static double[] clusteringCoefficients(Graph graph, ForkJoinPool pool)
+ *      Returns the local clustering coefficient of every vertex
+ *
+ * private static long[] work(Graph graph)
+ *      Returns the running total of the work of each vertex
+ *
+ * private static int split(long[] work, int from, int to)
+ *      Finds the vertex where half of the work in a range has been done
+ *
+ */
+
+public class ParallelAnalytics {
+  private static final int GRAIN = 4096; // The least work worth handing to another thread
+  private static final int ALPHA = 14; // Go bottom-up once the frontier has more than 1/ALPHA of the unexplored edges
+  private static final int BETA = 24; // Go back top-down once the frontier has fewer than 1/BETA of the vertices
+
+  /**
+   * Returns the distance in edges of every vertex from the source, by direction-optimizing breadth first search.
+   *    Expanding a level top-down scans the edges of the frontier; bottom-up scans the edges of the unvisited vertices,
+   *    but each vertex stops at its first neighbour in the frontier. Top-down is used while the frontier is small, and
+   *    bottom-up while the frontier holds a large share of the edges still to be explored
+   * @param graph The graph to be searched
+   * @param source The vertex to start from
+   * @param pool The pool whose threads do the work
+   * @return The distance of each vertex from the source, or -1 for vertices which cannot be reached
+   */
+  public static int[] breadthFirst(Graph graph, int source, ForkJoinPool pool) {
+    int numVertices = graph.getNumVertices();
+    Search search = new Search(graph, work(graph));
+    Arrays.fill(search.levels, -1);
+    if (!graph.isInGraph(source))
+      return search.levels;
+
+    search.levels[source] = 0;
+    claim(search.visited, source);
+    claim(search.frontier, source);
+    long frontierSize = 1;
+    long frontierEdges = graph.degree(source);
+    long unexploredEdges = search.work[numVertices] - numVertices - frontierEdges;
+    boolean bottomUp = false;
+    while (frontierSize > 0) {
+      if (!bottomUp && frontierEdges > unexploredEdges / ALPHA)
+        bottomUp = true;
+      else if (bottomUp && frontierSize < graph.getActiveVertexCount() / BETA)
+        bottomUp = false;
+
+      search.nextSize.reset();
+      search.nextEdges.reset();
+      pool.invoke(new Expand(search, bottomUp, 0, numVertices));
+
+      frontierSize = search.nextSize.sum();
+      frontierEdges = search.nextEdges.sum();
+      unexploredEdges -= frontierEdges;
+      search.depth++;
+      AtomicLongArray expanded = search.frontier;
+      search.frontier = search.next;
+      search.next = expanded;
+      for (int i=0; i<expanded.length(); i++)
+        expanded.set(i, 0);
+    }
+    return search.levels;
+  }
+
+  /**
+   * Returns the PageRank of every vertex with a damping factor of 0.85, stopping once the ranks change by less than 1e-9
+   *    in total or after 100 iterations
+   * @param graph The graph to be ranked
+   * @param pool The pool whose threads do the work
+   * @return The rank of each vertex, summing to 1 over the vertices in the graph, and 0 for vertices not in the graph
+   */
+  public static double[] pageRank(Graph graph, ForkJoinPool pool) {
+    return pageRank(graph, pool, 0.85, 1e-9, 100);
+  }
+
+  /**
+   * Returns the PageRank of every vertex. Each iteration is two parallel passes: the first spreads each vertex's rank
+   *    evenly over its edges, and the second gathers the shares of each vertex's neighbours. The rank of vertices with
+   *    no edges is spread evenly over the whole graph
+   * @param graph The graph to be ranked
+   * @param pool The pool whose threads do the work
+   * @param damping The probability of following an edge rather than jumping to a random vertex
+   * @param tolerance Stop once the ranks change by less than this in total
+   * @param maxIterations Stop after this many iterations
+   * @return The rank of each vertex, summing to 1 over the vertices in the graph, and 0 for vertices not in the graph
+   */
+  public static double[] pageRank(Graph graph, ForkJoinPool pool, double damping, double tolerance, int maxIterations) {
+    int numVertices = graph.getNumVertices();
+    int active = graph.getActiveVertexCount();
+    Ranking ranking = new Ranking(graph, work(graph), damping);
+    if (active == 0)
+      return ranking.ranks;
+    for (int vertex=0; vertex<numVertices; vertex++) {
+      if (graph.isInGraph(vertex))
+        ranking.ranks[vertex] = 1.0 / active;
+    }
+
+    for (int iteration=0; iteration<maxIterations; iteration++) {
+      ranking.dangling.reset();
+      ranking.change.reset();
+      pool.invoke(new Rank(ranking, false, 0, numVertices));
+      ranking.base = (1 - damping) / active + damping * ranking.dangling.sum() / active;
+      pool.invoke(new Rank(ranking, true, 0, numVertices));
+
+      double[] old = ranking.ranks;
+      ranking.ranks = ranking.nextRanks;
+      ranking.nextRanks = old;
+      if (ranking.change.sum() < tolerance)
+        break;
+    }
+    return ranking.ranks;
+  }
+
+  /**
+   * Returns the number of triangles through every vertex, in parallel. A vertex u is a corner of one triangle for each
+   *    pair of its neighbours which are connected, and each such pair v, w is found twice, as a common neighbour of u and
+   *    v and as one of u and w, so the common neighbours of u and each neighbour are summed and halved. Unlike
+   *    Graph.countTriangles, the counts are not kept up to date afterwards
+   * @param graph The graph whose triangles are counted
+   * @param pool The pool whose threads do the work
+   * @return The number of triangles through each vertex
+   */
+  public static long[] triangles(Graph graph, ForkJoinPool pool) {
+    long[] counts = new long[graph.getNumVertices()];
+    pool.invoke(new Triangles(graph, work(graph), counts, 0, counts.length));
+    return counts;
+  }
+
+  /**
+   * Returns the local clustering coefficient of every vertex, the fraction of pairs of its neighbours which are
+   *    connected to each other, with the triangles counted in parallel
+   * @param graph The graph
+   * @param pool The pool whose threads do the work
+   * @return The clustering coefficient of each vertex, from 0 to 1, and 0 for vertices with fewer than two neighbours
+   */
+  public static double[] clusteringCoefficients(Graph graph, ForkJoinPool pool) {
+    long[] counts = triangles(graph, pool);
+    double[] coefficients = new double[counts.length];
+    for (int vertex=0; vertex<counts.length; vertex++) {
+      long degree = graph.degree(vertex);
+      if (degree >= 2)
+        coefficients[vertex] = 2.0 * counts[vertex] / (degree * (degree - 1));
+    }
+    return coefficients;
+  }
+
+  /**
+   * Returns the running total of the work of each vertex, counting each vertex as its degree + 1
+   * @param graph The graph whose vertices are counted
+   * @return An array where work[v] is the work of the vertices before v, and work[numVertices] is the total
+   */
+  private static long[] work(Graph graph) {
+    long[] work = new long[graph.getNumVertices() + 1];
+    for (int vertex=0; vertex<graph.getNumVertices(); vertex++)
+      work[vertex + 1] = work[vertex] + graph.degree(vertex) + 1;
+    return work;
+  }
+
+  /**
+   * Finds the vertex where half of the work in a range has been done
+   * Preconditions: to - from >= 2
+   * @param work The running total of the work of each vertex
+   * @param from The first vertex of the range
+   * @param to One past the last vertex of the range
+   * @return A vertex strictly between from and to
+   */
+  private static int split(long[] work, int from, int to) {
+    long half = (work[from] + work[to]) >>> 1;
+    int low = from + 1, high = to - 1;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (work[middle] < half)
+        low = middle + 1;
+      else
+        high = middle;
+    }
+    return low;
+  }
+
+  /**
+   * Sets a bit, unless it is already set, safely against other threads setting bits in the same word
+   * @param bits The bitset
+   * @param index The index of the bit
+   * @return True if this call set the bit, false if it was already set
+   */
+  private static boolean claim(AtomicLongArray bits, int index) {
+    int word = index >>> 6;
+    long mask = 1L << index;
+    while (true) {
+      long old = bits.get(word);
+      if ((old & mask) != 0)
+        return false;
+      if (bits.compareAndSet(word, old, old | mask))
+        return true;
+    }
+  }
+
+  /**
+   * Determines whether a bit is set
+   * @param bits The bitset
+   * @param index The index of the bit
+   * @return True if the bit is set
+   */
+  private static boolean isSet(AtomicLongArray bits, int index) {
+    return (bits.get(index >>> 6) & (1L << index)) != 0;
+  }
+
+  /**
+   *
+   * A range of vertices, halved by work until it is small enough for one thread
+   *
+   */
+  private abstract static class DegreeSplit extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    protected long[] work;
+    protected int from, to;
+
+    protected DegreeSplit(long[] work, int from, int to) {
+      this.work = work;
+      this.from = from;
+      this.to = to;
+    }
+
+    protected void compute() {
+      if (to - from > 1 && work[to] - work[from] > GRAIN) {
+        int middle = split(work, from, to);
+        invokeAll(create(from, middle), create(middle, to));
+        return;
+      }
+      process();
+    }
+
+    protected abstract DegreeSplit create(int from, int to);
+
+    protected abstract void process();
+  }
+
+  /**
+   *
+   * The state of a breadth first search, shared by every task
+   *
+   */
+  private static class Search {
+    private Graph graph;
+    private long[] work;
+    private int[] levels;
+    private AtomicLongArray visited, frontier, next;
+    private int depth;
+    private LongAdder nextSize = new LongAdder();
+    private LongAdder nextEdges = new LongAdder();
+
+    private Search(Graph graph, long[] work) {
+      this.graph = graph;
+      this.work = work;
+      int numVertices = graph.getNumVertices();
+      levels = new int[numVertices];
+      visited = new AtomicLongArray((numVertices + 63) >>> 6);
+      frontier = new AtomicLongArray((numVertices + 63) >>> 6);
+      next = new AtomicLongArray((numVertices + 63) >>> 6);
+    }
+
+    /**
+     * Adds a vertex to the next level, if no other thread got there first
+     * @param vertex The vertex which has been reached
+     */
+    private void discover(int vertex) {
+      if (!isSet(visited, vertex) && claim(visited, vertex)) {
+        levels[vertex] = depth + 1;
+        claim(next, vertex);
+        nextSize.increment();
+        nextEdges.add(graph.degree(vertex));
+      }
+    }
+  }
+
+  /**
+   *
+   * Expands one level of a breadth first search over a range of vertices, top-down or bottom-up
+   *
+   */
+  private static class Expand extends DegreeSplit {
+    private static final long serialVersionUID = 1L;
+
+    private Search search;
+    private boolean bottomUp;
+
+    private Expand(Search search, boolean bottomUp, int from, int to) {
+      super(search.work, from, to);
+      this.search = search;
+      this.bottomUp = bottomUp;
+    }
+
+    protected DegreeSplit create(int from, int to) {
+      return new Expand(search, bottomUp, from, to);
+    }
+
+    protected void process() {
+      Graph graph = search.graph;
+      int[] buffer = new int[16];
+      for (int vertex=from; vertex<to; vertex++) {
+        if (bottomUp ? !graph.isInGraph(vertex) || isSet(search.visited, vertex) : !isSet(search.frontier, vertex))
+          continue;
+        int degree = graph.degree(vertex);
+        if (buffer.length < degree)
+          buffer = new int[Math.max(degree, buffer.length * 2)];
+        int count = graph.getAdjacent(vertex, buffer);
+
+        if (bottomUp) {
+          // Only this thread looks at this vertex, and it only needs one parent, so a hub is not worth splitting
+          for (int i=0; i<count; i++) {
+            if (isSet(search.frontier, buffer[i])) {
+              search.discover(vertex);
+              break;
+            }
+          }
+        } else if (count > GRAIN) {
+          new Discover(search, Arrays.copyOf(buffer, count), 0, count).invoke();
+        } else {
+          for (int i=0; i<count; i++)
+            search.discover(buffer[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   *
+   * Discovers a range of a hub's neighbours, split in half until the ranges are small
+   *
+   */
+  private static class Discover extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private Search search;
+    private int[] adjacent;
+    private int from, to;
+
+    private Discover(Search search, int[] adjacent, int from, int to) {
+      this.search = search;
+      this.adjacent = adjacent;
+      this.from = from;
+      this.to = to;
+    }
+
+    protected void compute() {
+      if (to - from > GRAIN) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new Discover(search, adjacent, from, middle), new Discover(search, adjacent, middle, to));
+        return;
+      }
+      for (int i=from; i<to; i++)
+        search.discover(adjacent[i]);
+    }
+  }
+
+  /**
+   *
+   * The state of a PageRank computation, shared by every task
+   *
+   */
+  private static class Ranking {
+    private Graph graph;
+    private long[] work;
+    private double damping;
+    private double[] ranks, nextRanks, shares;
+    private double base;
+    private DoubleAdder dangling = new DoubleAdder();
+    private DoubleAdder change = new DoubleAdder();
+
+    private Ranking(Graph graph, long[] work, double damping) {
+      this.graph = graph;
+      this.work = work;
+      this.damping = damping;
+      ranks = new double[graph.getNumVertices()];
+      nextRanks = new double[graph.getNumVertices()];
+      shares = new double[graph.getNumVertices()];
+    }
+  }
+
+  /**
+   *
+   * One pass of a PageRank iteration over a range of vertices: either spreading each vertex's rank over its edges,
+   * or gathering the shares of each vertex's neighbours into its next rank
+   *
+   */
+  private static class Rank extends DegreeSplit {
+    private static final long serialVersionUID = 1L;
+
+    private Ranking ranking;
+    private boolean gather;
+
+    private Rank(Ranking ranking, boolean gather, int from, int to) {
+      super(ranking.work, from, to);
+      this.ranking = ranking;
+      this.gather = gather;
+    }
+
+    protected DegreeSplit create(int from, int to) {
+      return new Rank(ranking, gather, from, to);
+    }
+
+    protected void process() {
+      Graph graph = ranking.graph;
+      if (!gather) {
+        double dangling = 0;
+        for (int vertex=from; vertex<to; vertex++) {
+          int degree = graph.degree(vertex);
+          ranking.shares[vertex] = degree > 0 ? ranking.ranks[vertex] / degree : 0;
+          if (degree == 0)
+            dangling += ranking.ranks[vertex];
+        }
+        ranking.dangling.add(dangling);
+        return;
+      }
+
+      int[] buffer = new int[16];
+      double change = 0;
+      for (int vertex=from; vertex<to; vertex++) {
+        if (!graph.isInGraph(vertex))
+          continue;
+        int degree = graph.degree(vertex);
+        if (buffer.length < degree)
+          buffer = new int[Math.max(degree, buffer.length * 2)];
+        int count = graph.getAdjacent(vertex, buffer);
+
+        double sum;
+        if (count > GRAIN) {
+          sum = new Gather(ranking.shares, Arrays.copyOf(buffer, count), 0, count).invoke();
+        } else {
+          sum = 0;
+          for (int i=0; i<count; i++)
+            sum += ranking.shares[buffer[i]];
+        }
+        ranking.nextRanks[vertex] = ranking.base + ranking.damping * sum;
+        change += Math.abs(ranking.nextRanks[vertex] - ranking.ranks[vertex]);
+      }
+      ranking.change.add(change);
+    }
+  }
+
+  /**
+   *
+   * Sums the shares of a range of a hub's neighbours, split in half until the ranges are small
+   *
+   */
+  private static class Gather extends RecursiveTask<Double> {
+    private static final long serialVersionUID = 1L;
+
+    private double[] shares;
+    private int[] adjacent;
+    private int from, to;
+
+    private Gather(double[] shares, int[] adjacent, int from, int to) {
+      this.shares = shares;
+      this.adjacent = adjacent;
+      this.from = from;
+      this.to = to;
+    }
+
+    protected Double compute() {
+      if (to - from > GRAIN) {
+        int middle = (from + to) >>> 1;
+        Gather left = new Gather(shares, adjacent, from, middle);
+        left.fork();
+        double right = new Gather(shares, adjacent, middle, to).compute();
+        return left.join() + right;
+      }
+      double sum = 0;
+      for (int i=from; i<to; i++)
+        sum += shares[adjacent[i]];
+      return sum;
+    }
+  }
+
+  /**
+   *
+   * Counts the triangles through each vertex in a range, by merging its sorted neighbours with those of each neighbour
+   *
+   */
+  private static class Triangles extends DegreeSplit {
+    private static final long serialVersionUID = 1L;
+
+    private Graph graph;
+    private long[] counts;
+
+    private Triangles(Graph graph, long[] work, long[] counts, int from, int to) {
+      super(work, from, to);
+      this.graph = graph;
+      this.counts = counts;
+    }
+
+    protected DegreeSplit create(int from, int to) {
+      return new Triangles(graph, work, counts, from, to);
+    }
+
+    protected void process() {
+      int[] adjacent = new int[16];
+      int[] other = new int[16];
+      for (int vertex=from; vertex<to; vertex++) {
+        int degree = graph.degree(vertex);
+        if (degree < 2)
+          continue;
+        if (adjacent.length < degree)
+          adjacent = new int[Math.max(degree, adjacent.length * 2)];
+        int count = graph.getAdjacent(vertex, adjacent);
+
+        long pairs = 0;
+        for (int k=0; k<count; k++) {
+          int neighbourDegree = graph.degree(adjacent[k]);
+          if (other.length < neighbourDegree)
+            other = new int[Math.max(neighbourDegree, other.length * 2)];
+          int otherCount = graph.getAdjacent(adjacent[k], other);
+          int i = 0, j = 0;
+          while (i < count && j < otherCount) {
+            if (adjacent[i] < other[j])
+              i++;
+            else if (adjacent[i] > other[j])
+              j++;
+            else {
+              pairs++;
+              i++;
+              j++;
+            }
+          }
+        }
+        counts[vertex] = pairs / 2;
+      }
+    }
+  }
+}
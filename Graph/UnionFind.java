@@ -0,0 +1,139 @@
+import java.util.Arrays;
+
+/**
+ * 
+ * A disjoint set (union-find) structure over the vertices of a graph, used by Graph to keep its
+ *    connected components up to date as edges are added. Uses union by size and path halving, so each
+ *    operation takes nearly constant time.
+ * 
+ * VARIABLES
+ * ---------
+ * private int[] parent;
+ *      The parent of each vertex in its set's tree. A vertex which is its own parent is the root of its set, -1 marks a vertex in no set
+ * 
+ * private int[] sizes;
+ *      For each root, the number of vertices in its set
+ * 
+ * private int count;
+ *      The number of sets
+ * 
+ * METHODS
+ * -------
+ * public UnionFind(int numVertices)
+ *      Constructor. No vertex is in a set yet
+ * 
+ * public void add(int vertex)
+ *      Puts a vertex in a set of its own, unless it is already in a set
+ * 
+ * public boolean contains(int vertex)
+ *      Returns whether a vertex is in a set
+ * 
+ * public int find(int vertex)
+ *      Returns the root of the set containing a vertex
+ * 
+ * public boolean union(int first, int second)
+ *      Merges the sets containing two vertices
+ * 
+ * public int count()
+ *      Returns the number of sets
+ * 
+ * public void grow(int numVertices)
+ *      Makes room for more vertices
+ *
+ */
+
+public class UnionFind {
+  private int[] parent;
+  private int[] sizes;
+  private int count;
+
+  /**
+   * Constructs a union-find structure in which no vertex is in a set yet
+   * @param numVertices The number of vertices
+   */
+  public UnionFind(int numVertices) {
+    parent = new int[numVertices];
+    sizes = new int[numVertices];
+    for (int vertex=0; vertex<numVertices; vertex++)
+      parent[vertex] = -1;
+  }
+
+  /**
+   * Puts a vertex in a set of its own, unless it is already in a set
+   * Postconditions: contains(vertex) is true
+   * @param vertex The index of the vertex
+   */
+  public void add(int vertex) {
+    if (parent[vertex] == -1) {
+      parent[vertex] = vertex;
+      sizes[vertex] = 1;
+      count++;
+    }
+  }
+
+  /**
+   * Returns whether a vertex is in a set
+   * @param vertex The index of the vertex
+   * @return True if add has been called on the vertex
+   */
+  public boolean contains(int vertex) {
+    return parent[vertex] != -1;
+  }
+
+  /**
+   * Returns the root of the set containing a vertex. Every vertex on the way to the root is pointed at its grandparent
+   * Preconditions: contains(vertex) is true
+   * @param vertex The index of the vertex
+   * @return The vertex which represents the set
+   */
+  public int find(int vertex) {
+    while (parent[vertex] != vertex) {
+      parent[vertex] = parent[parent[vertex]];
+      vertex = parent[vertex];
+    }
+    return vertex;
+  }
+
+  /**
+   * Merges the sets containing two vertices, hanging the smaller tree under the larger one
+   * Preconditions: contains(first) and contains(second) are true
+   * @param first The index of the first vertex
+   * @param second The index of the second vertex
+   * @return True if the two vertices were in different sets
+   */
+  public boolean union(int first, int second) {
+    int a = find(first);
+    int b = find(second);
+    if (a == b)
+      return false;
+    if (sizes[a] < sizes[b]) {
+      int swap = a;
+      a = b;
+      b = swap;
+    }
+    parent[b] = a;
+    sizes[a] += sizes[b];
+    count--;
+    return true;
+  }
+
+  /**
+   * Returns the number of sets
+   * @return The number of sets
+   */
+  public int count() {
+    return count;
+  }
+
+  /**
+   * Makes room for more vertices, none of which are in a set yet
+   * Preconditions: numVertices is at least the current number of vertices
+   * @param numVertices The number of vertices to make room for
+   */
+  public void grow(int numVertices) {
+    int oldSize = parent.length;
+    parent = Arrays.copyOf(parent, numVertices);
+    sizes = Arrays.copyOf(sizes, numVertices);
+    Arrays.fill(parent, oldSize, numVertices, -1);
+  }
+}
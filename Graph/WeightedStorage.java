@@ -0,0 +1,61 @@
+/**
+ * 
+ * Graph storage which can also keep a weight on each edge. The weights are kept in primitive arrays
+ *    parallel to the neighbour arrays, and are only allocated once the first weight is set. Until then,
+ *    and for any edge added without a weight, the weight is 1.
+ *
+ * Implementations:
+ *    AdjacencyListStorage
+ *    CsrStorage (read only)
+ * 
+ * METHODS
+ * -------
+ * public boolean hasWeights()
+ *      Returns whether any weight has been set
+ * 
+ * public double getWeight(int source, int destination)
+ *      Returns the weight of an edge
+ * 
+ * public void setWeight(int source, int destination, double weight)
+ *      Sets the weight of an edge in both directions
+ * 
+ * public int getAdjacentWeights(int vertex, double[] buffer)
+ *      Copies the weights of a vertex's edges into a buffer, in the same order as getAdjacent
+ *
+ */
+
+public interface WeightedStorage extends GraphStorage {
+
+  /**
+   * Returns whether any weight has been set
+   * @return True if setWeight has been called, false if every edge has weight 1
+   */
+  boolean hasWeights();
+
+  /**
+   * Returns the weight of an edge
+   * Preconditions: isEdge(source, destination) is true
+   * @param source The index of the source vertex
+   * @param destination The index of the destination vertex
+   * @return The weight of the edge
+   */
+  double getWeight(int source, int destination);
+
+  /**
+   * Sets the weight of an edge in both directions
+   * Preconditions: isEdge(source, destination) is true
+   * @param source The index of the source vertex
+   * @param destination The index of the destination vertex
+   * @param weight The new weight of the edge
+   */
+  void setWeight(int source, int destination, double weight);
+
+  /**
+   * Copies the weights of a vertex's edges into a buffer, in the same order as getAdjacent
+   * Preconditions: buffer.length >= degree(vertex)
+   * @param vertex The index of the vertex
+   * @param buffer Where the weights are written, starting at index 0
+   * @return The number of weights written
+   */
+  int getAdjacentWeights(int vertex, double[] buffer);
+}